@@ -0,0 +1,142 @@
+/*-
+ * #%L
+ * Arcade Connectors
+ * %%
+ * Copyright (C) 2018 - 2021 ArcadeData
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.arcadeanalytics.provider
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder
+import org.slf4j.LoggerFactory
+import java.util.concurrent.CompletableFuture
+import java.util.concurrent.ConcurrentHashMap
+import java.util.concurrent.ExecutionException
+import java.util.concurrent.Executor
+import java.util.concurrent.Executors
+
+internal val METADATA_CACHE_TTL_MS = java.lang.Long.getLong("METADATA_CACHE_TTL_MS", 300_000L)
+
+private val METADATA_CACHE_STALE_MS = java.lang.Long.getLong("METADATA_CACHE_STALE_MS", 3_600_000L)
+
+private val refreshExecutor: Executor by lazy {
+    Executors.newCachedThreadPool(
+        ThreadFactoryBuilder()
+            .setDaemon(true)
+            .setNameFormat("metadata-refresh-%d")
+            .build(),
+    )
+}
+
+/**
+ * Caches the metadata of each data source, as computing it usually means counting all the records.
+ *
+ * Metadata younger than [ttlMs] is returned as is. Metadata older than that, but younger than [ttlMs] + [staleMs], is
+ * returned as well while it is refreshed in background. Otherwise the caller waits for the metadata to be computed.
+ * Concurrent callers for the same data source share a single computation.
+ */
+class CachingMetadataProviderDecorator(
+    val provider: DataSourceMetadataProvider,
+    private val ttlMs: Long = METADATA_CACHE_TTL_MS,
+    private val staleMs: Long = METADATA_CACHE_STALE_MS,
+    private val executor: Executor = refreshExecutor,
+    private val clock: () -> Long = System::currentTimeMillis,
+) : DataSourceMetadataProvider {
+    private val log = LoggerFactory.getLogger(CachingMetadataProviderDecorator::class.java)
+
+    private val entries = ConcurrentHashMap<List<Any?>, Entry>()
+
+    override fun supportedDataSourceTypes(): Set<String> = provider.supportedDataSourceTypes()
+
+    override fun fetchMetadata(dataSource: DataSourceInfo): DataSourceMetadata {
+        val entry = entries.computeIfAbsent(keyOf(dataSource)) { Entry() }
+
+        val cached = entry.cached
+        val age = cached?.let { clock() - it.loadedAt }
+
+        return when {
+            cached != null && age!! < ttlMs -> cached.metadata
+
+            cached != null && age!! < ttlMs + staleMs -> {
+                entry.refresh(dataSource).exceptionally { e ->
+                    log.warn("unable to refresh metadata of data source {}, keeping the cached one", dataSource.id, e)
+                    null
+                }
+                cached.metadata
+            }
+
+            else -> await(entry.refresh(dataSource))
+        }
+    }
+
+    /**
+     * Drops the cached metadata of the given data source.
+     */
+    fun invalidate(dataSource: DataSourceInfo) {
+        entries.remove(keyOf(dataSource))
+    }
+
+    private fun keyOf(dataSource: DataSourceInfo): List<Any?> =
+        listOf(
+            dataSource.id,
+            dataSource.type,
+            dataSource.server,
+            dataSource.port,
+            dataSource.database,
+            dataSource.username,
+            dataSource.password,
+            dataSource.aggregationEnabled,
+        )
+
+    private fun await(future: CompletableFuture<DataSourceMetadata>): DataSourceMetadata =
+        try {
+            future.get()
+        } catch (e: ExecutionException) {
+            throw e.cause ?: e
+        }
+
+    private class Loaded(
+        val metadata: DataSourceMetadata,
+        val loadedAt: Long,
+    )
+
+    private inner class Entry {
+        @Volatile
+        var cached: Loaded? = null
+
+        private var loading: CompletableFuture<DataSourceMetadata>? = null
+
+        /**
+         * Starts computing the metadata, unless a computation is already running: in that case returns it.
+         */
+        @Synchronized
+        fun refresh(dataSource: DataSourceInfo): CompletableFuture<DataSourceMetadata> {
+            loading?.let { return it }
+
+            val future =
+                CompletableFuture
+                    .supplyAsync({ provider.fetchMetadata(dataSource) }, executor)
+                    .whenComplete { metadata, _ ->
+                        synchronized(this) {
+                            if (metadata != null) cached = Loaded(metadata, clock())
+                            loading = null
+                        }
+                    }
+
+            if (!future.isDone) loading = future
+            return future
+        }
+    }
+}
@@ -25,10 +25,20 @@ typealias EdgesClasses = Map<String, TypeClass>
 
 typealias TypeProperties = Map<String, TypeProperty>
 
+/**
+ * Whether metadata providers estimate cardinalities from statistics instead of counting, set with
+ * `METADATA_ESTIMATE_CARDINALITY`.
+ */
+val ESTIMATE_CARDINALITY: Boolean = System.getProperty("METADATA_ESTIMATE_CARDINALITY", "false").toBoolean()
+
+/**
+ * A class of nodes or edges: [estimated] is true when the [cardinality] is an estimate rather than an exact count.
+ */
 data class TypeClass(
     val name: String,
     val cardinality: Long,
     val properties: TypeProperties,
+    val estimated: Boolean = false,
 )
 
 data class TypeProperty(
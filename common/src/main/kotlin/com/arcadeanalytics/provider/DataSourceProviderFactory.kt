@@ -24,6 +24,7 @@ import java.net.URLClassLoader
 import java.nio.file.Files
 import java.nio.file.Paths
 import java.util.ServiceLoader
+import java.util.concurrent.ConcurrentHashMap
 import kotlin.streams.asSequence
 
 class DataSourceProviderFactory<T : DataSourceProvider>(
@@ -34,6 +35,8 @@ class DataSourceProviderFactory<T : DataSourceProvider>(
 
     private val dataProviders: MutableMap<String, T> = mutableMapOf()
 
+    private val cachingProviders = ConcurrentHashMap<Pair<String, Boolean>, T>()
+
     init {
         log.info("services for:: {}", clazz.simpleName)
 
@@ -64,6 +67,14 @@ class DataSourceProviderFactory<T : DataSourceProvider>(
 
         val provider = dataProviders[dataSourceInfo.type]!!
 
+        if (provider is DataSourceMetadataProvider && METADATA_CACHE_TTL_MS > 0) {
+            // the cache lives as long as the factory, so its decorator is created once per type
+            return cachingProviders.computeIfAbsent(dataSourceInfo.type to dataSourceInfo.remote) {
+                val decorated = if (dataSourceInfo.remote) decorate(provider) else provider
+                CachingMetadataProviderDecorator(decorated as DataSourceMetadataProvider) as T
+            }
+        }
+
         return if (dataSourceInfo.remote) decorate(provider) else provider
     }
 
@@ -0,0 +1,235 @@
+/*-
+ * #%L
+ * Arcade Connectors
+ * %%
+ * Copyright (C) 2018 - 2021 ArcadeData
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.arcadeanalytics.provider
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder
+import org.slf4j.LoggerFactory
+import java.util.concurrent.CompletableFuture
+import java.util.concurrent.CompletionException
+import java.util.concurrent.ConcurrentHashMap
+import java.util.concurrent.Executors
+import java.util.concurrent.TimeUnit
+import java.util.concurrent.atomic.AtomicBoolean
+
+/**
+ * Registry of long-lived resources shared between calls, like drivers or connection pools: a single resource per key.
+ *
+ * [lease] hands out a lease on the resource of a key, creating it on first use. A resource is closed with [dispose]
+ * once it has no leases and either it was idle for [idleTimeoutMs] or [isHealthy] returns false. The resources are
+ * checked every [evictionIntervalMs] and all of them are closed on shutdown.
+ */
+class LeasedResourceRegistry<K : Any, R : Any>(
+    private val name: String,
+    private val idleTimeoutMs: Long,
+    evictionIntervalMs: Long,
+    private val dispose: (R) -> Unit,
+    private val isHealthy: (R) -> Boolean = { true },
+) {
+    private val log = LoggerFactory.getLogger(LeasedResourceRegistry::class.java)
+
+    // a resource is created outside of the map lock: until then the entry holds a pending future
+    private val resources = ConcurrentHashMap<K, CompletableFuture<Shared>>()
+
+    private val evictor =
+        Executors.newSingleThreadScheduledExecutor(
+            ThreadFactoryBuilder()
+                .setDaemon(true)
+                .setNameFormat("$name-evictor")
+                .build(),
+        )
+
+    init {
+        evictor.scheduleWithFixedDelay(
+            { closeIdle() },
+            evictionIntervalMs,
+            evictionIntervalMs,
+            TimeUnit.MILLISECONDS,
+        )
+
+        Runtime.getRuntime().addShutdownHook(Thread({ closeAll() }, "$name-shutdown"))
+    }
+
+    /**
+     * Leases the resource of the given key, creating it with [create] on first use. The lease must be released.
+     *
+     * Concurrent callers for the same key wait for a single creation. If it fails, the error is thrown to all of them
+     * and the next call tries again.
+     */
+    fun lease(
+        key: K,
+        create: () -> R,
+    ): Lease<R> {
+        while (true) {
+            var created: CompletableFuture<Shared>? = null
+            val pending = resources.computeIfAbsent(key) { CompletableFuture<Shared>().also { created = it } }
+
+            if (pending === created) complete(key, pending, create)
+
+            val shared =
+                try {
+                    pending.join()
+                } catch (e: CompletionException) {
+                    throw e.cause ?: e
+                }
+
+            if (shared.lease()) return Leased(shared)
+
+            // closed by the evictor in the meantime
+            resources.remove(key, pending)
+        }
+    }
+
+    private fun complete(
+        key: K,
+        pending: CompletableFuture<Shared>,
+        create: () -> R,
+    ) {
+        try {
+            pending.complete(Shared(create()))
+        } catch (e: Throwable) {
+            resources.remove(key, pending)
+            pending.completeExceptionally(e)
+        }
+    }
+
+    /**
+     * Runs the block with a lease on the resource of the given key, released when the block completes.
+     */
+    fun <T> withLease(
+        key: K,
+        create: () -> R,
+        block: (Lease<R>) -> T,
+    ): T = lease(key, create).use(block)
+
+    /**
+     * Drops the resource of the lease from the registry, unless it was already replaced, and closes it once all its
+     * leases are released. Returns whether it was dropped.
+     */
+    fun evict(
+        key: K,
+        lease: Lease<R>,
+    ): Boolean {
+        val pending = resources[key] ?: return false
+        val shared = pending.createdOrNull() ?: return false
+        if (shared.resource !== lease.resource || !resources.remove(key, pending)) return false
+
+        shared.closeWhenReleased()
+        return true
+    }
+
+    /**
+     * Closes the resource of the given key, if any. Leases still open keep working until released.
+     */
+    fun invalidate(key: K) {
+        // a resource still being created is closed as soon as it is
+        resources.remove(key)?.thenAccept { shared -> shared.closeWhenReleased() }
+    }
+
+    /**
+     * Closes all the resources.
+     */
+    fun closeAll() {
+        resources.keys.forEach { key -> invalidate(key) }
+    }
+
+    private fun closeIdle() {
+        val now = System.currentTimeMillis()
+
+        resources.forEach { (key, pending) ->
+            val shared = pending.createdOrNull() ?: return@forEach
+            try {
+                if (shared.closeIfIdle(now)) {
+                    resources.remove(key, pending)
+                    log.debug("closed idle {} {}", name, shared.resource)
+                }
+            } catch (e: Exception) {
+                log.error("unable to close idle $name", e)
+            }
+        }
+    }
+
+    private fun CompletableFuture<Shared>.createdOrNull(): Shared? =
+        if (isDone && !isCompletedExceptionally) join() else null
+
+    /**
+     * A lease on a shared resource: closing it releases the lease, the resource is closed by the registry.
+     */
+    interface Lease<R> : AutoCloseable {
+        val resource: R
+
+        override fun close()
+    }
+
+    private inner class Shared(
+        val resource: R,
+    ) {
+        private var leases = 0
+        private var lastReleased = System.currentTimeMillis()
+        private var closed = false
+        private var closeWhenReleased = false
+
+        @Synchronized
+        fun lease(): Boolean {
+            if (closed || closeWhenReleased) return false
+            leases++
+            return true
+        }
+
+        @Synchronized
+        fun release() {
+            leases--
+            lastReleased = System.currentTimeMillis()
+            if (leases == 0 && closeWhenReleased) close()
+        }
+
+        @Synchronized
+        fun closeIfIdle(now: Long): Boolean {
+            if (leases > 0) return false
+            if (now - lastReleased < idleTimeoutMs && isHealthy(resource)) return false
+            close()
+            return true
+        }
+
+        @Synchronized
+        fun closeWhenReleased() {
+            closeWhenReleased = true
+            if (leases == 0) close()
+        }
+
+        private fun close() {
+            if (closed) return
+            closed = true
+            dispose(resource)
+        }
+    }
+
+    private inner class Leased(
+        private val shared: Shared,
+    ) : Lease<R> {
+        private val released = AtomicBoolean()
+
+        override val resource: R
+            get() = shared.resource
+
+        override fun close() {
+            if (released.compareAndSet(false, true)) shared.release()
+        }
+    }
+}
@@ -0,0 +1,101 @@
+/*-
+ * #%L
+ * Arcade Connectors
+ * %%
+ * Copyright (C) 2018 - 2021 ArcadeData
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.arcadeanalytics.provider
+
+import com.arcadeanalytics.data.Sprite
+import com.arcadeanalytics.data.SpritePlayer
+import com.google.common.util.concurrent.ThreadFactoryBuilder
+import java.util.concurrent.ArrayBlockingQueue
+import java.util.concurrent.ExecutionException
+import java.util.concurrent.ExecutorCompletionService
+import java.util.concurrent.Executors
+import java.util.concurrent.TimeUnit
+
+/**
+ * Runs export tasks on a bounded pool of [parallelism] threads.
+ *
+ * The tasks play sprites to a hand-off player backed by a queue of [bufferSize] events. The calling thread drains the
+ * queue into the real [SpritePlayer], so the player is never called concurrently and a slow player slows down the
+ * tasks instead of filling the memory.
+ */
+class ParallelSpriteExport(
+    private val parallelism: Int,
+    private val bufferSize: Int = 1_000,
+) {
+    /**
+     * Runs the tasks and plays what they produce to the player, returns when all the tasks are done.
+     * The first task failure cancels the others and is rethrown.
+     */
+    fun run(
+        player: SpritePlayer,
+        tasks: List<(SpritePlayer) -> Unit>,
+    ) {
+        if (tasks.isEmpty()) return
+
+        val events = ArrayBlockingQueue<(SpritePlayer) -> Unit>(bufferSize)
+
+        val handOff =
+            object : SpritePlayer {
+                override fun begin() {
+                    events.put { it.begin() }
+                }
+
+                override fun play(sprite: Sprite) {
+                    events.put { it.play(sprite) }
+                }
+
+                override fun end() {
+                    events.put { it.end() }
+                }
+            }
+
+        val executor =
+            Executors.newFixedThreadPool(
+                parallelism.coerceIn(1, tasks.size),
+                ThreadFactoryBuilder()
+                    .setDaemon(true)
+                    .setNameFormat("sprite-export-%d")
+                    .build(),
+            )
+
+        try {
+            val completion = ExecutorCompletionService<Unit>(executor)
+            tasks.forEach { task -> completion.submit { task(handOff) } }
+
+            var pending = tasks.size
+            while (pending > 0 || events.isNotEmpty()) {
+                events.poll(100, TimeUnit.MILLISECONDS)?.invoke(player)
+
+                var done = completion.poll()
+                while (done != null) {
+                    try {
+                        done.get()
+                    } catch (e: ExecutionException) {
+                        throw e.cause ?: e
+                    }
+                    pending--
+                    done = completion.poll()
+                }
+            }
+        } finally {
+            executor.shutdownNow()
+        }
+    }
+}
@@ -0,0 +1,150 @@
+/*-
+ * #%L
+ * Arcade Connectors
+ * %%
+ * Copyright (C) 2018 - 2021 ArcadeData
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.arcadeanalytics.provider
+
+import org.assertj.core.api.Assertions.assertThat
+import org.assertj.core.api.Assertions.assertThatThrownBy
+import org.junit.jupiter.api.Test
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.Executors
+import java.util.concurrent.TimeUnit
+import java.util.concurrent.atomic.AtomicInteger
+
+class CachingMetadataProviderDecoratorTest {
+    private val dataSource =
+        DataSourceInfo(
+            id = 1L,
+            type = "TEST",
+            name = "testDataSource",
+            server = "1.2.3.4",
+            port = 1234,
+            username = "admin",
+            password = "admin",
+            database = "testDb",
+        )
+
+    private val calls = AtomicInteger()
+
+    private var now = 0L
+
+    private var failing = false
+
+    private val provider =
+        object : DataSourceMetadataProvider {
+            override fun fetchMetadata(dataSource: DataSourceInfo): DataSourceMetadata {
+                val call = calls.incrementAndGet()
+                if (failing) throw IllegalStateException("unreachable")
+
+                return metadata(call.toLong())
+            }
+
+            override fun supportedDataSourceTypes(): Set<String> = setOf("TEST")
+        }
+
+    private fun metadata(cardinality: Long) =
+        DataSourceMetadata(mapOf("Person" to TypeClass("Person", cardinality, mapOf())), mapOf())
+
+    // the direct executor refreshes synchronously
+    private fun cache() =
+        CachingMetadataProviderDecorator(provider, ttlMs = 100, staleMs = 100, executor = Runnable::run) { now }
+
+    private fun cardinalityOf(metadata: DataSourceMetadata) = metadata.nodesClasses["Person"]!!.cardinality
+
+    @Test
+    fun shouldReturnCachedMetadataWithinTtl() {
+        val cache = cache()
+
+        assertThat(cardinalityOf(cache.fetchMetadata(dataSource))).isEqualTo(1L)
+
+        now = 99
+        assertThat(cardinalityOf(cache.fetchMetadata(dataSource))).isEqualTo(1L)
+        assertThat(calls.get()).isEqualTo(1)
+    }
+
+    @Test
+    fun shouldReturnStaleMetadataWhileRefreshing() {
+        val cache = cache()
+
+        cache.fetchMetadata(dataSource)
+
+        now = 150
+        // refreshed synchronously, but the stale value is returned
+        assertThat(cardinalityOf(cache.fetchMetadata(dataSource))).isEqualTo(1L)
+        assertThat(cardinalityOf(cache.fetchMetadata(dataSource))).isEqualTo(2L)
+        assertThat(calls.get()).isEqualTo(2)
+    }
+
+    @Test
+    fun shouldKeepStaleMetadataWhenRefreshFails() {
+        val cache = cache()
+
+        cache.fetchMetadata(dataSource)
+
+        now = 150
+        failing = true
+        assertThat(cardinalityOf(cache.fetchMetadata(dataSource))).isEqualTo(1L)
+
+        now = 250
+        assertThatThrownBy { cache.fetchMetadata(dataSource) }.isInstanceOf(IllegalStateException::class.java)
+    }
+
+    @Test
+    fun shouldNotShareMetadataBetweenDifferentSettings() {
+        val cache = cache()
+
+        cache.fetchMetadata(dataSource)
+        cache.fetchMetadata(dataSource.copy(aggregationEnabled = true))
+        cache.fetchMetadata(dataSource.copy(password = "changed"))
+
+        assertThat(calls.get()).isEqualTo(3)
+    }
+
+    @Test
+    fun shouldShareTheComputationBetweenConcurrentCallers() {
+        val started = CountDownLatch(1)
+        val release = CountDownLatch(1)
+
+        val slow =
+            object : DataSourceMetadataProvider {
+                override fun fetchMetadata(dataSource: DataSourceInfo): DataSourceMetadata {
+                    calls.incrementAndGet()
+                    started.countDown()
+                    release.await()
+                    return metadata(42)
+                }
+
+                override fun supportedDataSourceTypes(): Set<String> = setOf("TEST")
+            }
+
+        val cache = CachingMetadataProviderDecorator(slow)
+
+        val callers = Executors.newFixedThreadPool(8)
+        val results = (1..8).map { callers.submit<DataSourceMetadata> { cache.fetchMetadata(dataSource) } }
+
+        assertThat(started.await(5, TimeUnit.SECONDS)).isTrue()
+        Thread.sleep(100)
+        release.countDown()
+
+        assertThat(results.map { cardinalityOf(it.get(5, TimeUnit.SECONDS)) }).containsOnly(42L)
+        assertThat(calls.get()).isEqualTo(1)
+
+        callers.shutdown()
+    }
+}
@@ -0,0 +1,163 @@
+/*-
+ * #%L
+ * Arcade Connectors
+ * %%
+ * Copyright (C) 2018 - 2021 ArcadeData
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.arcadeanalytics.provider
+
+import org.assertj.core.api.Assertions.assertThat
+import org.assertj.core.api.Assertions.assertThatThrownBy
+import org.junit.jupiter.api.AfterEach
+import org.junit.jupiter.api.Test
+import java.util.concurrent.CopyOnWriteArrayList
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.Executors
+import java.util.concurrent.TimeUnit
+
+class LeasedResourceRegistryTest {
+    private class Resource(
+        val name: String,
+    ) {
+        @Volatile
+        var healthy = true
+    }
+
+    private val closed = CopyOnWriteArrayList<String>()
+
+    private var created = 0
+
+    private val registry =
+        LeasedResourceRegistry<String, Resource>(
+            "test-resource",
+            idleTimeoutMs = 200,
+            evictionIntervalMs = 20,
+            dispose = { resource -> closed.add(resource.name) },
+            isHealthy = { resource -> resource.healthy },
+        )
+
+    private fun create(key: String): () -> Resource =
+        {
+            created++
+            Resource("$key-$created")
+        }
+
+    @AfterEach
+    fun tearDown() {
+        registry.closeAll()
+    }
+
+    @Test
+    fun shouldShareTheResourceOfAKey() {
+        val first = registry.withLease("a", create("a")) { lease -> lease.resource }
+        val second = registry.withLease("a", create("a")) { lease -> lease.resource }
+        val other = registry.withLease("b", create("b")) { lease -> lease.resource }
+
+        assertThat(second).isSameAs(first)
+        assertThat(other).isNotSameAs(first)
+        assertThat(created).isEqualTo(2)
+    }
+
+    @Test
+    fun shouldCloseIdleResources() {
+        val first = registry.withLease("a", create("a")) { lease -> lease.resource }
+
+        Thread.sleep(500)
+
+        assertThat(closed).containsExactly(first.name)
+        assertThat(registry.withLease("a", create("a")) { lease -> lease.resource }).isNotSameAs(first)
+    }
+
+    @Test
+    fun shouldKeepLeasedResourcesOpen() {
+        val lease = registry.lease("a", create("a"))
+        lease.resource.healthy = false
+
+        Thread.sleep(500)
+        assertThat(closed).isEmpty()
+
+        lease.close()
+        // released twice, counted once
+        lease.close()
+
+        Thread.sleep(100)
+        assertThat(closed).containsExactly(lease.resource.name)
+    }
+
+    @Test
+    fun shouldCloseEvictedResourcesWhenReleased() {
+        val first = registry.lease("a", create("a"))
+        val second = registry.lease("a", create("a"))
+
+        assertThat(registry.evict("a", first)).isTrue()
+        assertThat(registry.evict("a", second)).isFalse()
+
+        // a new resource is created for the next lease
+        assertThat(registry.withLease("a", create("a")) { lease -> lease.resource }).isNotSameAs(first.resource)
+
+        first.close()
+        assertThat(closed).isEmpty()
+
+        second.close()
+        assertThat(closed).containsExactly(first.resource.name)
+    }
+
+    @Test
+    fun shouldRetryAFailedCreation() {
+        assertThatThrownBy { registry.lease("a") { throw IllegalStateException("unreachable") } }
+            .isInstanceOf(IllegalStateException::class.java)
+
+        assertThat(registry.withLease("a", create("a")) { lease -> lease.resource.name }).isEqualTo("a-1")
+    }
+
+    @Test
+    fun shouldCloseAResourceInvalidatedWhileCreated() {
+        val creating = CountDownLatch(1)
+        val release = CountDownLatch(1)
+
+        val executor = Executors.newSingleThreadExecutor()
+        val slow =
+            executor.submit<String> {
+                registry.withLease("a", {
+                    creating.countDown()
+                    release.await()
+                    create("a")()
+                }) { lease -> lease.resource.name }
+            }
+
+        assertThat(creating.await(5, TimeUnit.SECONDS)).isTrue()
+
+        // not blocked by the creation in progress
+        registry.invalidate("a")
+        release.countDown()
+
+        // the resource of the invalidated entry is closed, the lease gets a new one
+        assertThat(slow.get(5, TimeUnit.SECONDS)).isEqualTo("a-2")
+        assertThat(closed).containsExactly("a-1")
+
+        executor.shutdown()
+    }
+
+    @Test
+    fun shouldCloseAllResources() {
+        registry.withLease("a", create("a")) { }
+        registry.withLease("b", create("b")) { }
+
+        registry.closeAll()
+
+        assertThat(closed).containsExactlyInAnyOrder("a-1", "b-2")
+    }
+}
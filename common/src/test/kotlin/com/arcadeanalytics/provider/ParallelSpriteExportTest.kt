@@ -0,0 +1,77 @@
+/*-
+ * #%L
+ * Arcade Connectors
+ * %%
+ * Copyright (C) 2018 - 2021 ArcadeData
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.arcadeanalytics.provider
+
+import com.arcadeanalytics.data.Sprite
+import com.arcadeanalytics.data.SpritePlayer
+import org.assertj.core.api.Assertions.assertThat
+import org.assertj.core.api.Assertions.assertThatThrownBy
+import org.junit.jupiter.api.Test
+
+class ParallelSpriteExportTest {
+    private val threads = mutableSetOf<String>()
+    private val ids = mutableListOf<String>()
+    private var ends = 0
+
+    private val player =
+        object : SpritePlayer {
+            override fun begin() {
+            }
+
+            override fun play(sprite: Sprite) {
+                threads.add(Thread.currentThread().name)
+                ids.add(sprite.valueOf("id"))
+            }
+
+            override fun end() {
+                ends++
+            }
+        }
+
+    @Test
+    fun shouldPlayAllSpritesOnCallingThread() {
+        val tasks =
+            (1..8).map { task ->
+                { processor: SpritePlayer ->
+                    repeat(1000) { i -> processor.play(Sprite().add("id", "$task-$i")) }
+                    processor.end()
+                }
+            }
+
+        ParallelSpriteExport(parallelism = 4, bufferSize = 10).run(player, tasks)
+
+        assertThat(ids).hasSize(8000).doesNotHaveDuplicates()
+        assertThat(ends).isEqualTo(8)
+        assertThat(threads).containsOnly(Thread.currentThread().name)
+    }
+
+    @Test
+    fun shouldRethrowTaskFailure() {
+        val tasks =
+            listOf(
+                { processor: SpritePlayer -> repeat(100_000) { i -> processor.play(Sprite().add("id", "$i")) } },
+                { _: SpritePlayer -> throw IllegalStateException("failed") },
+            )
+
+        assertThatThrownBy { ParallelSpriteExport(parallelism = 2, bufferSize = 1).run(player, tasks) }
+            .isInstanceOf(IllegalStateException::class.java)
+            .hasMessage("failed")
+    }
+}
@@ -0,0 +1,124 @@
+/*-
+ * #%L
+ * Arcade Connectors
+ * %%
+ * Copyright (C) 2018 - 2021 ArcadeData
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.arcadeanalytics.provider.gremlin
+
+import com.arcadeanalytics.provider.DataSourceInfo
+import com.arcadeanalytics.provider.LeasedResourceRegistry
+import org.apache.tinkerpop.gremlin.driver.Client
+import org.apache.tinkerpop.gremlin.driver.Cluster
+import org.slf4j.LoggerFactory
+
+/**
+ * Registry of the [Cluster]s shared by the gremlin providers: a single cluster, with its connection pool and a
+ * client on top of it, per server and credentials.
+ *
+ * [withClient] leases the shared client for the duration of a call. A cluster without leases is closed after
+ * `GREMLIN_CLUSTER_IDLE_TIMEOUT_MS`, or as soon as none of its hosts is available; all the clusters are closed on
+ * shutdown.
+ */
+object GremlinClusterRegistry {
+    private val log = LoggerFactory.getLogger(GremlinClusterRegistry::class.java)
+
+    private val IDLE_TIMEOUT_MS = java.lang.Long.getLong("GREMLIN_CLUSTER_IDLE_TIMEOUT_MS", 600_000L)
+    private val EVICTION_INTERVAL_MS = java.lang.Long.getLong("GREMLIN_CLUSTER_EVICTION_INTERVAL_MS", 30_000L)
+
+    private val clusters =
+        LeasedResourceRegistry<List<Any?>, SharedCluster>(
+            "gremlin-cluster",
+            IDLE_TIMEOUT_MS,
+            EVICTION_INTERVAL_MS,
+            dispose = { shared -> shared.close() },
+            isHealthy = { shared -> shared.isHealthy() },
+        )
+
+    /**
+     * Runs the block with the shared client of the given data source, creating it on first use.
+     * The cluster is evicted when the block fails and none of its hosts is available anymore.
+     */
+    fun <T> withClient(
+        dataSource: DataSourceInfo,
+        block: (Client) -> T,
+    ): T {
+        val key = keyOf(dataSource)
+
+        return clusters.withLease(key, { createShared(dataSource) }) { lease ->
+            try {
+                block(lease.resource.client)
+            } catch (e: Exception) {
+                if (!lease.resource.isHealthy() && clusters.evict(key, lease)) {
+                    log.warn("no hosts available for data source {}, evicting its cluster", dataSource.id)
+                }
+                throw e
+            }
+        }
+    }
+
+    /**
+     * Closes the cluster of the given data source, if any. Calls in progress complete before it is closed.
+     */
+    fun invalidate(dataSource: DataSourceInfo) {
+        clusters.invalidate(keyOf(dataSource))
+    }
+
+    /**
+     * Closes all the clusters.
+     */
+    fun closeAll() {
+        clusters.closeAll()
+    }
+
+    private fun keyOf(dataSource: DataSourceInfo): List<Any?> =
+        listOf(
+            dataSource.type,
+            dataSource.server,
+            dataSource.port,
+            dataSource.username,
+            dataSource.password,
+            dataSource.enableSsl,
+            dataSource.skipCertValidation,
+        )
+
+    private fun createShared(dataSource: DataSourceInfo): SharedCluster {
+        log.info("creating gremlin cluster for '{}:{}' ", dataSource.server, dataSource.port)
+
+        val cluster = getCluster(dataSource)
+        try {
+            return SharedCluster(cluster, cluster.connect<Client>().init())
+        } catch (e: Exception) {
+            cluster.close()
+            throw e
+        }
+    }
+
+    private class SharedCluster(
+        val cluster: Cluster,
+        val client: Client,
+    ) {
+        fun isHealthy(): Boolean = cluster.availableHosts().isNotEmpty()
+
+        fun close() {
+            try {
+                client.close()
+            } finally {
+                cluster.close()
+            }
+        }
+    }
+}
@@ -31,7 +31,6 @@ import com.google.common.collect.Sets
 import org.apache.commons.lang3.StringUtils
 import org.apache.commons.lang3.StringUtils.wrap
 import org.apache.tinkerpop.gremlin.driver.Client
-import org.apache.tinkerpop.gremlin.driver.Result
 import org.apache.tinkerpop.gremlin.structure.Edge
 import org.apache.tinkerpop.gremlin.structure.Element
 import org.apache.tinkerpop.gremlin.structure.Vertex
@@ -42,21 +41,19 @@ import java.util.HashSet
 class GremlinDataProvider : DataSourceGraphDataProvider {
     private val log = LoggerFactory.getLogger(GremlinDataProvider::class.java)
 
+    private val degreeCounter = GremlinDegreeCounter()
+
     override fun fetchData(
         dataSource: DataSourceInfo,
         query: String,
         limit: Int,
     ): GraphData {
-        val cluster = getCluster(dataSource)
-
-        val client = cluster.connect<Client>().init()
         try {
-            return getGraphData(dataSource, query, limit, client)
+            return GremlinClusterRegistry.withClient(dataSource) { client ->
+                getGraphData(dataSource, query, limit, client)
+            }
         } catch (e: Exception) {
             throw RuntimeException(e)
-        } finally {
-            client.close()
-            cluster.close()
         }
     }
 
@@ -70,6 +67,7 @@ class GremlinDataProvider : DataSourceGraphDataProvider {
         val cytoEdges = HashSet<CytoData>()
         val edgeClasses = HashMap<String, Map<String, Any>>()
         val nodeClasses = HashMap<String, Map<String, Any>>()
+        val vertexRecords = HashMap<String, MutableList<MutableMap<String, Any>>>()
 
         log.info("fetching data from '{}' with query '{}' ", dataSource.id, query)
 
@@ -78,8 +76,14 @@ class GremlinDataProvider : DataSourceGraphDataProvider {
                 .submit(query)
                 .asSequence()
                 .take(limit)
-                .map { r -> toCytoData(dataSource, r, client) }
-                .map { data ->
+                .map { r -> r.element }
+                .map { element ->
+                    val data = toCytoData(dataSource, element)
+                    if (element is Vertex) {
+                        vertexRecords.getOrPut(element.id().toString()) { ArrayList() }.add(data.data.record)
+                    }
+                    data
+                }.map { data ->
                     if (data.group == "nodes") {
                         cytoNodes.add(data)
                         populateClasses(nodeClasses, data)
@@ -94,6 +98,8 @@ class GremlinDataProvider : DataSourceGraphDataProvider {
                 .toSet()
                 .toTypedArray()
 
+        countEdges(vertexRecords, client)
+
         if (ids.isNotEmpty()) {
             val load = load(dataSource, ids, client)
 
@@ -111,13 +117,30 @@ class GremlinDataProvider : DataSourceGraphDataProvider {
         return graphData
     }
 
+    /**
+     * Fills `@in`, `@out` and `@edgeCount` of the given vertex records, keyed by native id.
+     */
+    private fun countEdges(
+        vertexRecords: Map<String, List<MutableMap<String, Any>>>,
+        client: Client,
+    ) {
+        if (vertexRecords.isEmpty()) return
+
+        degreeCounter
+            .count(client, vertexRecords.keys)
+            .forEach { (id, degree) ->
+                vertexRecords[id]?.forEach { record ->
+                    (record["@in"] as MutableMap<String, Any>).putAll(degree.ins)
+                    (record["@out"] as MutableMap<String, Any>).putAll(degree.outs)
+                    record["@edgeCount"] = degree.edgeCount
+                }
+            }
+    }
+
     private fun toCytoData(
         dataSource: DataSourceInfo,
-        result: Result,
-        client: Client,
+        element: Element,
     ): CytoData {
-        val element = result.element
-
         // id clean
         val id = nativeIdToArcadeId(dataSource, element.id().toString())
 
@@ -136,37 +159,8 @@ class GremlinDataProvider : DataSourceGraphDataProvider {
         val cyto =
             when (element) {
                 is Vertex -> {
-                    outs.putAll(
-                        client
-                            .submit("g.V('${element.id()}').outE()")
-                            .asSequence()
-                            .map { r1 -> r1.edge }
-                            .map { e1 -> e1.label() }
-                            .groupingBy { it }
-                            .eachCount(),
-                    )
-
-                    ins.putAll(
-                        client
-                            .submit("g.V('${element.id()}').inE()")
-                            .asSequence()
-                            .map { r1 -> r1.edge }
-                            .map { e1 -> e1.label() }
-                            .groupingBy { it }
-                            .eachCount(),
-                    )
-
-                    var edgeCount =
-                        ins.values
-                            .asSequence()
-                            .map { o -> o as Int }
-                            .sum()
-                    edgeCount +=
-                        outs.values
-                            .asSequence()
-                            .map { o -> o as Int }
-                            .sum()
-                    record["@edgeCount"] = edgeCount
+                    // filled in batch by countEdges
+                    record["@edgeCount"] = 0
 
                     val data = Data(id = id, record = record)
                     CytoData(classes = element.label(), data = data, group = "nodes")
@@ -354,17 +348,7 @@ class GremlinDataProvider : DataSourceGraphDataProvider {
         try {
             log.info("testing connection to :: '{}' ", dataSource.server)
 
-            val cluster = getCluster(dataSource)
-
-            cluster.availableHosts().stream().forEach { h -> println("h = $h") }
-
-            val client = cluster.connect<Client>().init()
-
-            client.submit("g.V().count()")
-
-            client.close()
-
-            cluster.close()
+            GremlinClusterRegistry.withClient(dataSource) { client -> client.submit("g.V().count()").one() }
 
             log.info("connection works fine:: '{}' ", dataSource.server)
 
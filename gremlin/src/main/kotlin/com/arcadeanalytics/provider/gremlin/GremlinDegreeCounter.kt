@@ -0,0 +1,92 @@
+/*-
+ * #%L
+ * Arcade Connectors
+ * %%
+ * Copyright (C) 2018 - 2021 ArcadeData
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.arcadeanalytics.provider.gremlin
+
+import org.apache.tinkerpop.gremlin.driver.Client
+import org.apache.tinkerpop.gremlin.driver.Result
+import org.slf4j.LoggerFactory
+
+private val DEGREE_BATCH_SIZE = Integer.getInteger("GREMLIN_DEGREE_BATCH_SIZE", 500)
+
+/**
+ * In and out edge counts by label of a vertex.
+ */
+data class Degree(
+    val ins: Map<String, Int>,
+    val outs: Map<String, Int>,
+) {
+    val edgeCount: Int
+        get() = ins.values.sum() + outs.values.sum()
+}
+
+/**
+ * Counts the edges of many vertices with one traversal per chunk of [batchSize] ids, grouping them by label on the
+ * server, instead of fetching the edges of each vertex. The ids are sent as bindings.
+ */
+class GremlinDegreeCounter(
+    private val batchSize: Int = DEGREE_BATCH_SIZE,
+) {
+    private val log = LoggerFactory.getLogger(GremlinDegreeCounter::class.java)
+
+    /**
+     * Returns the degrees of the given vertices, keyed by native id as a string.
+     */
+    fun count(
+        client: Client,
+        ids: Collection<String>,
+    ): Map<String, Degree> = count(ids) { query, bindings -> client.submit(query, bindings) }
+
+    /**
+     * Returns the degrees of the given vertices, sending the traversals and their bindings with [submit].
+     */
+    fun count(
+        ids: Collection<String>,
+        submit: (String, Map<String, Any>) -> Iterable<Result>,
+    ): Map<String, Degree> {
+        val query =
+            """
+            g.V(ids)
+                .project('id', 'out', 'in')
+                .by(id)
+                .by(outE().groupCount().by(label))
+                .by(inE().groupCount().by(label))
+            """.trimIndent()
+
+        val degrees = HashMap<String, Degree>()
+
+        ids.chunked(batchSize).forEach { chunk ->
+            log.debug("counting edges of {} vertices", chunk.size)
+
+            submit(query, mapOf("ids" to chunk))
+                .forEach { result ->
+                    val row = result.getObject() as Map<*, *>
+                    degrees[row["id"].toString()] = Degree(toCounts(row["in"]), toCounts(row["out"]))
+                }
+        }
+
+        return degrees
+    }
+
+    private fun toCounts(groupCount: Any?): Map<String, Int> =
+        (groupCount as Map<*, *>?)
+            .orEmpty()
+            .entries
+            .associate { (label, count) -> label.toString() to (count as Number).toInt() }
+}
@@ -0,0 +1,162 @@
+/*-
+ * #%L
+ * Arcade Connectors
+ * %%
+ * Copyright (C) 2018 - 2021 ArcadeData
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.arcadeanalytics.provider.gremlin
+
+import org.apache.tinkerpop.gremlin.driver.Client
+import org.apache.tinkerpop.gremlin.driver.Result
+import org.slf4j.LoggerFactory
+
+/**
+ * How [GremlinElementPager] reads all the elements of a traversal.
+ */
+enum class GremlinExportStrategy {
+    /**
+     * Fixed size pages with `range(low, high)`: works everywhere, but each page traverses the previous ones.
+     */
+    RANGE,
+
+    /**
+     * Pages ordered by id, each one starting after the last id of the previous one with `has(id, gt(last))`.
+     * Needs comparable ids, as JanusGraph ones.
+     */
+    KEYSET,
+
+    /**
+     * A single traversal, streamed by the server in batches of `resultIterationBatchSize` results.
+     * Needs a script evaluation timeout long enough for the whole export.
+     */
+    STREAM,
+}
+
+/**
+ * Reads all the elements of a traversal, as `g.V()` or `g.E()`, with the given [strategy] and pages of [batchSize]
+ * elements. Paging parameters are sent as bindings.
+ *
+ * A failed query is run again up to [retries] times: the results already handed to the consumer are skipped, so
+ * nothing is played twice as long as the backend returns them in the same order.
+ */
+class GremlinElementPager(
+    private val client: Client,
+    private val strategy: GremlinExportStrategy,
+    private val batchSize: Int,
+    private val retries: Int = 0,
+) {
+    private val log = LoggerFactory.getLogger(GremlinElementPager::class.java)
+
+    /**
+     * Hands each element to the consumer as soon as it is received, returns the number of elements read.
+     */
+    fun forEach(
+        traversal: String,
+        bindings: Map<String, Any> = emptyMap(),
+        consumer: (Result) -> Unit,
+    ): Long =
+        when (strategy) {
+            GremlinExportStrategy.RANGE -> byRange(traversal, bindings, consumer)
+            GremlinExportStrategy.KEYSET -> byKeyset(traversal, bindings, consumer)
+            GremlinExportStrategy.STREAM -> stream(traversal, bindings, consumer)
+        }
+
+    private fun byRange(
+        traversal: String,
+        bindings: Map<String, Any>,
+        consumer: (Result) -> Unit,
+    ): Long {
+        var fetched = 0L
+        do {
+            val page =
+                stream(
+                    "$traversal.range(low, high)",
+                    bindings + mapOf("low" to fetched, "high" to fetched + batchSize),
+                    consumer,
+                )
+            fetched += page
+        } while (page == batchSize.toLong())
+
+        return fetched
+    }
+
+    private fun byKeyset(
+        traversal: String,
+        bindings: Map<String, Any>,
+        consumer: (Result) -> Unit,
+    ): Long {
+        var fetched = 0L
+        var last: Any? = null
+        do {
+            val after = last
+            val filter = if (after == null) "" else ".has(id, gt(last))"
+            val paging =
+                if (after == null) mapOf("batch" to batchSize) else mapOf("last" to after, "batch" to batchSize)
+
+            val page =
+                stream("$traversal$filter.order().by(id).limit(batch)", bindings + paging) { r ->
+                    last = r.element.id()
+                    consumer(r)
+                }
+            fetched += page
+        } while (page == batchSize.toLong())
+
+        return fetched
+    }
+
+    private fun stream(
+        query: String,
+        bindings: Map<String, Any>,
+        consumer: (Result) -> Unit,
+    ): Long {
+        log.debug("fetching elements with query '{}' and bindings {}", query, bindings)
+
+        var fetched = 0L
+        var attempt = 0
+        while (true) {
+            try {
+                var seen = 0L
+                client
+                    .submit(query, bindings)
+                    .forEach { r ->
+                        if (seen++ >= fetched) {
+                            try {
+                                consumer(r)
+                            } catch (e: Exception) {
+                                throw ConsumerFailure(e)
+                            }
+                            fetched++
+                        }
+                    }
+
+                return fetched
+            } catch (e: ConsumerFailure) {
+                throw e.cause!!
+            } catch (e: Exception) {
+                if (attempt++ >= retries) throw e
+
+                log.warn("query '{}' failed after {} elements, retrying ({}/{})", query, fetched, attempt, retries, e)
+            }
+        }
+    }
+}
+
+/**
+ * Failures of the consumer are not retried.
+ */
+private class ConsumerFailure(
+    cause: Exception,
+) : RuntimeException(cause)
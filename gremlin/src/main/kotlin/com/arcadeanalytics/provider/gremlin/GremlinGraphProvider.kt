@@ -8,13 +8,15 @@ import com.arcadeanalytics.provider.IndexConstants.ARCADE_EDGE_TYPE
 import com.arcadeanalytics.provider.IndexConstants.ARCADE_ID
 import com.arcadeanalytics.provider.IndexConstants.ARCADE_NODE_TYPE
 import com.arcadeanalytics.provider.IndexConstants.ARCADE_TYPE
+import com.arcadeanalytics.provider.ParallelSpriteExport
 import com.google.common.collect.Sets
 import org.apache.commons.lang3.StringUtils
 import org.apache.tinkerpop.gremlin.driver.Client
+import org.apache.tinkerpop.gremlin.driver.Result
 import org.apache.tinkerpop.gremlin.structure.VertexProperty
 import org.slf4j.LoggerFactory
+import java.util.concurrent.atomic.AtomicInteger
 import java.util.regex.Pattern
-import kotlin.math.min
 
 /*-
  * #%L
@@ -36,24 +38,50 @@ import kotlin.math.min
  * #L%
  */
 
-class GremlinGraphProvider : DataSourceGraphProvider {
+private val EXPORT_BATCH_SIZE = Integer.getInteger("GREMLIN_EXPORT_BATCH_SIZE", 10_000)
+
+private val EXPORT_STRATEGY =
+    GremlinExportStrategy.valueOf(System.getProperty("GREMLIN_EXPORT_STRATEGY", "RANGE").uppercase())
+
+private val EXPORT_PARALLELISM = Integer.getInteger("GREMLIN_EXPORT_PARALLELISM", 1)
+
+private val EXPORT_RETRIES = Integer.getInteger("GREMLIN_EXPORT_RETRIES", 2)
+
+/**
+ * Exports all the vertices and then all the edges, read with the given [strategy], see [GremlinElementPager].
+ * Edge ids are composite on most backends, so with [GremlinExportStrategy.KEYSET] edges are paged by range.
+ *
+ * With a [parallelism] greater than one the graph is partitioned by label: the vertices and the edges of each label
+ * are read concurrently over the connection pool of the shared cluster, see [ParallelSpriteExport].
+ * Each query is retried up to [retries] times.
+ */
+class GremlinGraphProvider(
+    private val strategy: GremlinExportStrategy = EXPORT_STRATEGY,
+    private val batchSize: Int = EXPORT_BATCH_SIZE,
+    private val parallelism: Int = EXPORT_PARALLELISM,
+    private val retries: Int = EXPORT_RETRIES,
+) : DataSourceGraphProvider {
     private val log = LoggerFactory.getLogger(GremlinGraphProvider::class.java)
 
     private val allFields: Pattern
 
+    private val edgeStrategy =
+        if (strategy == GremlinExportStrategy.KEYSET) GremlinExportStrategy.RANGE else strategy
+
     override fun provideTo(
         dataSource: DataSourceInfo,
         player: SpritePlayer,
     ) {
-        val cluster = getCluster(dataSource)
-        val client = cluster.connect<Client>().init()
         try {
-            provideNodes(dataSource, player, client)
-            provideEdges(dataSource, player, client)
-            client.close()
+            GremlinClusterRegistry.withClient(dataSource) { client ->
+                if (parallelism > 1) {
+                    provideInParallel(dataSource, player, client)
+                } else {
+                    provideNodes(dataSource, player, GremlinElementPager(client, strategy, batchSize, retries))
+                    provideEdges(dataSource, player, GremlinElementPager(client, edgeStrategy, batchSize, retries))
+                }
+            }
         } finally {
-            cluster.close()
-            client.close()
             player.end()
         }
     }
@@ -61,70 +89,124 @@ class GremlinGraphProvider : DataSourceGraphProvider {
     private fun provideNodes(
         dataSource: DataSourceInfo,
         processor: SpritePlayer,
-        client: Client,
+        pager: GremlinElementPager,
     ) {
-        val nodes = client.submit("g.V().count()").one().long
-        var fetched: Long = 0
-        var skip: Long = 0
-        var limit = min(nodes, 1000)
-        log.info("start indexing of data-source {} - total nodes:: {} ", dataSource.id, nodes)
-        while (fetched < nodes) {
-            val resultSet = client.submit("g.V().range($skip , $limit)")
-            for (r in resultSet) {
-                val element = r.vertex
-                val sprite = Sprite()
-                element
-                    .keys()
-                    .asSequence()
-                    .flatMap { key: String? -> element.properties<Any>(key).asSequence() }
-                    .forEach { v: VertexProperty<Any?> -> sprite.add(v.label(), v.value()) }
-
-                sprite
-                    .add(ARCADE_ID, dataSource.id.toString() + "_" + cleanOrientId(element.id().toString()))
-                    .add(ARCADE_TYPE, ARCADE_NODE_TYPE)
-                    .add("@class", element.label())
-
-                processor.play(sprite)
-                fetched++
-            }
-            skip = limit
-            limit += 10000
-        }
+        log.info("start indexing of data-source {} - nodes with strategy {} ", dataSource.id, strategy)
+
+        val nodes = pager.forEach("g.V()") { r -> processor.play(toNodeSprite(dataSource, r)) }
+
+        log.info("data-source {} - total nodes:: {} ", dataSource.id, nodes)
     }
 
     private fun provideEdges(
         dataSource: DataSourceInfo,
         processor: SpritePlayer,
+        pager: GremlinElementPager,
+    ) {
+        log.info("start indexing of data-source {} - edges", dataSource.id)
+
+        val edges = pager.forEach("g.E()") { r -> toEdgeSprite(dataSource, r)?.let { processor.play(it) } }
+
+        log.info("data-source {} - total edges:: {} ", dataSource.id, edges)
+    }
+
+    private fun provideInParallel(
+        dataSource: DataSourceInfo,
+        player: SpritePlayer,
         client: Client,
     ) {
-        val edges = client.submit("g.E().count()").one().long
-        var fetched: Long = 0
-        var skip: Long = 0
-        var limit = min(edges, 1000)
-        log.info("start indexing of data-source {} - total edges:: {} ", dataSource.id, edges)
-        while (fetched < edges) {
-            val resultSet = client.submit("g.E().range($skip , $limit)")
-            for (r in resultSet) {
-                val element = r.element
-                if (element.keys().isNotEmpty()) {
-                    val sprite = Sprite()
-                    element
-                        .keys()
-                        .asSequence()
-                        .forEach { k: String? -> sprite.add(k!!, element.value<Any>(k).toString()) }
-
-                    sprite
-                        .add(ARCADE_ID, dataSource.id.toString() + "_" + cleanOrientId(element.id().toString()))
-                        .add(ARCADE_TYPE, ARCADE_EDGE_TYPE)
-                        .add("@class", element.label())
-
-                    processor.play(sprite)
-                }
-                fetched++
+        val vertexLabels = labelsOf(client, "g.V()")
+        val edgeLabels = labelsOf(client, "g.E()")
+
+        val partitions = vertexLabels.size + edgeLabels.size
+        val done = AtomicInteger()
+
+        log.info(
+            "start indexing of data-source {} - {} vertex and {} edge partitions on {} threads",
+            dataSource.id,
+            vertexLabels.size,
+            edgeLabels.size,
+            parallelism,
+        )
+
+        fun partition(
+            traversal: String,
+            label: String,
+            pager: GremlinElementPager,
+            toSprite: (Result) -> Sprite?,
+        ): (SpritePlayer) -> Unit =
+            { processor ->
+                val count =
+                    pager.forEach("$traversal.hasLabel(partition)", mapOf("partition" to label)) { r ->
+                        toSprite(r)?.let { processor.play(it) }
+                    }
+
+                log.info(
+                    "data-source {} - partition {} '{}' done:: {} ({}/{})",
+                    dataSource.id,
+                    traversal,
+                    label,
+                    count,
+                    done.incrementAndGet(),
+                    partitions,
+                )
             }
-            skip = limit
-            limit += 10000
-        }
+
+        val nodes = GremlinElementPager(client, strategy, batchSize, retries)
+        val edges = GremlinElementPager(client, edgeStrategy, batchSize, retries)
+
+        val tasks =
+            vertexLabels.map { label -> partition("g.V()", label, nodes) { r -> toNodeSprite(dataSource, r) } } +
+                edgeLabels.map { label -> partition("g.E()", label, edges) { r -> toEdgeSprite(dataSource, r) } }
+
+        ParallelSpriteExport(parallelism).run(player, tasks)
+    }
+
+    private fun labelsOf(
+        client: Client,
+        traversal: String,
+    ): List<String> =
+        client
+            .submit("$traversal.label().dedup()")
+            .all()
+            .get()
+            .map { r -> r.string }
+
+    private fun toNodeSprite(
+        dataSource: DataSourceInfo,
+        r: Result,
+    ): Sprite {
+        val element = r.vertex
+        val sprite = Sprite()
+        element
+            .keys()
+            .asSequence()
+            .flatMap { key: String? -> element.properties<Any>(key).asSequence() }
+            .forEach { v: VertexProperty<Any?> -> sprite.add(v.label(), v.value()) }
+
+        return sprite
+            .add(ARCADE_ID, dataSource.id.toString() + "_" + cleanOrientId(element.id().toString()))
+            .add(ARCADE_TYPE, ARCADE_NODE_TYPE)
+            .add("@class", element.label())
+    }
+
+    private fun toEdgeSprite(
+        dataSource: DataSourceInfo,
+        r: Result,
+    ): Sprite? {
+        val element = r.element
+        if (element.keys().isEmpty()) return null
+
+        val sprite = Sprite()
+        element
+            .keys()
+            .asSequence()
+            .forEach { k: String? -> sprite.add(k!!, element.value<Any>(k).toString()) }
+
+        return sprite
+            .add(ARCADE_ID, dataSource.id.toString() + "_" + cleanOrientId(element.id().toString()))
+            .add(ARCADE_TYPE, ARCADE_EDGE_TYPE)
+            .add("@class", element.label())
     }
 
     private fun cleanOrientId(id: String): String =
@@ -31,7 +31,29 @@ import com.arcadeanalytics.provider.mapType
 import org.apache.tinkerpop.gremlin.driver.Client
 import org.slf4j.LoggerFactory
 
-class GremlinMetadataProvider : DataSourceMetadataProvider {
+private val METADATA_SINGLE_PASS = System.getProperty("GREMLIN_METADATA_SINGLE_PASS", "true").toBoolean()
+
+private val METADATA_SAMPLE_RATE = System.getProperty("GREMLIN_METADATA_SAMPLE_RATE", "1.0").toDouble()
+
+private val METADATA_SAMPLE_SIZE = Integer.getInteger("GREMLIN_METADATA_SAMPLE_SIZE", 0)
+
+private val METADATA_LABEL_SAMPLE_SIZE = Integer.getInteger("GREMLIN_METADATA_LABEL_SAMPLE_SIZE", 100)
+
+/**
+ * Maps labels to classes, with their cardinality and properties.
+ *
+ * With [singlePass] the label counts and the properties of vertices and edges are computed by a single traversal,
+ * otherwise with a count and a sample query per label. In single pass, the properties of a label are read from at most
+ * [labelSampleSize] of its elements, all of them when 0. They can also be discovered on a sample of the elements: each
+ * one is taken with probability [sampleRate] (`coin()`), or at most [sampleSize] of them are taken (`sample()`).
+ * Labels with no element in the sample have no properties.
+ */
+class GremlinMetadataProvider(
+    private val singlePass: Boolean = METADATA_SINGLE_PASS,
+    private val sampleRate: Double = METADATA_SAMPLE_RATE,
+    private val sampleSize: Int = METADATA_SAMPLE_SIZE,
+    private val labelSampleSize: Int = METADATA_LABEL_SAMPLE_SIZE,
+) : DataSourceMetadataProvider {
     private val log = LoggerFactory.getLogger(GremlinMetadataProvider::class.java)
 
     override fun supportedDataSourceTypes() = setOf("GREMLIN_ORIENTDB", "GREMLIN_NEPTUNE", "GREMLIN_JANUSGRAPH")
@@ -39,20 +61,71 @@ class GremlinMetadataProvider : DataSourceMetadataProvider {
     override fun fetchMetadata(dataSource: DataSourceInfo): DataSourceMetadata {
         log.info("fetching metadata for dataSource {} ", dataSource.id)
 
-        val cluster = getCluster(dataSource)
+        return GremlinClusterRegistry.withClient(dataSource) { client ->
+            if (singlePass) {
+                fetchInSinglePass(client)
+            } else {
+                val nodeClasses = mapNodeClasses(client)
+                val edgesClasses = mapEdgesClasses(client)
+
+                DataSourceMetadata(nodeClasses, edgesClasses)
+            }
+        }
+    }
+
+    private fun fetchInSinglePass(client: Client): DataSourceMetadata {
+        val query =
+            """
+            g.inject(0)
+                .project('vertexCounts', 'vertexProperties', 'edgeCounts', 'edgeProperties')
+                .by(V().groupCount().by(label))
+                .by(V()${sampling()}.group().by(label).by(${firstValueByKey()}))
+                .by(E().groupCount().by(label))
+                .by(E()${sampling()}.group().by(label).by(${firstValueByKey()}))
+            """.trimIndent()
+
+        val metadata = client.submit(query).one().getObject() as Map<String, Map<String, Any>>
 
-        val client = cluster.connect<Client>().init()
-        try {
-            val nodeClasses = mapNodeClasses(client)
-            val edgesClasses = mapEdgesClasses(client)
+        return DataSourceMetadata(
+            toClasses(metadata["vertexCounts"].orEmpty(), metadata["vertexProperties"].orEmpty()),
+            toClasses(metadata["edgeCounts"].orEmpty(), metadata["edgeProperties"].orEmpty()),
+        )
+    }
 
-            return DataSourceMetadata(nodeClasses, edgesClasses)
-        } finally {
-            client.close()
-            cluster.close()
+    private fun sampling(): String =
+        when {
+            sampleSize > 0 -> ".sample($sampleSize)"
+            sampleRate < 1.0 -> ".coin($sampleRate)"
+            else -> ""
         }
+
+    /**
+     * Groups the properties of the elements of a label by key, keeping the first value of each one to map its type.
+     */
+    private fun firstValueByKey(): String {
+        val limit = if (labelSampleSize > 0) "limit($labelSampleSize)." else ""
+
+        return "${limit}properties().group().by(key).by(value().limit(1).fold())"
     }
 
+    private fun toClasses(
+        counts: Map<String, Any>,
+        properties: Map<String, Any>,
+    ): Map<String, TypeClass> =
+        counts
+            .map { (label, count) ->
+                val values = properties[label] as Map<String, List<Any>>?
+
+                val typeProperties =
+                    values
+                        .orEmpty()
+                        .filterValues { it.isNotEmpty() }
+                        .map { (key, value) -> key to TypeProperty(key, mapType(value.first().javaClass.simpleName)) }
+                        .toMap()
+
+                label to TypeClass(label, (count as Number).toLong(), typeProperties)
+            }.toMap()
+
     fun mapNodeClasses(client: Client): NodesClasses =
         client
             .submit("g.V().label().groupCount()")
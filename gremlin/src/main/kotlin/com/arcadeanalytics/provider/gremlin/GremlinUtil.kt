@@ -28,15 +28,27 @@ import org.apache.tinkerpop.gremlin.orientdb.io.OrientIoRegistry
 import org.apache.tinkerpop.gremlin.structure.io.gryo.GryoMapper
 import org.janusgraph.graphdb.tinkerpop.JanusGraphIoRegistry
 
+private val MIN_CONNECTIONS = Integer.getInteger("GREMLIN_MIN_CONNECTION_POOL_SIZE", 2)
+private val MAX_CONNECTIONS = Integer.getInteger("GREMLIN_MAX_CONNECTION_POOL_SIZE", 8)
+private val MAX_IN_PROCESS_PER_CONNECTION = Integer.getInteger("GREMLIN_MAX_IN_PROCESS_PER_CONNECTION", 4)
+private val RESULT_ITERATION_BATCH_SIZE = Integer.getInteger("GREMLIN_RESULT_ITERATION_BATCH_SIZE", 64)
+
+/**
+ * Builds a new cluster for the data source: providers should use the shared ones of [GremlinClusterRegistry].
+ */
 fun getCluster(dataSource: DataSourceInfo): Cluster =
     Cluster
         .build(dataSource.server)
         .port(dataSource.port)
         .serializer(createSerializer(dataSource))
-        .enableSsl(dataSource.enableSsl)
+        .enableSsl(dataSource.enableSsl || dataSource.type == "GREMLIN_COSMOSDB")
         .sslSkipCertValidation(dataSource.skipCertValidation)
         .maxContentLength(65536 * 4)
         .credentials(dataSource.username, dataSource.password)
+        .minConnectionPoolSize(MIN_CONNECTIONS)
+        .maxConnectionPoolSize(MAX_CONNECTIONS)
+        .maxInProcessPerConnection(MAX_IN_PROCESS_PER_CONNECTION)
+        .resultIterationBatchSize(RESULT_ITERATION_BATCH_SIZE)
         .maxWaitForConnection(20000)
         .create()
 
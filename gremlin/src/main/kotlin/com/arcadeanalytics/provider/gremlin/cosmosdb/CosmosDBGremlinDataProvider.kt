@@ -24,22 +24,27 @@ import com.arcadeanalytics.provider.Data
 import com.arcadeanalytics.provider.DataSourceGraphDataProvider
 import com.arcadeanalytics.provider.DataSourceInfo
 import com.arcadeanalytics.provider.GraphData
-import com.arcadeanalytics.provider.gremlin.createSerializer
+import com.arcadeanalytics.provider.gremlin.GremlinDegreeCounter
 import com.google.common.collect.Maps
 import com.google.common.collect.Sets
 import org.apache.commons.lang3.StringUtils
 import org.apache.commons.lang3.StringUtils.removeStart
 import org.apache.commons.lang3.StringUtils.wrap
-import org.apache.tinkerpop.gremlin.driver.Client
-import org.apache.tinkerpop.gremlin.driver.Cluster
 import org.apache.tinkerpop.gremlin.driver.Result
 import org.slf4j.LoggerFactory
 import java.util.HashMap
 import java.util.HashSet
 
+/**
+ * Max number of ids sent in a single `g.V(ids)` request, kept small to stay within CosmosDB request limits.
+ */
+private val COSMOSDB_IDS_BATCH_SIZE = Integer.getInteger("COSMOSDB_IDS_BATCH_SIZE", 100)
+
 class CosmosDBGremlinDataProvider : DataSourceGraphDataProvider {
     private val log = LoggerFactory.getLogger(CosmosDBGremlinDataProvider::class.java)
 
+    private val degreeCounter = GremlinDegreeCounter(COSMOSDB_IDS_BATCH_SIZE)
+
     override fun supportedDataSourceTypes(): Set<String> = Sets.newHashSet("GREMLIN_COSMOSDB")
 
     override fun fetchData(
@@ -47,88 +52,98 @@ class CosmosDBGremlinDataProvider : DataSourceGraphDataProvider {
         query: String,
         limit: Int,
     ): GraphData {
-        val cluster = getCluster(dataSource)
-
         log.info("fetching data from '{}' with query '{}' ", dataSource.id, query)
 
-        val client = cluster.connect<Client>().init()
-
         try {
-            return getGraphData(dataSource, query, limit, client)
+            return CosmosDBRequestScheduler.withClient(dataSource) { client ->
+                getGraphData(dataSource, query, limit, client)
+            }
         } catch (e: Exception) {
             throw RuntimeException(e)
-        } finally {
-            client.close()
-            cluster.close()
         }
     }
 
-    private fun getCluster(dataSource: DataSourceInfo): Cluster {
-        val serializer = createSerializer(dataSource)
-
-        return Cluster
-            .build(dataSource.server)
-            .port(dataSource.port)
-            .serializer(serializer)
-            .enableSsl(dataSource.type == "GREMLIN_COSMOSDB")
-            .credentials(dataSource.username, dataSource.password)
-            .maxWaitForConnection(10000)
-            .create()
-    }
-
     private fun getGraphData(
         dataSource: DataSourceInfo,
         query: String,
         limit: Int,
-        client: Client,
+        client: CosmosDBClient,
     ): GraphData {
         val nodes = HashSet<CytoData>()
         val edges = HashSet<CytoData>()
         val edgeClasses = HashMap<String, Map<String, Any>>()
         val nodeClasses = HashMap<String, Map<String, Any>>()
+        val vertexRecords = HashMap<String, MutableList<MutableMap<String, Any>>>()
+        val endpoints = LinkedHashSet<String>()
 
         //        final Contract contract = dataSource.getWorkspace().getUser().getCompany().getContract();
 
         client
-            .submit(query)
-            .stream()
-            .limit(limit.toLong())
-            .map { r -> toData(dataSource, r, client) }
-            .forEach { data ->
+            .submit(query, limit = limit)
+            .forEach { r ->
+                val record = transformToMap(r)
+                if (record["type"] == "edge") {
+                    endpoints.add(record["inV"].toString())
+                    endpoints.add(record["outV"].toString())
+                }
+
+                val data = toData(dataSource, record)
                 if (data.group == "nodes") {
                     nodes.add(data)
+                    vertexRecords.getOrPut(record["_id_"].toString()) { ArrayList() }.add(record)
                     populateClasses(nodeClasses, data)
                 } else {
                     edges.add(data)
-
-                    val load = load(dataSource, arrayOf(data.data.source, data.data.target), client)
-
-                    load.nodes
-                        .stream()
-                        .forEach { n ->
-                            nodes.add(n)
-                            populateClasses(nodeClasses, n)
-                        }
-
                     populateClasses(edgeClasses, data)
                 }
             }
 
+        // endpoints of the edges not in the result, fetched in chunks instead of one load per edge
+        endpoints.removeAll(vertexRecords.keys)
+        endpoints.chunked(COSMOSDB_IDS_BATCH_SIZE).forEach { chunk ->
+            client
+                .submit("g.V(ids)", "endpoints", mapOf("ids" to chunk))
+                .forEach { r ->
+                    val record = transformToMap(r)
+                    val data = toData(dataSource, record)
+                    nodes.add(data)
+                    vertexRecords.getOrPut(record["_id_"].toString()) { ArrayList() }.add(record)
+                    populateClasses(nodeClasses, data)
+                }
+        }
+
+        countEdges(vertexRecords, client)
+
         val graphData = GraphData(nodeClasses, edgeClasses, nodes, edges)
 
         log.info("fetched {} nodes and {} edges ", nodes.size, edges.size)
         return graphData
     }
 
+    /**
+     * Fills `@in`, `@out` and `@edgeCount` of the given vertex records, keyed by native id.
+     */
+    private fun countEdges(
+        vertexRecords: Map<String, List<MutableMap<String, Any>>>,
+        client: CosmosDBClient,
+    ) {
+        if (vertexRecords.isEmpty()) return
+
+        degreeCounter
+            .count(vertexRecords.keys) { query, bindings -> client.submit(query, "degrees", bindings) }
+            .forEach { (id, degree) ->
+                vertexRecords[id]?.forEach { record ->
+                    (record["@in"] as MutableMap<String, Any>).putAll(degree.ins)
+                    (record["@out"] as MutableMap<String, Any>).putAll(degree.outs)
+                    record["@edgeCount"] = degree.edgeCount
+                }
+            }
+    }
+
     private fun toData(
         dataSource: DataSourceInfo,
-        result: Result,
-        client: Client,
+        record: MutableMap<String, Any>,
     ): CytoData {
-        log.info("result:: {}", result)
-
-        val record = transformToMap(result)
-
         log.info("record:: {}", record)
         // id clean
         val id = cleanOrientId(record["id"].toString())
@@ -138,7 +153,6 @@ class CosmosDBGremlinDataProvider : DataSourceGraphDataProvider {
         val outs = HashMap<String, Any>()
         record["@out"] = outs
 
-        log.info("element map:: $result")
         if (record.containsKey("id")) {
             record["_id_"] = record["id"]!!
             record.remove("id")
@@ -147,37 +161,8 @@ class CosmosDBGremlinDataProvider : DataSourceGraphDataProvider {
         val cyto =
             when (record["type"]) {
                 "vertex" -> {
-                    outs.putAll(
-                        client
-                            .submit("g.V('${record["id"]}').outE()")
-                            .asSequence()
-                            .map { r1 -> r1.getObject() as Map<String, Any> }
-                            .map { e1 -> e1["label"].toString() }
-                            .groupingBy { it }
-                            .eachCount(),
-                    )
-
-                    ins.putAll(
-                        client
-                            .submit("g.V('${record["id"]}').inE()")
-                            .asSequence()
-                            .map { r1 -> r1.getObject() as Map<String, Any> }
-                            .map { e1 -> e1["label"].toString() }
-                            .groupingBy { it }
-                            .eachCount(),
-                    )
-
-                    var edgeCount =
-                        ins.values
-                            .stream()
-                            .mapToLong { o -> o as Long }
-                            .sum()
-                    edgeCount +=
-                        outs.values
-                            .stream()
-                            .mapToLong { o -> o as Long }
-                            .sum()
-                    record["@edgeCount"] = edgeCount
+                    // filled in batch by countEdges
+                    record["@edgeCount"] = 0
 
                     val data = Data(id = id, record = record)
                     CytoData(classes = record["label"].toString(), data = data, group = "nodes")
@@ -241,25 +226,19 @@ class CosmosDBGremlinDataProvider : DataSourceGraphDataProvider {
     ): GraphData {
         val query = loadQuery(dataSource, ids)
 
-        val cluster = getCluster(dataSource)
-        val client = cluster.connect<Client>().init()
-
-        log.info("fetching data from '{}' with query '{}' ", cluster.availableHosts()[0], query)
+        log.info("fetching data from '{}' with query '{}' ", dataSource.server, query)
 
         try {
-            return load(dataSource, ids, client)
+            return CosmosDBRequestScheduler.withClient(dataSource) { client -> load(dataSource, ids, client) }
         } catch (e: Exception) {
             throw RuntimeException(e)
-        } finally {
-            client.close()
-            cluster.close()
         }
     }
 
     private fun load(
         dataSource: DataSourceInfo,
         ids: Array<String>,
-        client: Client,
+        client: CosmosDBClient,
     ): GraphData {
         val query = loadQuery(dataSource, ids)
 
@@ -354,26 +333,7 @@ class CosmosDBGremlinDataProvider : DataSourceGraphDataProvider {
     override fun testConnection(dataSource: DataSourceInfo): Boolean {
         try {
             log.info("testing connection to :: '{}' ", dataSource.server)
-            val cluster =
-                Cluster
-                    .build(dataSource.server)
-                    .port(dataSource.port)
-                    .enableSsl(true)
-                    .serializer(createSerializer(dataSource))
-                    .credentials(dataSource.username, dataSource.password)
-                    .maxWaitForConnection(10000)
-                    .create()
-
-            cluster
-                .availableHosts()
-                .stream()
-                .forEach { h -> log.info("gremlin host:: {} ", h) }
-
-            val client = cluster.connect<Client>().init()
-
-            client.close()
-
-            cluster.close()
+            CosmosDBRequestScheduler.withClient(dataSource) { client -> client.submit("g.V().limit(1)", "test") }
 
             log.info("connection works fine:: '{}' ", dataSource.server)
 
@@ -27,10 +27,7 @@ import com.arcadeanalytics.provider.IndexConstants.ARCADE_EDGE_TYPE
 import com.arcadeanalytics.provider.IndexConstants.ARCADE_ID
 import com.arcadeanalytics.provider.IndexConstants.ARCADE_NODE_TYPE
 import com.arcadeanalytics.provider.IndexConstants.ARCADE_TYPE
-import com.arcadeanalytics.provider.gremlin.createSerializer
 import com.google.common.collect.Sets
-import org.apache.tinkerpop.gremlin.driver.Client
-import org.apache.tinkerpop.gremlin.driver.Cluster
 import org.slf4j.LoggerFactory
 import java.util.regex.Pattern
 
@@ -48,40 +45,29 @@ class CosmosDBGremlinGraphProvider : DataSourceGraphProvider {
         dataSource: DataSourceInfo,
         player: SpritePlayer,
     ) {
-        val cluster =
-            Cluster
-                .build(dataSource.server)
-                .port(dataSource.port)
-                .serializer(createSerializer(dataSource))
-                .enableSsl(dataSource.type == "GREMLIN_COSMOSDB")
-                .credentials(dataSource.username, dataSource.password)
-                .create()
+        CosmosDBRequestScheduler.withClient(dataSource) { client ->
 
-        val client = cluster.connect<Client>().init()
+            provideNodes(dataSource, player, client)
 
-        provideNodes(dataSource, player, client)
-
-        provideEdges(dataSource, player, client)
-
-        client.close()
+            provideEdges(dataSource, player, client)
+        }
 
-        cluster.close()
         player.end()
     }
 
     private fun provideNodes(
         dataSource: DataSourceInfo,
         processor: SpritePlayer,
-        client: Client,
+        client: CosmosDBClient,
     ) {
-        val nodes = client.submit("g.V().count()").one().long
+        val nodes = client.submit("g.V().count()", "export").first().long
         var fetched: Long = 0
         var skip: Long = 0
         var limit = Math.min(nodes, 1000)
 
         log.info("start indexing of data-source {} - total nodes:: {} ", dataSource.id, nodes)
         while (fetched < nodes) {
-            val resultSet = client.submit("g.V().range($skip , $limit)")
+            val resultSet = client.submit("g.V().range($skip , $limit)", "export")
 
             for (r in resultSet) {
                 val res = r.getObject() as MutableMap<String, Any>
@@ -117,9 +103,9 @@ class CosmosDBGremlinGraphProvider : DataSourceGraphProvider {
     private fun provideEdges(
         dataSource: DataSourceInfo,
         processor: SpritePlayer,
-        client: Client,
+        client: CosmosDBClient,
     ) {
-        val edges = client.submit("g.E().count()").one().long
+        val edges = client.submit("g.E().count()", "export").first().long
         var fetched: Long = 0
         var skip: Long = 0
         var limit = Math.min(edges, 1000)
@@ -128,7 +114,7 @@ class CosmosDBGremlinGraphProvider : DataSourceGraphProvider {
         while (fetched < edges - 1) {
             log.info("query:: g.E().range($skip , $limit)")
 
-            val resultSet = client.submit("g.E().range($skip , $limit)")
+            val resultSet = client.submit("g.E().range($skip , $limit)", "export")
 
             for (r in resultSet) {
                 val res = r.getObject() as MutableMap<String, Any>
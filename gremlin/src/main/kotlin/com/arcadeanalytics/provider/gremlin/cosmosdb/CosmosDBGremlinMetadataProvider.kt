@@ -27,9 +27,6 @@ import com.arcadeanalytics.provider.NodesClasses
 import com.arcadeanalytics.provider.TypeClass
 import com.arcadeanalytics.provider.TypeProperties
 import com.arcadeanalytics.provider.TypeProperty
-import com.arcadeanalytics.provider.gremlin.createSerializer
-import org.apache.tinkerpop.gremlin.driver.Client
-import org.apache.tinkerpop.gremlin.driver.Cluster
 import org.slf4j.LoggerFactory
 
 class CosmosDBGremlinMetadataProvider : DataSourceMetadataProvider {
@@ -40,33 +37,17 @@ class CosmosDBGremlinMetadataProvider : DataSourceMetadataProvider {
     override fun fetchMetadata(datasource: DataSourceInfo): DataSourceMetadata {
         log.info("fetching metadata for dataSource {} ", datasource)
 
-        val serializer = createSerializer(datasource)
-
-        val cluster =
-            Cluster
-                .build(datasource.server)
-                .port(datasource.port!!)
-                .serializer(serializer)
-                .enableSsl(datasource.type == "GREMLIN_COSMOSDB")
-                .credentials(datasource.username, datasource.password)
-                .maxWaitForConnection(10000)
-                .create()
-
-        val client = cluster.connect<Client>().init()
-        try {
+        return CosmosDBRequestScheduler.withClient(datasource) { client ->
             val nodeClasses = mapNodeClasses(client)
             val edgesClasses = mapEdgesClasses(client)
 
-            return DataSourceMetadata(nodeClasses, edgesClasses)
-        } finally {
-            client.close()
-            cluster.close()
+            DataSourceMetadata(nodeClasses, edgesClasses)
         }
     }
 
-    fun mapNodeClasses(client: Client): NodesClasses =
+    fun mapNodeClasses(client: CosmosDBClient): NodesClasses =
         client
-            .submit("g.V().label().dedup()")
+            .submit("g.V().label().dedup()", "metadata")
             .asSequence()
             .map { r -> r.`object`.toString() }
             .map { TypeClass(it, countNodeLabel(it, client), mapNodeProperties(it, client)) }
@@ -76,10 +57,10 @@ class CosmosDBGremlinMetadataProvider : DataSourceMetadataProvider {
 
     private fun mapNodeProperties(
         label: String,
-        client: Client,
+        client: CosmosDBClient,
     ): TypeProperties =
         client
-            .submit("g.V().hasLabel('$label').limit(1)")
+            .submit("g.V().hasLabel('$label').limit(1)", "metadata")
             .asSequence()
             .map { it -> it.`object` as Map<String, Any> }
             .map { it -> it["properties"] as Map<String, List<Map<String, Any>>> }
@@ -90,9 +71,9 @@ class CosmosDBGremlinMetadataProvider : DataSourceMetadataProvider {
             .map { it.name to it }
             .toMap()
 
-    fun mapEdgesClasses(client: Client): EdgesClasses =
+    fun mapEdgesClasses(client: CosmosDBClient): EdgesClasses =
         client
-            .submit("g.E().label().dedup()")
+            .submit("g.E().label().dedup()", "metadata")
             .asSequence()
             .map { r -> r.`object`.toString() }
             .map { TypeClass(it, countEdgeLabel(it, client), mapEdgeProperties(it, client)) }
@@ -102,10 +83,10 @@ class CosmosDBGremlinMetadataProvider : DataSourceMetadataProvider {
 
     private fun mapEdgeProperties(
         label: String,
-        client: Client,
+        client: CosmosDBClient,
     ): TypeProperties =
         client
-            .submit("g.E().hasLabel('$label').limit(1)")
+            .submit("g.E().hasLabel('$label').limit(1)", "metadata")
             .asSequence()
             .map { it -> it.`object` as Map<String, Any> }
             .flatMap { it -> it.keys.asSequence() }
@@ -115,19 +96,19 @@ class CosmosDBGremlinMetadataProvider : DataSourceMetadataProvider {
 
     private fun countNodeLabel(
         label: String,
-        client: Client,
+        client: CosmosDBClient,
     ): Long =
         client
-            .submit("g.V().hasLabel('$label').count()")
-            .one()
+            .submit("g.V().hasLabel('$label').count()", "metadata")
+            .first()
             .long
 
     private fun countEdgeLabel(
         label: String,
-        client: Client,
+        client: CosmosDBClient,
     ): Long =
         client
-            .submit("g.E().hasLabel('$label').count()")
-            .one()
+            .submit("g.E().hasLabel('$label').count()", "metadata")
+            .first()
             .long
 }
@@ -0,0 +1,277 @@
+/*-
+ * #%L
+ * Arcade Connectors
+ * %%
+ * Copyright (C) 2018 - 2021 ArcadeData
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.arcadeanalytics.provider.gremlin.cosmosdb
+
+import com.arcadeanalytics.provider.DataSourceInfo
+import com.arcadeanalytics.provider.gremlin.GremlinClusterRegistry
+import org.apache.tinkerpop.gremlin.driver.Client
+import org.apache.tinkerpop.gremlin.driver.Result
+import org.apache.tinkerpop.gremlin.driver.exception.ResponseException
+import org.slf4j.LoggerFactory
+import java.util.concurrent.ConcurrentHashMap
+import java.util.concurrent.TimeUnit
+import java.util.concurrent.atomic.AtomicLong
+import java.util.concurrent.atomic.DoubleAdder
+
+// not throttled on the client side unless configured: CosmosDB answers with a 429 and a retry-after anyway
+private val RU_PER_SECOND = Integer.getInteger("COSMOSDB_RU_PER_SECOND", 0)
+private val MAX_RETRIES = Integer.getInteger("COSMOSDB_MAX_RETRIES", 9)
+private val DEFAULT_RETRY_AFTER_MS = java.lang.Long.getLong("COSMOSDB_DEFAULT_RETRY_AFTER_MS", 1_000L)
+
+private const val STATUS_CODE = "x-ms-status-code"
+private const val RETRY_AFTER_MS = "x-ms-retry-after-ms"
+private const val TOTAL_REQUEST_CHARGE = "x-ms-total-request-charge"
+private const val REQUEST_CHARGE = "x-ms-request-charge"
+private const val TOO_MANY_REQUESTS = 429
+
+/**
+ * Request units charged for the requests of an operation, and how many of them were throttled.
+ */
+data class RequestCharge(
+    val requests: Long,
+    val throttled: Long,
+    val requestUnits: Double,
+)
+
+/**
+ * Keeps the requests sent to a CosmosDB data source within its provisioned throughput.
+ *
+ * A request throttled by CosmosDB (status 429) pauses all the requests for the given retry-after and is retried up to
+ * [maxRetries] times. When [ruPerSecond] is positive, a token bucket of that many request units is refilled
+ * continuously as well: a request waits while the bucket is empty and its actual charge, read from the response, is
+ * taken from the bucket when it completes. Otherwise the requests are only paused by the 429s.
+ *
+ * The request units charged are collected by operation, see [charges].
+ */
+class CosmosDBRequestScheduler(
+    private val ruPerSecond: Int = RU_PER_SECOND,
+    private val maxRetries: Int = MAX_RETRIES,
+) {
+    private val log = LoggerFactory.getLogger(CosmosDBRequestScheduler::class.java)
+
+    private val bucket = TokenBucket(ruPerSecond.toDouble().takeIf { it > 0 })
+
+    private val stats = ConcurrentHashMap<String, OperationStats>()
+
+    /**
+     * Submits the query and returns at most [limit] of its results: the remaining ones are not consumed. The status
+     * attributes, with the request charge, are read once the response is completed.
+     */
+    fun submit(
+        client: Client,
+        operation: String,
+        query: String,
+        bindings: Map<String, Any> = emptyMap(),
+        limit: Int = Int.MAX_VALUE,
+    ): List<Result> =
+        execute(operation) {
+            val resultSet = client.submit(query, bindings)
+            val results = resultSet.asSequence().take(limit).toList()
+
+            results to resultSet.statusAttributes().get()
+        }
+
+    /**
+     * Runs the request, which returns its result along with the status attributes of the response.
+     */
+    fun <T> execute(
+        operation: String,
+        request: () -> Pair<T, Map<String, Any?>>,
+    ): T {
+        val operationStats = stats.computeIfAbsent(operation) { OperationStats() }
+        var attempt = 0
+        while (true) {
+            bucket.acquire()
+            try {
+                val (result, attributes) = request()
+
+                val charge = requestChargeOf(attributes)
+                bucket.consume(charge)
+                operationStats.record(charge, false)
+
+                log.debug("operation '{}' charged {} RU", operation, charge)
+                return result
+            } catch (e: Exception) {
+                val attributes = statusAttributesOf(e)
+                if (attributes[STATUS_CODE]?.toString() != TOO_MANY_REQUESTS.toString()) throw e
+
+                val charge = requestChargeOf(attributes)
+                bucket.consume(charge)
+                operationStats.record(charge, true)
+
+                if (attempt++ >= maxRetries) throw e
+
+                val retryAfter = retryAfterMsOf(attributes)
+                bucket.pause(retryAfter)
+
+                log.debug(
+                    "operation '{}' throttled, retrying in {} ms ({}/{})",
+                    operation,
+                    retryAfter,
+                    attempt,
+                    maxRetries,
+                )
+            }
+        }
+    }
+
+    /**
+     * Returns the request units charged so far, by operation.
+     */
+    fun charges(): Map<String, RequestCharge> = stats.mapValues { (_, operationStats) -> operationStats.snapshot() }
+
+    private fun statusAttributesOf(e: Throwable): Map<String, Any?> =
+        generateSequence(e) { it.cause }
+            .filterIsInstance<ResponseException>()
+            .map { it.statusAttributes.orEmpty() }
+            .firstOrNull()
+            .orEmpty()
+
+    private fun requestChargeOf(attributes: Map<String, Any?>): Double =
+        (attributes[TOTAL_REQUEST_CHARGE] ?: attributes[REQUEST_CHARGE])
+            ?.toString()
+            ?.toDoubleOrNull() ?: 0.0
+
+    /**
+     * The retry-after is sent either as milliseconds or as a `hh:mm:ss.fffffff` time span.
+     */
+    private fun retryAfterMsOf(attributes: Map<String, Any?>): Long {
+        val retryAfter = attributes[RETRY_AFTER_MS]?.toString() ?: return DEFAULT_RETRY_AFTER_MS
+
+        retryAfter.toDoubleOrNull()?.let { return it.toLong() }
+
+        val parts = retryAfter.split(":")
+        if (parts.size != 3) return DEFAULT_RETRY_AFTER_MS
+
+        val hours = parts[0].toLongOrNull() ?: return DEFAULT_RETRY_AFTER_MS
+        val minutes = parts[1].toLongOrNull() ?: return DEFAULT_RETRY_AFTER_MS
+        val seconds = parts[2].toDoubleOrNull() ?: return DEFAULT_RETRY_AFTER_MS
+
+        return TimeUnit.HOURS.toMillis(hours) + TimeUnit.MINUTES.toMillis(minutes) + (seconds * 1000).toLong()
+    }
+
+    companion object {
+        private val schedulers = ConcurrentHashMap<List<Any?>, CosmosDBRequestScheduler>()
+
+        /**
+         * Returns the scheduler of the given data source: all the providers share the throughput of a collection.
+         */
+        fun of(dataSource: DataSourceInfo): CosmosDBRequestScheduler =
+            schedulers.computeIfAbsent(listOf(dataSource.server, dataSource.port, dataSource.username)) {
+                CosmosDBRequestScheduler()
+            }
+
+        /**
+         * Runs the block with the shared client of the given data source, its requests go through the scheduler.
+         */
+        fun <T> withClient(
+            dataSource: DataSourceInfo,
+            block: (CosmosDBClient) -> T,
+        ): T =
+            GremlinClusterRegistry.withClient(dataSource) { client ->
+                block(CosmosDBClient(client, of(dataSource)))
+            }
+    }
+
+    private class OperationStats {
+        private val requests = AtomicLong()
+        private val throttled = AtomicLong()
+        private val requestUnits = DoubleAdder()
+
+        fun record(
+            charge: Double,
+            throttled: Boolean,
+        ) {
+            requests.incrementAndGet()
+            if (throttled) this.throttled.incrementAndGet()
+            requestUnits.add(charge)
+        }
+
+        fun snapshot(): RequestCharge = RequestCharge(requests.get(), throttled.get(), requestUnits.sum())
+    }
+
+    /**
+     * Bucket of request units: it may go below zero, as the charge of a request is known only when it completes.
+     * Without a [capacity] only the pauses are applied.
+     */
+    private class TokenBucket(
+        private val capacity: Double?,
+    ) {
+        private var tokens = capacity ?: 0.0
+        private var refilledAt = System.nanoTime()
+        private var pausedUntil = refilledAt
+
+        fun acquire() {
+            while (true) {
+                val wait = waitNanos()
+                if (wait <= 0) return
+                TimeUnit.NANOSECONDS.sleep(wait)
+            }
+        }
+
+        @Synchronized
+        fun consume(charge: Double) {
+            if (capacity == null) return
+            refill()
+            tokens -= charge
+        }
+
+        @Synchronized
+        fun pause(millis: Long) {
+            pausedUntil = maxOf(pausedUntil, System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(millis))
+        }
+
+        @Synchronized
+        private fun waitNanos(): Long {
+            refill()
+            val now = System.nanoTime()
+            if (pausedUntil > now) return pausedUntil - now
+            if (capacity == null || tokens > 0) return 0
+
+            return ((1 - tokens) / capacity * TimeUnit.SECONDS.toNanos(1)).toLong()
+        }
+
+        private fun refill() {
+            if (capacity == null) return
+            val now = System.nanoTime()
+            tokens = minOf(capacity, tokens + (now - refilledAt) * capacity / TimeUnit.SECONDS.toNanos(1))
+            refilledAt = now
+        }
+    }
+}
+
+/**
+ * A gremlin [Client] whose requests go through a [CosmosDBRequestScheduler].
+ */
+class CosmosDBClient(
+    private val client: Client,
+    private val scheduler: CosmosDBRequestScheduler,
+) {
+    /**
+     * Submits the query and returns at most [limit] of its results, [operation] is the name its request charge is
+     * collected under.
+     */
+    fun submit(
+        query: String,
+        operation: String = "query",
+        bindings: Map<String, Any> = emptyMap(),
+        limit: Int = Int.MAX_VALUE,
+    ): List<Result> = scheduler.submit(client, operation, query, bindings, limit)
+}
@@ -65,6 +65,32 @@ class GremlinDataProviderIntTest {
         assertThat(anEdge.classes).isEqualTo("IsFromCountry")
     }
 
+    @Test
+    fun shouldCountEdgesOfVertices() {
+        val query = "g.V().hasLabel('Countries').has('Name', 'Italy')"
+
+        val data = provider.fetchData(dataSource, query, 50)
+
+        assertThat(data.nodes).hasSize(1)
+
+        val record = data.nodes.first().data.record
+        val ins = record["@in"] as Map<String, Int>
+        val outs = record["@out"] as Map<String, Int>
+
+        assertThat(ins).containsKey("IsFromCountry")
+        assertThat(ins.values.sum()).isEqualTo(4)
+        assertThat(record["@edgeCount"]).isEqualTo(ins.values.sum() + outs.values.sum())
+    }
+
+    @Test
+    fun shouldRecreateClusterAfterInvalidation() {
+        assertThat(provider.fetchData(dataSource, "g.V().limit(5)", 5).nodes).hasSize(5)
+
+        GremlinClusterRegistry.invalidate(dataSource)
+
+        assertThat(provider.fetchData(dataSource, "g.V().limit(5)", 5).nodes).hasSize(5)
+    }
+
     @Test
     fun shouldLoadVerticesByIds() {
         assertThat(provider.testConnection(dataSource)).isTrue()
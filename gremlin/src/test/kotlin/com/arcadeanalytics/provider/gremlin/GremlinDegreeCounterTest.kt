@@ -0,0 +1,50 @@
+/*-
+ * #%L
+ * Arcade Connectors
+ * %%
+ * Copyright (C) 2018 - 2021 ArcadeData
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.arcadeanalytics.provider.gremlin
+
+import org.apache.tinkerpop.gremlin.driver.Result
+import org.assertj.core.api.Assertions.assertThat
+import org.junit.jupiter.api.Test
+
+class GremlinDegreeCounterTest {
+    @Test
+    fun shouldSendTheIdsAsBindings() {
+        val counter = GremlinDegreeCounter(batchSize = 2)
+
+        val queries = mutableListOf<String>()
+        val chunks = mutableListOf<Any?>()
+
+        val degrees =
+            counter.count(listOf("o'neil", "rob", "frank")) { query, bindings ->
+                queries.add(query)
+                chunks.add(bindings["ids"])
+
+                (bindings["ids"] as List<*>).map { id ->
+                    Result(mapOf("id" to id, "out" to mapOf("FriendOf" to 1L), "in" to mapOf<String, Long>()))
+                }
+            }
+
+        assertThat(queries).allMatch { query -> query.startsWith("g.V(ids)") && !query.contains("o'neil") }
+        assertThat(chunks).containsExactly(listOf("o'neil", "rob"), listOf("frank"))
+
+        assertThat(degrees).containsOnlyKeys("o'neil", "rob", "frank")
+        assertThat(degrees["o'neil"]).isEqualTo(Degree(mapOf(), mapOf("FriendOf" to 1)))
+    }
+}
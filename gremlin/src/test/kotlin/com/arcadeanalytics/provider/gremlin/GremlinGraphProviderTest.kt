@@ -22,6 +22,7 @@ package com.arcadeanalytics.provider.gremlin
 import com.arcadeanalytics.data.Sprite
 import com.arcadeanalytics.data.SpritePlayer
 import com.arcadeanalytics.provider.IndexConstants.ARCADE_EDGE_TYPE
+import com.arcadeanalytics.provider.IndexConstants.ARCADE_ID
 import com.arcadeanalytics.provider.IndexConstants.ARCADE_NODE_TYPE
 import com.arcadeanalytics.provider.IndexConstants.ARCADE_TYPE
 import org.assertj.core.api.Assertions.assertThat
@@ -63,4 +64,55 @@ class GremlinGraphProviderTest {
         // 14872 edges but only 3290 with properties are indexed
         assertThat(edges).hasSize(3290)
     }
+
+    @Test
+    fun shouldStreamAllVertexesAndEdges() {
+        val (nodes, edges) = export(GremlinGraphProvider(strategy = GremlinExportStrategy.STREAM))
+
+        assertThat(nodes).hasSize(7275)
+        assertThat(edges).hasSize(3290)
+    }
+
+    @Test
+    fun shouldPageAllVertexesAndEdgesByRange() {
+        val (nodes, edges) = export(GremlinGraphProvider(strategy = GremlinExportStrategy.RANGE, batchSize = 1000))
+
+        assertThat(nodes).hasSize(7275)
+        assertThat(nodes.map { it.valueOf(ARCADE_ID) }).doesNotHaveDuplicates()
+        assertThat(edges).hasSize(3290)
+    }
+
+    @Test
+    fun shouldExportPartitionsInParallel() {
+        val (nodes, edges) = export(GremlinGraphProvider(batchSize = 1000, parallelism = 4))
+
+        assertThat(nodes).hasSize(7275)
+        assertThat(nodes.map { it.valueOf(ARCADE_ID) }).doesNotHaveDuplicates()
+        assertThat(edges).hasSize(3290)
+    }
+
+    private fun export(provider: GremlinGraphProvider): Pair<List<Sprite>, List<Sprite>> {
+        val nodes = ArrayList<Sprite>()
+        val edges = ArrayList<Sprite>()
+
+        val indexer =
+            object : SpritePlayer {
+                override fun begin() {
+                }
+
+                override fun play(sprite: Sprite) {
+                    when (sprite.valueOf(ARCADE_TYPE)) {
+                        ARCADE_NODE_TYPE -> nodes.add(sprite)
+                        ARCADE_EDGE_TYPE -> edges.add(sprite)
+                    }
+                }
+
+                override fun end() {
+                }
+            }
+
+        provider.provideTo(OrientDBGremlinContainer.dataSource, indexer)
+
+        return nodes to edges
+    }
 }
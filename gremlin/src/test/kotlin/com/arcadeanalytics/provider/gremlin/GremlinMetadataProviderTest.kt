@@ -47,4 +47,33 @@ class GremlinMetadataProviderTest {
 
         assertThat(metadata.edgesClasses["HasFriend"]!!.cardinality).isEqualTo(1617)
     }
+
+    @Test
+    fun fetchMetadataPerLabel() {
+        val metadata = GremlinMetadataProvider(singlePass = false).fetchMetadata(OrientDBGremlinContainer.dataSource)
+
+        assertThat(metadata.nodesClasses).hasSize(11)
+        assertThat(metadata.nodesClasses["Countries"]!!.cardinality).isEqualTo(249)
+        assertThat(metadata.edgesClasses["HasFriend"]!!.cardinality).isEqualTo(1617)
+    }
+
+    @Test
+    fun fetchMetadataWithSampledProperties() {
+        val metadata = GremlinMetadataProvider(sampleRate = 0.5).fetchMetadata(OrientDBGremlinContainer.dataSource)
+
+        assertThat(metadata.nodesClasses).hasSize(11)
+        assertThat(metadata.nodesClasses["Countries"]!!.cardinality).isEqualTo(249)
+        assertThat(metadata.nodesClasses["Countries"]?.properties).containsKeys("Id", "Code", "Name")
+        assertThat(metadata.edgesClasses["HasFriend"]!!.cardinality).isEqualTo(1617)
+    }
+
+    @Test
+    fun fetchMetadataWithBoundedSamplePerLabel() {
+        val metadata = GremlinMetadataProvider(labelSampleSize = 1).fetchMetadata(OrientDBGremlinContainer.dataSource)
+
+        assertThat(metadata.nodesClasses).hasSize(11)
+        assertThat(metadata.nodesClasses["Countries"]!!.cardinality).isEqualTo(249)
+        assertThat(metadata.nodesClasses["Countries"]?.properties).containsKeys("Id", "Code", "Name")
+        assertThat(metadata.edgesClasses["HasFriend"]!!.cardinality).isEqualTo(1617)
+    }
 }
@@ -0,0 +1,124 @@
+/*-
+ * #%L
+ * Arcade Connectors
+ * %%
+ * Copyright (C) 2018 - 2021 ArcadeData
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.arcadeanalytics.provider.gremlin.cosmosdb
+
+import org.apache.tinkerpop.gremlin.driver.exception.ResponseException
+import org.apache.tinkerpop.gremlin.driver.message.ResponseStatusCode
+import org.assertj.core.api.Assertions.assertThat
+import org.assertj.core.api.Assertions.assertThatThrownBy
+import org.junit.jupiter.api.Test
+import java.util.concurrent.CompletionException
+
+class CosmosDBRequestSchedulerTest {
+    private fun throttled(retryAfter: String): Exception =
+        CompletionException(
+            ResponseException(
+                ResponseStatusCode.SERVER_ERROR,
+                "Request rate is large",
+                emptyList(),
+                null,
+                mapOf<String, Any>(
+                    "x-ms-status-code" to 429,
+                    "x-ms-retry-after-ms" to retryAfter,
+                    "x-ms-request-charge" to 0.5,
+                ),
+            ),
+        )
+
+    @Test
+    fun shouldRetryThrottledRequestsAfterRetryAfter() {
+        val scheduler = CosmosDBRequestScheduler(ruPerSecond = 1000, maxRetries = 3)
+
+        var calls = 0
+        val start = System.currentTimeMillis()
+
+        val result =
+            scheduler.execute("query") {
+                if (calls++ < 2) throw throttled("00:00:00.1000000")
+
+                "done" to mapOf<String, Any?>("x-ms-total-request-charge" to 2.5)
+            }
+
+        assertThat(result).isEqualTo("done")
+        assertThat(calls).isEqualTo(3)
+        assertThat(System.currentTimeMillis() - start).isGreaterThanOrEqualTo(200)
+
+        assertThat(scheduler.charges()).containsEntry("query", RequestCharge(3, 2, 3.5))
+    }
+
+    @Test
+    fun shouldGiveUpAfterMaxRetries() {
+        val scheduler = CosmosDBRequestScheduler(ruPerSecond = 1000, maxRetries = 1)
+
+        var calls = 0
+
+        assertThatThrownBy {
+            scheduler.execute<String>("query") {
+                calls++
+                throw throttled("10")
+            }
+        }.isInstanceOf(CompletionException::class.java)
+
+        assertThat(calls).isEqualTo(2)
+    }
+
+    @Test
+    fun shouldNotRetryOtherFailures() {
+        val scheduler = CosmosDBRequestScheduler(ruPerSecond = 1000, maxRetries = 3)
+
+        var calls = 0
+
+        assertThatThrownBy {
+            scheduler.execute<String>("query") {
+                calls++
+                throw IllegalStateException("boom")
+            }
+        }.isInstanceOf(IllegalStateException::class.java)
+
+        assertThat(calls).isEqualTo(1)
+    }
+
+    @Test
+    fun shouldWaitForTheBucketToRefill() {
+        val scheduler = CosmosDBRequestScheduler(ruPerSecond = 100, maxRetries = 0)
+
+        val start = System.currentTimeMillis()
+
+        // the first request empties the bucket, the second one waits for half a second of refill
+        scheduler.execute("export") { Unit to mapOf<String, Any?>("x-ms-total-request-charge" to 150.0) }
+        scheduler.execute("export") { Unit to mapOf<String, Any?>("x-ms-total-request-charge" to 1.0) }
+
+        assertThat(System.currentTimeMillis() - start).isGreaterThanOrEqualTo(450)
+        assertThat(scheduler.charges()["export"]).isEqualTo(RequestCharge(2, 0, 151.0))
+    }
+
+    @Test
+    fun shouldNotWaitWithoutAConfiguredRate() {
+        val scheduler = CosmosDBRequestScheduler(ruPerSecond = 0, maxRetries = 0)
+
+        val start = System.currentTimeMillis()
+
+        scheduler.execute("export") { Unit to mapOf<String, Any?>("x-ms-total-request-charge" to 10_000.0) }
+        scheduler.execute("export") { Unit to mapOf<String, Any?>("x-ms-total-request-charge" to 1.0) }
+
+        assertThat(System.currentTimeMillis() - start).isLessThan(450)
+        assertThat(scheduler.charges()["export"]).isEqualTo(RequestCharge(2, 0, 10_001.0))
+    }
+}
@@ -24,6 +24,7 @@ import com.arcadeanalytics.data.SpritePlayer
 import com.arcadeanalytics.provider.IndexConstants.ARCADE_EDGE_TYPE
 import com.arcadeanalytics.provider.IndexConstants.ARCADE_NODE_TYPE
 import com.arcadeanalytics.provider.IndexConstants.ARCADE_TYPE
+import com.arcadeanalytics.provider.gremlin.GremlinExportStrategy
 import com.arcadeanalytics.provider.gremlin.GremlinGraphProvider
 import org.assertj.core.api.Assertions.assertThat
 import org.junit.jupiter.api.Test
@@ -66,4 +67,38 @@ internal class JanusgraphGremlinGraphProviderTest {
         assertThat(nodes).hasSize(808)
         assertThat(edges).hasSize(7047)
     }
+
+    @Test
+    fun shouldPageAllVertexesAndEdgesByKeyset() {
+        val nodes = ArrayList<Sprite>()
+        val edges = ArrayList<Sprite>()
+
+        val indexer =
+            object : SpritePlayer {
+                override fun begin() {
+                    // noop
+                }
+
+                override fun processed(): Long = 0
+
+                override fun play(sprite: Sprite) {
+                    when (sprite.valueOf(ARCADE_TYPE)) {
+                        ARCADE_NODE_TYPE -> nodes.add(sprite)
+                        ARCADE_EDGE_TYPE -> edges.add(sprite)
+                    }
+                    assertThat(sprite.valueOf("@class")).isNotBlank
+                    assertThat(sprite.hasField("_a_id")).isTrue
+                    assertThat(sprite.hasField("_a_type")).isTrue
+                    assertThat(sprite.hasField("_a_type")).isTrue
+                }
+
+                override fun end() {
+                }
+            }
+
+        GremlinGraphProvider(strategy = GremlinExportStrategy.KEYSET, batchSize = 100)
+            .provideTo(JanusgraphContainer.dataSource, indexer)
+        assertThat(nodes).hasSize(808)
+        assertThat(edges).hasSize(7047)
+    }
 }
@@ -96,8 +96,11 @@ internal class DataSourceInfoMetadataProviderFactoryTest {
             )
 
         val provider = factory.create(dataSource)
-        Assertions.assertThat(provider).isNotNull
+        Assertions.assertThat(provider).isInstanceOf(CachingMetadataProviderDecorator::class.java)
 
-        Assertions.assertThat(provider::class.java.simpleName).isEqualTo(impl)
+        val cached = (provider as CachingMetadataProviderDecorator).provider
+        Assertions.assertThat(cached::class.java.simpleName).isEqualTo(impl)
+
+        Assertions.assertThat(factory.create(dataSource)).isSameAs(provider)
     }
 }
@@ -29,6 +29,14 @@ import org.neo4j.driver.v1.AccessMode
 import org.neo4j.driver.v1.Session
 import org.slf4j.LoggerFactory
 
+private const val DEGREE_BATCH_SIZE = 1000
+
+private const val DEGREE_QUERY =
+    """UNWIND ${'$'}ids AS nodeId
+        MATCH (a)-[r]-()
+        WHERE id(a) = nodeId
+        RETURN nodeId AS id, type(r) AS type, startNode(r) = a AS out, endNode(r) = a AS in, count(*) AS count"""
+
 /**
  *
  * @author Roberto Franchini
@@ -51,8 +59,6 @@ class Neo4jDataProvider : DataSourceGraphDataProvider {
 
                 countInAndOutOnNode(session, dataSource, graphData.nodes)
 
-                session.closeAsync()
-                driver.closeAsync()
                 log.info("totals: nodes {} - edges {} - truncated {} ", graphData.nodes.size, graphData.edges.size, graphData.truncated)
 
                 return graphData
@@ -157,13 +163,15 @@ class Neo4jDataProvider : DataSourceGraphDataProvider {
             try {
                 driver.session(AccessMode.READ).use { session ->
 
+                    // the driver is shared, so it may have been created before the server went away
+                    session.run("RETURN 1").consume()
+
                     log.info("connection works fine:: '{}' ", connectionUrl)
                     return session.isOpen
                 }
             } catch (e: Exception) {
+                Neo4jDriverRegistry.invalidate(dataSource)
                 throw RuntimeException(e)
-            } finally {
-                driver.closeAsync()
             }
         }
     }
@@ -189,54 +197,50 @@ class Neo4jDataProvider : DataSourceGraphDataProvider {
         return graphData
     }
 
+    /**
+     * Fills `@in`, `@out` and `@edgeCount` of the given nodes, counting their relationships by type with one query per
+     * chunk of [DEGREE_BATCH_SIZE] nodes.
+     */
     private fun countInAndOutOnNode(
         session: Session,
         dataSource: DataSourceInfo,
         nodes: Set<CytoData>,
     ): Set<CytoData> {
-        nodes
-            .asSequence()
-            .forEach { data ->
-                val id = toNeo4jId(dataSource, data.data.id)
-                val record = data.data.record
+        val nodesById = nodes.associateBy { data -> toNeo4jId(dataSource, data.data.id).toLong() }
 
-                val inQuery =
-                    """MATCH (a)<-[r]-(o)
-                                        WHERE id(a) IN [$id]
-                                        WITH a, o, type(r) as type
-                                        RETURN type, count(type) as in"""
+        nodesById.keys
+            .chunked(DEGREE_BATCH_SIZE)
+            .forEach { ids ->
 
-                session.run(inQuery).forEach { res ->
+                session.run(DEGREE_QUERY, mapOf<String, Any>("ids" to ids)).forEach { res ->
 
+                    val record = nodesById.getValue(res["id"].asLong()).data.record
                     val type = res["type"].asString()
-                    val count = res["in"].asInt()
+                    val isOut = res["out"].asBoolean()
+                    val isIn = res["in"].asBoolean()
 
-                    val entry: MutableMap<String, Int> = record["@in"] as MutableMap<String, Int>
+                    // a self loop is matched once for each direction: it counts once as in and once as out
+                    val count = if (isOut && isIn) res["count"].asInt() / 2 else res["count"].asInt()
 
-                    entry[type] = count
-
-                    record["@edgeCount"] = record["@edgeCount"] as Int + count
-                }
-                val outQuery =
-                    """MATCH (a)-[r]->(o)
-                                        WHERE id(a) IN [$id]
-                                        WITH a, o, type(r) as type
-                                        RETURN type, count(type) as out"""
-
-                session.run(outQuery).forEach { res ->
-
-                    val type = res["type"].asString()
-                    val count = res["out"].asInt()
-
-                    val entry: MutableMap<String, Int> = record["@out"] as MutableMap<String, Int>
-
-                    entry[type] = count
-                    record["@edgeCount"] = record["@edgeCount"] as Int + count
+                    if (isIn) addDegree(record, "@in", type, count)
+                    if (isOut) addDegree(record, "@out", type, count)
                 }
             }
 
         return nodes
     }
 
+    private fun addDegree(
+        record: MutableMap<String, Any>,
+        direction: String,
+        type: String,
+        count: Int,
+    ) {
+        val entry: MutableMap<String, Int> = record[direction] as MutableMap<String, Int>
+
+        entry[type] = entry.getOrDefault(type, 0) + count
+        record["@edgeCount"] = record["@edgeCount"] as Int + count
+    }
+
     override fun supportedDataSourceTypes(): Set<String> = setOf(NEO4J.name, NEO4J_MEMGRAPH.name)
 }
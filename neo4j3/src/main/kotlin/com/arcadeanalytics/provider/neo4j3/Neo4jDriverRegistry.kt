@@ -0,0 +1,115 @@
+/*-
+ * #%L
+ * Arcade Connectors
+ * %%
+ * Copyright (C) 2018 - 2021 ArcadeData
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.arcadeanalytics.provider.neo4j3
+
+import com.arcadeanalytics.provider.DataSourceInfo
+import com.arcadeanalytics.provider.LeasedResourceRegistry
+import org.neo4j.driver.v1.AuthTokens
+import org.neo4j.driver.v1.Config
+import org.neo4j.driver.v1.Driver
+import org.neo4j.driver.v1.GraphDatabase
+import org.slf4j.LoggerFactory
+import java.util.concurrent.CompletableFuture
+import java.util.concurrent.CompletionStage
+import java.util.concurrent.TimeUnit
+
+/**
+ * Registry of the [Driver]s shared by the neo4j providers: a single driver, with its own connection pool, per server
+ * and credentials.
+ *
+ * [acquire] hands out leases on the shared driver: closing a lease releases it, while the driver stays open. A driver
+ * without leases is closed after `NEO4J_DRIVER_IDLE_TIMEOUT_MS`, all the drivers are closed on shutdown.
+ */
+object Neo4jDriverRegistry {
+    private val log = LoggerFactory.getLogger(Neo4jDriverRegistry::class.java)
+
+    private val MAX_POOL_SIZE = Integer.getInteger("NEO4J_DRIVER_MAX_POOL_SIZE", 20)
+    private val CONNECTION_TIMEOUT_S = java.lang.Long.getLong("NEO4J_DRIVER_CONNECTION_TIMEOUT_S", 30L)
+    private val LIVENESS_CHECK_TIMEOUT_S = java.lang.Long.getLong("NEO4J_DRIVER_LIVENESS_CHECK_TIMEOUT_S", 30L)
+    private val IDLE_TIMEOUT_MS = java.lang.Long.getLong("NEO4J_DRIVER_IDLE_TIMEOUT_MS", 600_000L)
+    private val EVICTION_INTERVAL_MS = java.lang.Long.getLong("NEO4J_DRIVER_EVICTION_INTERVAL_MS", 30_000L)
+
+    private val drivers =
+        LeasedResourceRegistry<List<Any?>, Driver>(
+            "neo4j-driver",
+            IDLE_TIMEOUT_MS,
+            EVICTION_INTERVAL_MS,
+            dispose = { driver -> driver.close() },
+        )
+
+    /**
+     * Leases the shared driver of the given data source, creating it on first use. The lease must be closed when done.
+     */
+    fun acquire(dataSource: DataSourceInfo): Driver =
+        LeasedDriver(drivers.lease(keyOf(dataSource)) { createDriver(dataSource) })
+
+    /**
+     * Closes the driver of the given data source, if any. Leases still open keep working until closed.
+     */
+    fun invalidate(dataSource: DataSourceInfo) {
+        drivers.invalidate(keyOf(dataSource))
+    }
+
+    /**
+     * Closes all the drivers.
+     */
+    fun closeAll() {
+        drivers.closeAll()
+    }
+
+    private fun keyOf(dataSource: DataSourceInfo): List<Any?> =
+        listOf(dataSource.server, dataSource.port, dataSource.username, dataSource.password)
+
+    private fun createDriver(dataSource: DataSourceInfo): Driver {
+        val connectionUrl = createConnectionUrl(dataSource)
+
+        log.info("creating neo4j driver for '{}' ", connectionUrl)
+
+        val config =
+            Config
+                .build()
+                .withConnectionTimeout(CONNECTION_TIMEOUT_S, TimeUnit.SECONDS)
+                .withConnectionLivenessCheckTimeout(LIVENESS_CHECK_TIMEOUT_S, TimeUnit.SECONDS)
+                .withMaxConnectionPoolSize(MAX_POOL_SIZE)
+                .toConfig()
+
+        return GraphDatabase.driver(
+            connectionUrl,
+            AuthTokens.basic(dataSource.username, dataSource.password),
+            config,
+        )
+    }
+
+    /**
+     * A lease on a shared driver: closing it releases the lease, the driver is closed by the registry.
+     */
+    private class LeasedDriver(
+        private val lease: LeasedResourceRegistry.Lease<Driver>,
+    ) : Driver by lease.resource {
+        override fun close() {
+            lease.close()
+        }
+
+        override fun closeAsync(): CompletionStage<Void> {
+            close()
+            return CompletableFuture.completedFuture(null)
+        }
+    }
+}
@@ -25,20 +25,43 @@ import com.arcadeanalytics.provider.DataSourceGraphProvider
 import com.arcadeanalytics.provider.DataSourceInfo
 import com.arcadeanalytics.provider.IndexConstants.ARCADE_ID
 import com.arcadeanalytics.provider.IndexConstants.ARCADE_TYPE
+import com.arcadeanalytics.provider.ParallelSpriteExport
 import com.arcadeanalytics.provider.neo4j3.Neo4jDialect.NEO4J
 import com.arcadeanalytics.provider.neo4j3.Neo4jDialect.NEO4J_MEMGRAPH
 import com.google.common.collect.ImmutableMap
 import org.neo4j.driver.v1.AccessMode
+import org.neo4j.driver.v1.Driver
 import org.neo4j.driver.v1.Session
+import org.neo4j.driver.v1.Value
+import org.neo4j.driver.v1.types.Entity
+import org.neo4j.driver.v1.types.Node
+import org.neo4j.driver.v1.types.Relationship
 import org.slf4j.LoggerFactory
-import java.util.regex.Pattern
+
+private val EXPORT_BATCH_SIZE = Integer.getInteger("NEO4J_EXPORT_BATCH_SIZE", 10_000)
+
+private val STREAMING_EXPORT = java.lang.Boolean.getBoolean("NEO4J_EXPORT_STREAMING")
+
+private val EXPORT_PARALLELISM = Integer.getInteger("NEO4J_EXPORT_PARALLELISM", 1)
 
 /**
+ * Exports the whole graph, label by label and then the relationships, in pages of [batchSize] elements.
+ * Pages are read by id, `WHERE id(n) > $last ORDER BY id(n) LIMIT $batch`, so no page re-reads the previous ones.
+ *
+ * In [streaming] mode a single query per label and per relationship type is run instead, without upfront counts:
+ * records are consumed as the driver receives them and played one by one.
+ *
+ * With a [parallelism] greater than one, labels and relationship types are exported concurrently, each on its own
+ * session of the shared driver; the player is still called by a single thread, see [ParallelSpriteExport].
  *
  * @author Roberto Franchini
  */
 
-class Neo4jGraphProvider : DataSourceGraphProvider {
+class Neo4jGraphProvider(
+    private val batchSize: Int = EXPORT_BATCH_SIZE,
+    private val streaming: Boolean = STREAMING_EXPORT,
+    private val parallelism: Int = EXPORT_PARALLELISM,
+) : DataSourceGraphProvider {
     private val log = LoggerFactory.getLogger(Neo4jGraphProvider::class.java)
     private val queries =
         mapOf(
@@ -48,85 +71,119 @@ class Neo4jGraphProvider : DataSourceGraphProvider {
             "NEO4J_MEMGRAPH::EDGES" to "MATCH ()-[r]->() RETURN DISTINCT type(r) AS relationshipType",
         )
 
-    private val allFields: Pattern = Pattern.compile(".*")
-
     override fun provideTo(
         dataSource: DataSourceInfo,
         player: SpritePlayer,
     ) {
         getDriver(dataSource).use { driver ->
 
+            if (parallelism > 1) {
+                provideInParallel(dataSource, player, driver)
+                return
+            }
+
             driver.session(AccessMode.READ).use { session ->
 
-                indexNodes(dataSource, player, session)
+                labelsOf(session, dataSource)
+                    .forEach { label -> exportLabel(dataSource, player, session, label) }
 
-                indexRelationships(dataSource, player, session)
+                if (streaming) {
+                    relationshipTypesOf(session, dataSource)
+                        .forEach { type -> streamRelationships(dataSource, player, session, type) }
+                } else {
+                    indexRelationships(dataSource, player, session, null)
+                }
+
+                player.end()
             }
         }
     }
 
-    private fun indexNodes(
+    /**
+     * Exports each label and each relationship type on its own session, up to [parallelism] at a time.
+     */
+    private fun provideInParallel(
+        dataSource: DataSourceInfo,
+        player: SpritePlayer,
+        driver: Driver,
+    ) {
+        val (labels, types) =
+            driver.session(AccessMode.READ).use { session ->
+                labelsOf(session, dataSource) to relationshipTypesOf(session, dataSource)
+            }
+
+        log.info("exporting {} labels and {} relationship types with parallelism {}", labels.size, types.size, parallelism)
+
+        val labelTasks =
+            labels.map { label ->
+                { processor: SpritePlayer ->
+                    driver.session(AccessMode.READ).use { session -> exportLabel(dataSource, processor, session, label) }
+                }
+            }
+
+        val typeTasks =
+            types.map { type ->
+                { processor: SpritePlayer ->
+                    driver.session(AccessMode.READ).use { session ->
+                        if (streaming) {
+                            streamRelationships(dataSource, processor, session, type)
+                        } else {
+                            indexRelationships(dataSource, processor, session, type)
+                        }
+                    }
+                }
+            }
+
+        ParallelSpriteExport(parallelism).run(player, labelTasks + typeTasks)
+
+        player.end()
+    }
+
+    private fun exportLabel(
         dataSource: DataSourceInfo,
         processor: SpritePlayer,
         session: Session,
+        label: String,
     ) {
-        val labels = session.run(queries["${dataSource.type}::LABELS"])
-
-        labels
-            .list()
-            .asSequence()
-            .map { res -> res.get("label").asString() }
-            .forEach { label -> indexLabel(dataSource, processor, session, label) }
+        if (streaming) {
+            streamLabel(dataSource, processor, session, label)
+        } else {
+            indexLabel(dataSource, processor, session, label)
+        }
     }
 
+    /**
+     * Pages the relationships of the given type, or of all types when null.
+     */
     private fun indexRelationships(
         dataSource: DataSourceInfo,
         processor: SpritePlayer,
         session: Session,
+        type: String?,
     ) {
-        val edges = countEdges(session)
+        val pattern = if (type == null) "()-[r]->()" else "()-[r:${escape(type)}]->()"
+        val edges = countEdges(session, pattern)
 
-        var skip = 0
-        var limit = Math.min(edges, 10000)
+        val query = "MATCH $pattern WHERE id(r) > \$last RETURN r ORDER BY id(r) LIMIT \$batch"
 
-        var fetched = 0
-        while (fetched < edges) {
-            val params = ImmutableMap.of<String, Any>("skip", skip, "limit", limit)
+        var last = -1L
+        var fetched = 0L
+        do {
+            log.debug("fetching edges from '{}' with query '{}' after id {}", session, query, last)
 
-            log.info(
-                "fetching edges from '{}' with query '{}' and params {} - {}",
-                session,
-                "MATCH ()-[r]->() RETURN r SKIP \$skip LIMIT \$limit",
-                skip,
-                limit,
-            )
+            val rels = session.run(query, pageParams(last))
 
-            val rels = session.run("MATCH ()-[r]->() RETURN r SKIP \$skip LIMIT \$limit", params)
+            var page = 0
             while (rels.hasNext()) {
-                val record = rels.next()
-
-                record
-                    .fields()
-                    .asSequence()
-                    .map { p -> p.value() }
-                    .filter { v -> v.type().name() == "RELATIONSHIP" }
-                    .map { v -> v.asRelationship() }
-                    .filter { r -> r.size() > 0 }
-                    .map { n ->
-                        Sprite()
-                            .load(n.asMap())
-                            .add("@class", n.type())
-                            .add(ARCADE_ID, toArcadeId(dataSource, Neo4jType.EDGE, n.id()))
-                            .add(ARCADE_TYPE, "edge")
-                            .apply<Any, String>(allFields) { v -> v.toString() }
-                    }.forEach { s -> processor.play(s) }
-                fetched++
-            }
-            skip = limit
-            limit += 10000
-        }
+                val rel = rels.next().get("r").asRelationship()
+                last = rel.id()
+                page++
 
-        processor.end()
+                if (rel.size() > 0) processor.play(toSprite(dataSource, rel))
+            }
+            fetched += page
+            log.info("edges {} fetched {}/{}", pattern, fetched, edges)
+        } while (page == batchSize)
     }
 
     private fun indexLabel(
@@ -138,66 +195,163 @@ class Neo4jGraphProvider : DataSourceGraphProvider {
         val nodes = countNodes(session, label)
         log.info("fetching data from '{}' - for label {} total nodes '{}' ", session, label, nodes)
 
-        var skip = 0
-        var limit = Math.min(nodes, 10000)
+        val query = "MATCH (n:${escape(label)}) WHERE id(n) > \$last RETURN n ORDER BY id(n) LIMIT \$batch"
 
-        var fetched = 0
-        while (fetched < nodes) {
-            log.info("fetching data from '{}' with query ' {} ' ", session, """MATCH (n:$label) RETURN n SKIP $skip LIMIT $limit""")
+        var last = -1L
+        var fetched = 0L
+        do {
+            log.debug("fetching data from '{}' with query '{}' after id {}", session, query, last)
 
-            val result = session.run("""MATCH (n:$label) RETURN n SKIP $skip LIMIT $limit""")
+            val result = session.run(query, pageParams(last))
 
+            var page = 0
             while (result.hasNext()) {
-                val record = result.next()
-
-                record
-                    .fields()
-                    .asSequence()
-                    .map { p -> p.value() }
-                    .filter { v -> v.type().name() == "NODE" }
-                    .map { v -> v.asNode() }
-                    .map { n ->
-                        Sprite()
-                            .load(n.asMap())
-                            .addAll("@class", n.labels())
-                            .add(ARCADE_ID, toArcadeId(dataSource, Neo4jType.NODE, n.id()))
-                            .add(ARCADE_TYPE, "node")
-                            .apply(allFields, Any::toString)
-                    }.forEach { s -> processor.play(s) }
-
-                fetched++
-            }
+                val node = result.next().get("n").asNode()
+                last = node.id()
+                page++
 
-            skip = limit
-            limit += 10000
-        }
+                processor.play(toSprite(dataSource, node))
+            }
+            fetched += page
+        } while (page == batchSize)
 
         log.info("label '{}' indexed -  totals {}/{} ", label, fetched, nodes)
         processor.end()
     }
 
+    private fun streamLabel(
+        dataSource: DataSourceInfo,
+        processor: SpritePlayer,
+        session: Session,
+        label: String,
+    ) {
+        val fetched =
+            stream(session, "MATCH (n:${escape(label)}) RETURN n") { value ->
+                processor.play(toSprite(dataSource, value.asNode()))
+            }
+
+        log.info("label '{}' indexed -  totals {} ", label, fetched)
+        processor.end()
+    }
+
+    private fun streamRelationships(
+        dataSource: DataSourceInfo,
+        processor: SpritePlayer,
+        session: Session,
+        type: String,
+    ) {
+        val fetched =
+            stream(session, "MATCH ()-[r:${escape(type)}]->() RETURN r") { value ->
+                val rel = value.asRelationship()
+                if (rel.size() > 0) processor.play(toSprite(dataSource, rel))
+            }
+
+        log.info("relationship type '{}' indexed -  totals {} ", type, fetched)
+    }
+
+    private fun labelsOf(
+        session: Session,
+        dataSource: DataSourceInfo,
+    ): List<String> = typesOf(session, "${dataSource.type}::LABELS", "label")
+
+    private fun relationshipTypesOf(
+        session: Session,
+        dataSource: DataSourceInfo,
+    ): List<String> = typesOf(session, "${dataSource.type}::EDGES", "relationshipType")
+
+    private fun typesOf(
+        session: Session,
+        query: String,
+        field: String,
+    ): List<String> =
+        session
+            .run(queries[query])
+            .list { record -> record.get(field).asString() }
+
+    /**
+     * Runs the query and hands the single returned value of each record to the consumer as soon as it is received.
+     */
+    private fun stream(
+        session: Session,
+        query: String,
+        consumer: (Value) -> Unit,
+    ): Long {
+        log.debug("streaming data from '{}' with query '{}'", session, query)
+
+        val result = session.run(query)
+
+        var fetched = 0L
+        while (result.hasNext()) {
+            consumer(result.next().get(0))
+            fetched++
+        }
+        return fetched
+    }
+
+    private fun toSprite(
+        dataSource: DataSourceInfo,
+        node: Node,
+    ): Sprite =
+        toSprite(node)
+            .addAll("@class", node.labels())
+            .add(ARCADE_ID, toArcadeId(dataSource, Neo4jType.NODE, node.id()))
+            .add(ARCADE_TYPE, "node")
+
+    private fun toSprite(
+        dataSource: DataSourceInfo,
+        rel: Relationship,
+    ): Sprite =
+        toSprite(rel)
+            .add("@class", rel.type())
+            .add(ARCADE_ID, toArcadeId(dataSource, Neo4jType.EDGE, rel.id()))
+            .add(ARCADE_TYPE, "edge")
+
+    /**
+     * Loads the properties as strings in a single pass, list properties are flattened.
+     */
+    private fun toSprite(entity: Entity): Sprite {
+        val sprite = Sprite()
+        for (key in entity.keys()) {
+            val value = entity.get(key)
+            if (value.type().name() == "LIST") {
+                value.values().forEach { v -> if (!v.isNull) sprite.data.put(key, v.asObject().toString()) }
+            } else if (!value.isNull) {
+                sprite.data.put(key, value.asObject().toString())
+            }
+        }
+        return sprite
+    }
+
+    private fun pageParams(last: Long): Map<String, Any> =
+        ImmutableMap.of<String, Any>("last", last, "batch", batchSize)
+
+    private fun escape(label: String): String = "`" + label.replace("`", "``") + "`"
+
     private fun countNodes(
         session: Session,
         label: String,
-    ): Int {
+    ): Long {
         val count =
             session
-                .run("MATCH (n:$label) RETURN count(*) AS count")
+                .run("MATCH (n:${escape(label)}) RETURN count(*) AS count")
                 .single()
                 .get("count")
-                .asInt()
+                .asLong()
         log.info("nodes for label '{}' : {}", label, count)
         return count
     }
 
-    private fun countEdges(session: Session): Int {
+    private fun countEdges(
+        session: Session,
+        pattern: String,
+    ): Long {
         val count =
             session
-                .run("MATCH ()-[r]->() RETURN count(*) AS count")
+                .run("MATCH $pattern RETURN count(*) AS count")
                 .single()
                 .get("count")
-                .asInt()
-        log.info("edges count: {}", count)
+                .asLong()
+        log.info("edges count for '{}': {}", pattern, count)
         return count
     }
 
@@ -22,11 +22,7 @@ package com.arcadeanalytics.provider.neo4j3
 
 import com.arcadeanalytics.provider.DataSourceInfo
 import org.apache.commons.lang3.StringUtils
-import org.neo4j.driver.v1.AuthTokens
-import org.neo4j.driver.v1.Config
 import org.neo4j.driver.v1.Driver
-import org.neo4j.driver.v1.GraphDatabase
-import java.util.concurrent.TimeUnit
 
 private const val CONNECTION_TEMPLATE = "bolt://{server}:{port}"
 
@@ -50,22 +46,11 @@ fun createConnectionUrl(datasource: DataSourceInfo): String =
         .replace("{server}", datasource.server)
         .replace("{port}", datasource.port.toString())
 
-fun getDriver(datasource: DataSourceInfo): Driver {
-    val connectionUrl = createConnectionUrl(datasource)
-
-    val config =
-        Config
-            .build()
-            .withConnectionTimeout(30, TimeUnit.SECONDS)
-            .withMaxConnectionPoolSize(1)
-            .toConfig()
-
-    return GraphDatabase.driver(
-        connectionUrl,
-        AuthTokens.basic(datasource.username, datasource.password),
-        config,
-    )
-}
+/**
+ * Leases the driver shared by all the providers for the given data source, see [Neo4jDriverRegistry].
+ * Closing the returned driver releases the lease.
+ */
+fun getDriver(datasource: DataSourceInfo): Driver = Neo4jDriverRegistry.acquire(datasource)
 
 enum class Neo4jType {
     NODE {
@@ -28,12 +28,8 @@ import com.arcadeanalytics.provider.TypeClass
 import com.arcadeanalytics.provider.TypeProperties
 import com.arcadeanalytics.provider.TypeProperty
 import org.neo4j.driver.v1.AccessMode
-import org.neo4j.driver.v1.AuthTokens
-import org.neo4j.driver.v1.Config
-import org.neo4j.driver.v1.GraphDatabase
 import org.neo4j.driver.v1.Session
 import org.slf4j.LoggerFactory
-import java.util.concurrent.TimeUnit
 
 /**
  *
@@ -53,19 +49,9 @@ class Neo4jMetadataProvider : DataSourceMetadataProvider {
     override fun supportedDataSourceTypes(): Set<String> = setOf("NEO4J", "NEO4J_MEMGRAPH")
 
     override fun fetchMetadata(dataSource: DataSourceInfo): DataSourceMetadata {
-        val connectionUrl = createConnectionUrl(dataSource)
-
         log.info("fetching metadata for dataSource {} ", dataSource.id)
 
-        val config =
-            Config
-                .build()
-                .withConnectionTimeout(5, TimeUnit.SECONDS)
-                .withConnectionLivenessCheckTimeout(1L, TimeUnit.SECONDS)
-                .toConfig()
-
-        GraphDatabase
-            .driver(connectionUrl, AuthTokens.basic(dataSource.username, dataSource.password), config)
+        getDriver(dataSource)
             .use {
                 it
                     .session(AccessMode.READ)
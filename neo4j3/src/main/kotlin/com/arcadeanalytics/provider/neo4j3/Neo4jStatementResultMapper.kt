@@ -79,7 +79,8 @@ class Neo4jStatementResultMapper(
         log.info("mapping result max {} ", maxTraversal)
         val nodesClasses = mutableMapOf<String, MutableMap<String, Any>>()
         val edgeClasses = mutableMapOf<String, MutableMap<String, Any>>()
-        val nodes = mutableSetOf<Node>()
+        // nodes indexed by id, to check the ends of the relationships without scanning them
+        val nodes = LinkedHashMap<Long, Node>()
         val rels = mutableSetOf<Relationship>()
         var fetchMore = true
         var fetched = 0
@@ -93,7 +94,7 @@ class Neo4jStatementResultMapper(
                     when (f.type().name()) {
                         "NODE" -> {
                             val node = f.asNode()
-                            nodes.add(node)
+                            nodes.putIfAbsent(node.id(), node)
                         }
                         "RELATIONSHIP" -> {
                             rels.add(f.asRelationship())
@@ -101,7 +102,7 @@ class Neo4jStatementResultMapper(
                         "PATH" -> {
                             val path = f.asPath()
                             rels.addAll(path.relationships())
-                            nodes.addAll(path.nodes())
+                            path.nodes().forEach { node -> nodes.putIfAbsent(node.id(), node) }
                         }
                     }
                 }
@@ -117,28 +118,11 @@ class Neo4jStatementResultMapper(
         val relsWithEachEnds =
             rels
                 .asSequence()
-                .filter { rel ->
-
-                    val endNodeId = rel.endNodeId()
-
-                    val startNodeId = rel.startNodeId()
-
-                    var foundStart = false
-                    var foundEnd = false
-
-                    for (node in nodes) {
-                        if (node.id() == endNodeId) {
-                            foundEnd = true
-                        } else if (node.id() == startNodeId) {
-                            foundStart = true
-                        }
-                    }
-
-                    foundStart && foundEnd
-                }.toSet()
+                .filter { rel -> nodes.containsKey(rel.startNodeId()) && nodes.containsKey(rel.endNodeId()) }
+                .toSet()
 
         val cytoNodes =
-            nodes
+            nodes.values
                 .asSequence()
                 .map { c -> mapProperties(nodesClasses, c) }
                 .map { n -> toCytoData(n) }
@@ -146,7 +130,7 @@ class Neo4jStatementResultMapper(
                 .toSet()
 
         val edges =
-            rels
+            relsWithEachEnds
                 .asSequence()
                 .map { c -> mapProperties(edgeClasses, c) }
                 .map { r -> toCytoData(r) }
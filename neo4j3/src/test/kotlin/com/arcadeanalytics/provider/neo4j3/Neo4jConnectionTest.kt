@@ -26,6 +26,7 @@ import com.arcadeanalytics.test.KGenericContainer
 import org.assertj.core.api.Assertions.assertThat
 import org.assertj.core.api.Assertions.assertThatExceptionOfType
 import org.junit.jupiter.api.Test
+import org.neo4j.driver.v1.AccessMode
 import org.slf4j.LoggerFactory
 import org.testcontainers.containers.output.Slf4jLogConsumer
 import org.testcontainers.containers.wait.strategy.Wait
@@ -80,4 +81,22 @@ class Neo4jConnectionTest {
 
         assertThatExceptionOfType(RuntimeException::class.java).isThrownBy { provider.testConnection(dataSource) }
     }
+
+    @Test
+    internal fun shouldKeepSharedDriverOpenUntilAllLeasesAreClosed() {
+        val first = getDriver(dataSource)
+        val second = getDriver(dataSource)
+
+        first.close()
+        // closing twice releases the lease once
+        first.close()
+
+        second.use { driver ->
+            driver.session(AccessMode.READ).use { session ->
+                assertThat(session.run("RETURN 1 AS one").single().get("one").asInt()).isEqualTo(1)
+            }
+        }
+
+        assertThat(provider.testConnection(dataSource)).isTrue()
+    }
 }
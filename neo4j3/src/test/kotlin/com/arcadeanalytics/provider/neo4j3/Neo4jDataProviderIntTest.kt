@@ -113,6 +113,39 @@ class Neo4jDataProviderIntTest {
             }
     }
 
+    @Test
+    @Throws(Exception::class)
+    fun shouldSkipEdgesWithoutBothEnds() {
+        // when
+        val query = "MATCH (people:Person)-[fof:FriendOf]->(friends) RETURN people, fof"
+        val data = provider.fetchData(dataSource, query, 100)
+
+        // then
+        assertThat(data.nodes).hasSize(2)
+        assertThat(data.edges).isEmpty()
+    }
+
+    @Test
+    @Throws(Exception::class)
+    fun shouldCountEdgesOfAllNodes() {
+        // when
+        val query = "MATCH (n) RETURN n;"
+        val data = provider.fetchData(dataSource, query, 100)
+
+        // then
+        val records = data.nodes.map { node -> node.data.record }
+
+        records
+            .filter { record -> record["name"] in listOf("rob", "frank", "john", "jane") }
+            .forEach { record ->
+                assertThat(record["@edgeCount"]).isEqualTo(2)
+                assertThat((record["@in"] as Map<String, Int>).values).containsExactly(1)
+                assertThat((record["@out"] as Map<String, Int>).values).containsExactly(1)
+            }
+
+        assertThat(records.sumOf { record -> record["@edgeCount"] as Int }).isEqualTo(8)
+    }
+
     @Test
     @Throws(Exception::class)
     fun shouldTraverseFromGivenNode() {
@@ -21,6 +21,8 @@ package com.arcadeanalytics.provider.neo
 
 import com.arcadeanalytics.data.Sprite
 import com.arcadeanalytics.data.SpritePlayer
+import com.arcadeanalytics.provider.IndexConstants.ARCADE_ID
+import com.arcadeanalytics.provider.IndexConstants.ARCADE_TYPE
 import com.arcadeanalytics.provider.neo4j3.Neo4jGraphProvider
 import org.assertj.core.api.Assertions.assertThat
 import org.junit.jupiter.api.Test
@@ -60,4 +62,84 @@ class Neo4jGraphProviderTest {
                 .any { c -> c == "Person" || c == "Car" || c == "fraternal" || c == "killer" },
         ).isTrue()
     }
+
+    @Test
+    fun shouldFetchAllElementsInSmallPages() {
+        val docs = ArrayList<Sprite>()
+
+        val indexer =
+            object : SpritePlayer {
+                override fun end() {
+                }
+
+                override fun begin() {
+                }
+
+                override fun processed(): Long = 0
+
+                override fun play(document: Sprite) {
+                    docs.add(document)
+                }
+            }
+
+        Neo4jGraphProvider(batchSize = 3).provideTo(Neo4jContainer.dataSource, indexer)
+
+        assertThat(docs).hasSize(12)
+        assertThat(docs.map { s -> s.valueOf(ARCADE_ID) }).doesNotHaveDuplicates()
+    }
+
+    @Test
+    fun shouldStreamAllElements() {
+        val docs = ArrayList<Sprite>()
+        var ends = 0
+
+        val indexer =
+            object : SpritePlayer {
+                override fun end() {
+                    ends++
+                }
+
+                override fun begin() {
+                }
+
+                override fun processed(): Long = 0
+
+                override fun play(document: Sprite) {
+                    docs.add(document)
+                }
+            }
+
+        Neo4jGraphProvider(streaming = true).provideTo(Neo4jContainer.dataSource, indexer)
+
+        assertThat(docs).hasSize(12)
+        assertThat(docs.map { s -> s.valueOf(ARCADE_ID) }).doesNotHaveDuplicates()
+        assertThat(docs.filter { s -> s.valueOf(ARCADE_TYPE) == "edge" }).allMatch { s -> s.hasField("kind") }
+        // one per label and one for the relationships
+        assertThat(ends).isEqualTo(3)
+    }
+
+    @Test
+    fun shouldFetchAllElementsInParallel() {
+        val docs = ArrayList<Sprite>()
+
+        val indexer =
+            object : SpritePlayer {
+                override fun end() {
+                }
+
+                override fun begin() {
+                }
+
+                override fun processed(): Long = 0
+
+                override fun play(document: Sprite) {
+                    docs.add(document)
+                }
+            }
+
+        Neo4jGraphProvider(parallelism = 4).provideTo(Neo4jContainer.dataSource, indexer)
+
+        assertThat(docs).hasSize(12)
+        assertThat(docs.map { s -> s.valueOf(ARCADE_ID) }).doesNotHaveDuplicates()
+    }
 }
@@ -35,10 +35,7 @@ import com.orientechnologies.orient.core.metadata.schema.OType
 import com.orientechnologies.orient.core.record.impl.ODocument
 import com.orientechnologies.orient.core.record.impl.ODocumentHelper
 import com.orientechnologies.orient.core.sql.query.OSQLAsynchQuery
-import com.tinkerpop.blueprints.Direction
-import com.tinkerpop.blueprints.impls.orient.OrientEdge
-import com.tinkerpop.blueprints.impls.orient.OrientGraphNoTx
-import com.tinkerpop.blueprints.impls.orient.OrientVertex
+import com.orientechnologies.orient.core.sql.query.OSQLSynchQuery
 import org.apache.commons.lang3.RegExUtils.removeFirst
 import org.apache.commons.lang3.StringUtils.trimToEmpty
 import org.apache.commons.lang3.StringUtils.truncate
@@ -46,6 +43,8 @@ import org.apache.commons.lang3.StringUtils.wrap
 import org.slf4j.LoggerFactory
 import java.util.HashMap
 
+private val IDS_BATCH_SIZE = Integer.getInteger("ORIENTDB_IDS_BATCH_SIZE", 1000)
+
 /**
  * Specialized provider for OrientDB2
  * @author Roberto Franchini
@@ -76,13 +75,14 @@ class OrientDBDataSourceGraphDataProvider : DataSourceGraphDataProvider {
         open(dataSource)
             .use { db ->
                 log.info("fetching data from '{}' with query '{}' ", dataSource.id, truncate(query, 256))
-                val collector = OrientDBDocumentCollector()
+                val mapper = GraphDataMapper(dataSource)
+                val listener = OrientDBResultListener(limit) { doc -> mapper.map(doc) }
 
-                db.query<List<*>>(OSQLAsynchQuery<Any>(query, OrientDBResultListener(collector, limit)))
+                db.query<List<*>>(OSQLAsynchQuery<Any>(query, listener))
 
-                log.info("Query executed, returned {} records with limit {} ", collector.size(), limit)
+                log.info("Query executed, returned {} records with limit {} ", listener.size(), limit)
 
-                val data = mapResultSet(dataSource, db, collector)
+                val data = mapper.complete(db, listener.isTruncated)
                 log.info("Fetched {} nodes and {} edges ", data.nodes.size, data.edges.size)
 
                 return data
@@ -201,72 +201,137 @@ class OrientDBDataSourceGraphDataProvider : DataSourceGraphDataProvider {
         return doc.field(fieldName)
     }
 
-    private fun mapResultSet(
-        dataSource: DataSourceInfo,
-        db: ODatabaseDocumentTx,
-        collector: OrientDBDocumentCollector,
-    ): GraphData {
-        val graph = OrientGraphNoTx(db)
+    /**
+     * Maps the documents to [CytoData] as they arrive from the query, so that they are not retained.
+     *
+     * Vertices and edges are indexed by rid. When the query is completed, the edge endpoints missing from the result
+     * are loaded, then the degrees of all the vertices are read from the sizes of their `in_X` and `out_X` ridbags:
+     * both in batches of `ORIENTDB_IDS_BATCH_SIZE` rids, without loading any edge.
+     */
+    private inner class GraphDataMapper(
+        private val dataSource: DataSourceInfo,
+    ) {
+        private val nodeClasses = mutableMapOf<String, Map<String, Any>>()
+        private val edgeClasses = mutableMapOf<String, Map<String, Any>>()
 
-        // DIVIDE VERTICES FROM EDGES
-        val nodes = mutableSetOf<OrientVertex>()
-        val edges = mutableSetOf<OrientEdge>()
-        val resultSet = collector.collected()
+        private val nodes = LinkedHashMap<ORID, CytoData>()
+        private val edges = LinkedHashMap<ORID, CytoData>()
 
-        resultSet
-            .asSequence()
-            .forEach { doc ->
-                if (doc.isVertexType()) {
-                    val vertex = graph.getVertex(doc)
-                    vertex.record.isTrackingChanges = false
-                    vertex.record.field("@edgeCount", vertex.countEdges(Direction.BOTH).toInt())
-                    nodes.add(vertex)
-                } else if (doc.isEdgeType()) {
-                    val edge = graph.getEdge(doc)
-                    edges.add(edge)
-                    nodes.add(graph.getVertex(edge.getVertex(Direction.IN)))
-                    nodes.add(graph.getVertex(edge.getVertex(Direction.OUT)))
-                }
+        // the in_ and out_ fields of each vertex, whose sizes are its degrees
+        private val degreeFields = HashMap<ORID, List<String>>()
+
+        // endpoints of the edges not in the result
+        private val endpoints = LinkedHashSet<ORID>()
+
+        fun map(doc: ODocument) {
+            when {
+                doc.isVertexType() -> mapVertex(doc)
+                doc.isEdgeType() -> mapEdge(doc)
             }
+        }
 
-        log.info("Computing edge map on {} edges...", edges.size)
+        fun complete(
+            db: ODatabaseDocumentTx,
+            truncated: Boolean,
+        ): GraphData {
+            val missing = endpoints.toList()
+            endpoints.clear()
 
-        val edgeClasses = mutableMapOf<String, Map<String, Any>>()
-        val cytoEdges =
-            edges
-                .asSequence()
-                .map { e -> e.record }
-                .map { d -> populateClasses(edgeClasses, d) }
-                .map { d -> mapRid(dataSource, d) }
-                .map { d -> mapInAndOut(dataSource, d) }
-                .map { d -> countInAndOut(d) }
-                .map { d -> toData(d) }
-                .toSet()
-
-        log.info("Computing vertex map on {} vertices...", nodes.size)
-
-        val nodeClasses = mutableMapOf<String, Map<String, Any>>()
-        val cytoNodes =
-            nodes
-                .asSequence()
-                .map { e -> e.record }
-                .map { d -> populateClasses(nodeClasses, d) }
-                .map { d -> mapRid(dataSource, d) }
-                .map { d -> countInAndOut(d) }
-                .map { d -> toData(d) }
-                .toSet()
-
-        return GraphData(nodeClasses, edgeClasses, cytoNodes, cytoEdges, collector.isTruncated)
-    }
+            log.info("Loading {} edge endpoints...", missing.size)
 
-    private fun addConnectedVertex(
-        connectedVertices: MutableSet<ODocument>,
-        vertex: OrientVertex,
-    ) {
-        val record = vertex.record
-        if (connectedVertices.add(record)) {
-            record.isTrackingChanges = false
-            record.field("@edgeCount", vertex.countEdges(Direction.BOTH))
+            missing.chunked(IDS_BATCH_SIZE).forEach { batch ->
+                db
+                    .query<List<ODocument>>(OSQLSynchQuery<ODocument>("SELECT FROM [${batch.joinToString()}]"))
+                    .forEach { doc -> mapVertex(doc) }
+            }
+
+            log.info("Computing degrees of {} vertices...", nodes.size)
+
+            nodes.keys.chunked(IDS_BATCH_SIZE).forEach { batch ->
+                val degrees = degreesOf(db, batch)
+
+                batch.forEach { rid -> addDegrees(nodes[rid]!!.data.record, degrees[rid].orEmpty()) }
+            }
+
+            return GraphData(nodeClasses, edgeClasses, nodes.values.toSet(), edges.values.toSet(), truncated)
+        }
+
+        private fun mapVertex(doc: ODocument) {
+            val rid = doc.identity
+            if (nodes.containsKey(rid)) return
+
+            endpoints.remove(rid)
+
+            doc.isTrackingChanges = false
+
+            val fields = doc.fieldNames().filter { f -> f.startsWith("out_") || f.startsWith("in_") }
+            fields.forEach { f -> doc.removeField(f) }
+            degreeFields[rid] = fields
+
+            populateClasses(nodeClasses, doc)
+            mapRid(dataSource, doc)
+
+            nodes[rid] = toData(doc)
+        }
+
+        private fun mapEdge(doc: ODocument) {
+            val rid = doc.identity
+            if (edges.containsKey(rid)) return
+
+            doc.isTrackingChanges = false
+
+            listOf("out", "in")
+                .mapNotNull { direction -> doc.rawField<OIdentifiable>(direction)?.identity }
+                .filterNot { endpoint -> nodes.containsKey(endpoint) }
+                .forEach { endpoint -> endpoints.add(endpoint) }
+
+            populateClasses(edgeClasses, doc)
+            mapRid(dataSource, doc)
+            mapInAndOut(dataSource, doc)
+            countInAndOut(doc)
+
+            edges[rid] = toData(doc)
+        }
+
+        /**
+         * Reads the sizes of the ridbags with a single projection query, the edges are never loaded.
+         */
+        private fun degreesOf(
+            db: ODatabaseDocumentTx,
+            rids: List<ORID>,
+        ): Map<ORID, Map<String, Int>> {
+            val fields = rids.flatMap { rid -> degreeFields[rid].orEmpty() }.distinct()
+            if (fields.isEmpty()) return emptyMap()
+
+            val projections = fields.mapIndexed { i, f -> "$f.size() as d$i" }.joinToString()
+            val query = "SELECT @rid as rid, $projections FROM [${rids.joinToString()}]"
+
+            return db
+                .query<List<ODocument>>(OSQLSynchQuery<ODocument>(query))
+                .associate { res ->
+                    val rid = res.rawField<OIdentifiable>("rid").identity
+                    val sizes = fields.mapIndexed { i, f -> f to (res.field<Number>("d$i")?.toInt() ?: 0) }.toMap()
+
+                    rid to degreeFields[rid].orEmpty().associateWith { f -> sizes[f] ?: 0 }
+                }
+        }
+
+        private fun addDegrees(
+            record: MutableMap<String, Any>,
+            degrees: Map<String, Int>,
+        ) {
+            val ins = record["@in"] as MutableMap<String, Any>
+            val outs = record["@out"] as MutableMap<String, Any>
+
+            degrees.forEach { (field, size) ->
+                if (field.startsWith("in_")) {
+                    ins[removeFirst(field, "in_")] = size
+                } else {
+                    outs[removeFirst(field, "out_")] = size
+                }
+            }
+
+            record["@edgeCount"] = degrees.values.sum()
         }
     }
 
@@ -22,15 +22,23 @@ package com.arcadeanalytics.provider.orient2
 import com.arcadeanalytics.provider.DataSourceInfo
 import com.arcadeanalytics.provider.DataSourceMetadata
 import com.arcadeanalytics.provider.DataSourceMetadataProvider
+import com.arcadeanalytics.provider.ESTIMATE_CARDINALITY
 import com.arcadeanalytics.provider.EdgesClasses
 import com.arcadeanalytics.provider.NodesClasses
 import com.arcadeanalytics.provider.TypeClass
 import com.arcadeanalytics.provider.TypeProperty
 import com.orientechnologies.orient.core.db.document.ODatabaseDocumentTx
+import com.orientechnologies.orient.core.metadata.schema.OClass
 import com.orientechnologies.orient.core.metadata.schema.OImmutableSchema
 import org.slf4j.LoggerFactory
 
-class OrientDBDataSourceMetadataProvider : DataSourceMetadataProvider {
+/**
+ * With [estimate], cardinalities are the approximate counts of the class clusters, which ignore record level security
+ * and pending transactions.
+ */
+class OrientDBDataSourceMetadataProvider(
+    private val estimate: Boolean = ESTIMATE_CARDINALITY,
+) : DataSourceMetadataProvider {
     private val log = LoggerFactory.getLogger(OrientDBDataSourceMetadataProvider::class.java)
 
     override fun fetchMetadata(dataSource: DataSourceInfo): DataSourceMetadata {
@@ -62,7 +70,7 @@ class OrientDBDataSourceMetadataProvider : DataSourceMetadataProvider {
                         .map { prop -> prop.name to TypeProperty(prop.name, prop.type.name) }
                         .toMap()
 
-                TypeClass(it.name, db.countClass(it.name, true), props)
+                toType(it, db, props)
             }.map {
                 it.name to it
             }.toMap()
@@ -82,10 +90,21 @@ class OrientDBDataSourceMetadataProvider : DataSourceMetadataProvider {
                         .map { prop -> prop.name to TypeProperty(prop.name, prop.type.name) }
                         .toMap()
 
-                TypeClass(it.name, db.countClass(it.name, true), props)
+                toType(it, db, props)
             }.map {
                 it.name to it
             }.toMap()
 
+    private fun toType(
+        oClass: OClass,
+        db: ODatabaseDocumentTx,
+        props: Map<String, TypeProperty>,
+    ): TypeClass =
+        if (estimate) {
+            TypeClass(oClass.name, oClass.approximateCount(true), props, true)
+        } else {
+            TypeClass(oClass.name, db.countClass(oClass.name, true), props)
+        }
+
     override fun supportedDataSourceTypes(): Set<String> = setOf("ORIENTDB")
 }
@@ -1,40 +0,0 @@
-/*-
- * #%L
- * Arcade Connectors
- * %%
- * Copyright (C) 2018 - 2021 ArcadeData
- * %%
- * Licensed under the Apache License, Version 2.0 (the "License");
- * you may not use this file except in compliance with the License.
- * You may obtain a copy of the License at
- *
- *      http://www.apache.org/licenses/LICENSE-2.0
- *
- * Unless required by applicable law or agreed to in writing, software
- * distributed under the License is distributed on an "AS IS" BASIS,
- * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
- * See the License for the specific language governing permissions and
- * limitations under the License.
- * #L%
- */
-package com.arcadeanalytics.provider.orient2
-
-import com.orientechnologies.orient.core.record.impl.ODocument
-import java.util.ArrayList
-
-class OrientDBDocumentCollector {
-    private val documents = ArrayList<ODocument>()
-    internal var isTruncated = false
-
-    fun collect(document: ODocument) {
-        documents.add(document)
-    }
-
-    fun size(): Int = documents.size
-
-    fun collected(): List<ODocument> = documents
-
-    fun truncated(truncated: Boolean) {
-        this.isTruncated = truncated
-    }
-}
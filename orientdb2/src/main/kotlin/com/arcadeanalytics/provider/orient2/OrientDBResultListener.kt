@@ -22,19 +22,25 @@ package com.arcadeanalytics.provider.orient2
 import com.orientechnologies.orient.core.command.OCommandResultListener
 import com.orientechnologies.orient.core.record.impl.ODocument
 
+/**
+ * Hands the documents over to the consumer as they arrive, until the limit of nodes and edges is reached.
+ */
 internal class OrientDBResultListener(
-    private val documentCollector: OrientDBDocumentCollector,
     private val limit: Int,
+    private val consumer: (ODocument) -> Unit,
 ) : OCommandResultListener {
     // state
     private var nodes: Int = 0
     private var edges: Int = 0
 
+    var isTruncated: Boolean = false
+        private set
+
     override fun result(record: Any): Boolean {
         // it is an ODocument
         val document = record as ODocument
 
-        documentCollector.collect(document)
+        consumer(document)
 
         when {
             document.isVertexType() -> nodes++
@@ -43,10 +49,12 @@ internal class OrientDBResultListener(
         }
 
         val fetchMore = nodes < limit || edges < limit
-        documentCollector.truncated(!fetchMore)
+        isTruncated = !fetchMore
         return fetchMore
     }
 
+    fun size(): Int = nodes + edges
+
     override fun end() {
     }
 
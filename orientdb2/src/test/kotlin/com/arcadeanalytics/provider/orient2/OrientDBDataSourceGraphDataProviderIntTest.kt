@@ -26,6 +26,7 @@ import com.orientechnologies.orient.core.db.document.ODatabaseDocumentTx
 import com.orientechnologies.orient.core.record.impl.ODocument
 import com.orientechnologies.orient.core.sql.query.OSQLSynchQuery
 import org.assertj.core.api.Assertions.assertThat
+import org.assertj.core.api.Assertions.entry
 import org.junit.jupiter.api.Test
 
 class OrientDBDataSourceGraphDataProviderIntTest {
@@ -53,6 +54,29 @@ class OrientDBDataSourceGraphDataProviderIntTest {
             .containsKeys("name", "@out", "@in", "@edgeCount")
     }
 
+    @Test
+    fun shouldCountEdgesByClassAndDirection() {
+        val data = provider.fetchData(dataSource, "select from Person where name = 'rob'", 20)
+
+        val record = data.nodes.first().data.record
+
+        assertThat(record["@edgeCount"]).isEqualTo(2)
+        assertThat(record["@out"] as Map<String, Any>).containsOnly(entry("FriendOf", 1))
+        assertThat(record["@in"] as Map<String, Any>).containsOnly(entry("HaterOf", 1))
+    }
+
+    @Test
+    fun shouldLoadTheEndpointsOfTheEdges() {
+        val data = provider.fetchData(dataSource, "select from FriendOf", 20)
+
+        assertThat(data.edges).hasSize(2)
+        assertThat(data.nodes).hasSize(4)
+
+        val ids = data.nodes.map { n -> n.data.id }
+        assertThat(data.edges.flatMap { e -> listOf(e.data.source, e.data.target) }).allMatch { id -> id in ids }
+        assertThat(data.nodes.map { n -> n.data.record["@edgeCount"] }).containsOnly(2)
+    }
+
     @Test
     @Throws(Exception::class)
     fun shouldTraverseFromGivenNode() {
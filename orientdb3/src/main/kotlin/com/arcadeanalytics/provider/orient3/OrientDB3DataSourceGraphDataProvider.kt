@@ -27,10 +27,10 @@ import com.arcadeanalytics.provider.GraphData
 import com.arcadeanalytics.provider.mapType
 import com.google.common.collect.Maps
 import com.orientechnologies.common.collection.OMultiValue
+import com.orientechnologies.orient.core.db.document.ODatabaseDocument
 import com.orientechnologies.orient.core.db.record.OIdentifiable
 import com.orientechnologies.orient.core.id.ORID
 import com.orientechnologies.orient.core.metadata.schema.OType
-import com.orientechnologies.orient.core.record.ODirection
 import com.orientechnologies.orient.core.record.OEdge
 import com.orientechnologies.orient.core.record.OElement
 import com.orientechnologies.orient.core.record.OVertex
@@ -44,6 +44,8 @@ import org.apache.commons.lang3.StringUtils.trimToEmpty
 import org.apache.commons.lang3.StringUtils.wrap
 import org.slf4j.LoggerFactory
 
+private val DEGREE_BATCH_SIZE = Integer.getInteger("ORIENTDB3_DEGREE_BATCH_SIZE", 1000)
+
 /**
  * Specialized provider for OrientDB 3.0.x
  */
@@ -56,13 +58,12 @@ class OrientDB3DataSourceGraphDataProvider : DataSourceGraphDataProvider {
         log.info("testing connection to :: '{}' ", dataSource.id)
 
         try {
-            open(dataSource)
-                .use { db ->
+            return OrientDB3SessionRegistry.withSession(dataSource) { db ->
 
-                    val count = db.query("SELECT FROM V LIMIT 1").asSequence().count()
-                    log.info("connection works fine:: '{}' ", dataSource.id)
-                    return count == 1
-                }
+                val count = db.query("SELECT FROM V LIMIT 1").use { resultSet -> resultSet.asSequence().count() }
+                log.info("connection works fine:: '{}' ", dataSource.id)
+                count == 1
+            }
         } catch (e: Exception) {
             throw RuntimeException(e)
         }
@@ -75,19 +76,18 @@ class OrientDB3DataSourceGraphDataProvider : DataSourceGraphDataProvider {
     ): GraphData {
         log.info("fetching data from '{}' with query '{}' ", dataSource.id, query)
 
-        open(dataSource)
-            .use { db ->
+        return OrientDB3SessionRegistry.withSession(dataSource) { db ->
 
-                val lang = if (query.startsWith("gremlin:")) "gremlin" else "sql"
+            val lang = if (query.startsWith("gremlin:")) "gremlin" else "sql"
 
-                db
-                    .execute(lang, query.removePrefix("gremlin:"))
-                    .use { resultSet ->
-                        val data = mapResultSet(dataSource, resultSet)
-                        log.info("Fetched {} nodes and {} edges ", data.nodes.size, data.edges.size)
-                        return data
-                    }
-            }
+            db
+                .execute(lang, query.removePrefix("gremlin:"))
+                .use { resultSet ->
+                    val data = mapResultSet(dataSource, resultSet, db)
+                    log.info("Fetched {} nodes and {} edges ", data.nodes.size, data.edges.size)
+                    data
+                }
+        }
     }
 
     private fun toCytoData(element: OElement): CytoData {
@@ -209,38 +209,37 @@ class OrientDB3DataSourceGraphDataProvider : DataSourceGraphDataProvider {
     fun mapResultSet(
         dataSource: DataSourceInfo,
         resultSet: OResultSet,
+        db: ODatabaseDocument,
     ): GraphData {
-        // DIVIDE VERTICES FROM EDGES
-        val nodes = mutableSetOf<OVertex>()
-        val edges = mutableSetOf<OEdge>()
+        // DIVIDE VERTICES FROM EDGES, BOTH INDEXED BY RID
+        val nodes = LinkedHashMap<ORID, OVertex>()
+        val edges = LinkedHashMap<ORID, OEdge>()
         resultSet
             .asSequence()
-            .onEach { res -> log.info(res.toJSON()) }
             .map { res -> res.element.get() }
             .forEach { element ->
                 if (element.isVertex) {
                     val vertex: OVertex = element as OVertex
-                    vertex.setProperty("@edgeCount", vertex.getEdges(ODirection.BOTH).asSequence().count())
-                    nodes.add(vertex)
+                    nodes[vertex.identity] = vertex
                 } else if (element.isEdge) {
                     val edge: OEdge = element as OEdge
-                    edges.add(edge)
-//                        nodes.add(edge.from)
-//                        nodes.add(edge.to)
+                    edges[edge.identity] = edge
                 }
             }
 
+        val degrees = degreesOf(db, nodes.values)
+
         log.info("Computing edge map on {} edges...", edges.size)
 
         val edgeClasses = HashMap<String, Map<String, Any>>()
         val cytoEdges =
-            edges
+            edges.values
                 .asSequence()
-                .filter { e -> nodes.contains(e.from) && nodes.contains(e.to) }
+                .filter { e -> nodes.containsKey(endpointOf(e, "out")) && nodes.containsKey(endpointOf(e, "in")) }
                 .map { e -> populateClasses(edgeClasses, e) }
                 .map { e -> mapRid(dataSource, e) }
                 .map { e -> mapInAndOut(dataSource, e) }
-                .map { e -> countInAndOut(e) }
+                .map { e -> countInAndOut(e, degrees) }
                 .map { e -> toCytoData(e) }
                 .toSet()
 
@@ -248,29 +247,81 @@ class OrientDB3DataSourceGraphDataProvider : DataSourceGraphDataProvider {
 
         val nodeClasses = HashMap<String, Map<String, Any>>()
         val cytoNodes =
-            nodes
+            nodes.values
                 .asSequence()
                 .map { v -> populateClasses(nodeClasses, v) }
                 .map { v -> mapRid(dataSource, v) }
-                .map { v -> countInAndOut(v) }
+                .map { v -> countInAndOut(v, degrees) }
                 .map { v -> toCytoData(v) }
                 .toSet()
 
         return GraphData(nodeClasses, edgeClasses, cytoNodes, cytoEdges, false)
     }
 
-    private fun countInAndOut(element: OElement): OElement {
+    /**
+     * The rid of an edge endpoint, read from the raw link: the vertex record is never loaded.
+     */
+    internal fun endpointOf(
+        edge: OEdge,
+        direction: String,
+    ): ORID? = (edge as ODocument).rawField<OIdentifiable>(direction)?.identity
+
+    /**
+     * Reads the in and out degrees of the vertices by edge class, as the sizes of their `in_X` and `out_X` ridbags,
+     * with a projection query per batch of vertices: the edges are never loaded.
+     */
+    private fun degreesOf(
+        db: ODatabaseDocument,
+        vertices: Collection<OVertex>,
+    ): Map<ORID, Map<String, Int>> {
+        val degrees = HashMap<ORID, Map<String, Int>>()
+
+        vertices.chunked(DEGREE_BATCH_SIZE).forEach { batch ->
+            val fields =
+                batch
+                    .flatMap { v -> (v as ODocument).fieldNames().asIterable() }
+                    .filter { f -> f.startsWith("out_") || f.startsWith("in_") }
+                    .distinct()
+
+            if (fields.isEmpty()) return@forEach
+
+            val projections = fields.mapIndexed { i, f -> "`$f`.size() as d$i" }.joinToString()
+            val rids = batch.joinToString { v -> v.identity.toString() }
+
+            db.query("SELECT @rid as rid, $projections FROM [$rids]").use { resultSet ->
+                resultSet.asSequence().forEach { res ->
+                    val rid = res.getProperty<OIdentifiable>("rid").identity
+
+                    degrees[rid] =
+                        fields
+                            .mapIndexed { i, f -> f to (res.getProperty<Number>("d$i")?.toInt() ?: 0) }
+                            .toMap()
+                }
+            }
+        }
+
+        return degrees
+    }
+
+    private fun countInAndOut(
+        element: OElement,
+        degrees: Map<ORID, Map<String, Int>>,
+    ): OElement {
         if (element.isVertex) {
             element as OVertexDocument
+
+            val vertexDegrees = degrees[element.identity].orEmpty()
+
             element
                 .fieldNames()
                 .asSequence()
                 .filter { f -> f.startsWith("out_") || f.startsWith("in_") }
                 .forEach { f ->
-                    val size = OMultiValue.getSize(element.field(f))
                     element.removeField(f)
-                    element.field(f, size)
+                    element.field(f, vertexDegrees[f] ?: 0)
                 }
+
+            element.setProperty("@edgeCount", vertexDegrees.values.sum())
         } else {
             element as OEdgeDocument
             element
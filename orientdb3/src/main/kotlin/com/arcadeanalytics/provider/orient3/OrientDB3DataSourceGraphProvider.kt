@@ -25,22 +25,54 @@ import com.arcadeanalytics.provider.DataSourceGraphProvider
 import com.arcadeanalytics.provider.DataSourceInfo
 import com.arcadeanalytics.provider.IndexConstants.ARCADE_ID
 import com.arcadeanalytics.provider.IndexConstants.ARCADE_TYPE
+import com.arcadeanalytics.provider.ParallelSpriteExport
 import com.orientechnologies.orient.core.id.ORID
 import com.orientechnologies.orient.core.id.ORecordId
 import com.orientechnologies.orient.core.record.OElement
 import com.orientechnologies.orient.core.record.impl.ODocument
 import org.slf4j.LoggerFactory
-import java.util.regex.Pattern
+import java.util.concurrent.atomic.AtomicInteger
 
-class OrientDB3DataSourceGraphProvider : DataSourceGraphProvider {
+private val EXPORT_STRATEGY =
+    OrientDB3ExportStrategy.valueOf(System.getProperty("ORIENTDB3_EXPORT_STRATEGY", "PAGED").uppercase())
+
+private val EXPORT_BATCH_SIZE = Integer.getInteger("ORIENTDB3_EXPORT_BATCH_SIZE", 1000)
+
+private val EXPORT_PARALLELISM = Integer.getInteger("ORIENTDB3_EXPORT_PARALLELISM", 1)
+
+/**
+ * How [OrientDB3DataSourceGraphProvider] reads all the records of a data source.
+ */
+enum class OrientDB3ExportStrategy {
+    /**
+     * Pages of `batchSize` records ordered by `@rid`, each one starting after the last `@rid` of the previous one.
+     */
+    PAGED,
+
+    /**
+     * A single query per cluster, each one on a session of its own: records are read through the server side cursor
+     * of the result set, which fetches them a page of `QUERY_REMOTE_RESULTSET_PAGE_SIZE` records at a time.
+     */
+    STREAM,
+}
+
+/**
+ * Exports all the vertices and then all the edges, read with the given [strategy].
+ *
+ * With a [parallelism] greater than one the clusters of the vertex and edge classes are scanned concurrently, each
+ * one on a pooled session, see [ParallelSpriteExport]: the pool size, `ORIENTDB3_POOL_MAX_SIZE`, should not be lower.
+ */
+class OrientDB3DataSourceGraphProvider(
+    private val strategy: OrientDB3ExportStrategy = EXPORT_STRATEGY,
+    private val batchSize: Int = EXPORT_BATCH_SIZE,
+    private val parallelism: Int = EXPORT_PARALLELISM,
+) : DataSourceGraphProvider {
     private val log = LoggerFactory.getLogger(OrientDB3DataSourceGraphProvider::class.java)
 
     private val vertexCount = "select count(*) as count from V"
 
     private val edgeCount = "select count(*) as count from E"
 
-    private val allFields: Pattern = Pattern.compile(".*")
-
     override fun supportedDataSourceTypes(): Set<String> = setOf("ORIENTDB3")
 
     override fun provideTo(
@@ -48,8 +80,19 @@ class OrientDB3DataSourceGraphProvider : DataSourceGraphProvider {
         player: SpritePlayer,
     ) {
         try {
-            provide(dataSource, player, "V")
-            provide(dataSource, player, "E")
+            when {
+                parallelism > 1 -> provideInParallel(dataSource, player)
+
+                strategy == OrientDB3ExportStrategy.PAGED -> {
+                    provide(dataSource, player, "V")
+                    provide(dataSource, player, "E")
+                }
+
+                else -> {
+                    stream(dataSource, player, "V")
+                    stream(dataSource, player, "E")
+                }
+            }
         } finally {
             player.end()
         }
@@ -60,27 +103,25 @@ class OrientDB3DataSourceGraphProvider : DataSourceGraphProvider {
         player: SpritePlayer,
         what: String,
     ) {
-        val count: Long =
-            open(dataSource).use { db ->
+        OrientDB3SessionRegistry.withSession(dataSource) { db ->
+            val count: Long =
                 db.query("select count(*) as count from $what").use { result ->
                     result.asSequence().first().getProperty("count")
                 }
-            }
 
-        var fetched: Long = 0
-        var skip: ORID = ORecordId("#-1:-1")
-        var lastORID: ORID = skip
+            var fetched: Long = 0
+            var skip: ORID = ORecordId("#-1:-1")
+            var lastORID: ORID = skip
 
-        log.info("start indexing of '{}' from data-source {} - total :: {} ", what, dataSource.id, count)
+            log.info("start indexing of '{}' from data-source {} - total :: {} ", what, dataSource.id, count)
 
-        while (fetched < count) {
-            open(dataSource).use { db ->
-                db.query("SELECT * FROM $what WHERE @rid > $skip LIMIT 1000").use { resultSet ->
+            while (fetched < count) {
+                db.query("SELECT * FROM $what WHERE @rid > $skip LIMIT $batchSize").use { resultSet ->
                     resultSet
                         .asSequence()
                         .map { res -> res.element.get() }
-                        .filter { elem -> elem.propertyNames.size > 0 }
                         .onEach { elem: OElement -> lastORID = elem.identity }
+                        .filter { elem -> elem.propertyNames.size > 0 }
                         .map { elem: OElement -> elem as ODocument }
                         .map { doc -> toSprite(doc) }
                         .forEach { doc: Sprite ->
@@ -88,18 +129,110 @@ class OrientDB3DataSourceGraphProvider : DataSourceGraphProvider {
                             fetched++
                         }
                 }
-            }
-            player.end()
+                player.end()
+
+                // records without properties are skipped, but not counted: stop when nothing is left
+                if (lastORID == skip) break
 
-            skip = lastORID
+                skip = lastORID
+            }
         }
     }
 
+    private fun stream(
+        dataSource: DataSourceInfo,
+        player: SpritePlayer,
+        what: String,
+    ) {
+        val clusterIds = clusterIdsOf(dataSource, what)
+
+        log.info("start streaming of '{}' from data-source {} - clusters :: {} ", what, dataSource.id, clusterIds.size)
+
+        val fetched = clusterIds.sumOf { clusterId -> streamCluster(dataSource, player, clusterId) }
+
+        log.info("data-source {} - total '{}' :: {} ", dataSource.id, what, fetched)
+    }
+
+    private fun provideInParallel(
+        dataSource: DataSourceInfo,
+        player: SpritePlayer,
+    ) {
+        val vertexClusterIds = clusterIdsOf(dataSource, "V")
+        val edgeClusterIds = clusterIdsOf(dataSource, "E")
+
+        val clusters = vertexClusterIds.size + edgeClusterIds.size
+        val done = AtomicInteger()
+
+        log.info(
+            "start indexing of data-source {} - {} vertex and {} edge clusters on {} threads",
+            dataSource.id,
+            vertexClusterIds.size,
+            edgeClusterIds.size,
+            parallelism,
+        )
+
+        val tasks =
+            (vertexClusterIds + edgeClusterIds).map { clusterId ->
+                { processor: SpritePlayer ->
+                    val count = streamCluster(dataSource, processor, clusterId)
+
+                    log.info(
+                        "data-source {} - cluster {} done:: {} ({}/{})",
+                        dataSource.id,
+                        clusterId,
+                        count,
+                        done.incrementAndGet(),
+                        clusters,
+                    )
+                }
+            }
+
+        ParallelSpriteExport(parallelism).run(player, tasks)
+    }
+
+    private fun clusterIdsOf(
+        dataSource: DataSourceInfo,
+        what: String,
+    ): IntArray =
+        OrientDB3SessionRegistry.withSession(dataSource) { db ->
+            db.metadata.schema
+                .getClass(what)
+                .polymorphicClusterIds
+        }
+
+    private fun streamCluster(
+        dataSource: DataSourceInfo,
+        player: SpritePlayer,
+        clusterId: Int,
+    ): Long =
+        OrientDB3SessionRegistry.withSession(dataSource) { db ->
+            var fetched: Long = 0
+
+            db.query("SELECT FROM cluster:$clusterId").use { resultSet ->
+                resultSet
+                    .asSequence()
+                    .map { res -> res.element.get() as ODocument }
+                    .filter { doc -> doc.propertyNames.isNotEmpty() }
+                    .forEach { doc ->
+                        player.play(toSprite(doc))
+                        fetched++
+                    }
+            }
+
+            fetched
+        }
+
+    /**
+     * Fills the sprite straight from the document properties, values are stored as strings.
+     */
     private fun toSprite(document: ODocument): Sprite {
         val rid = document.identity
 
-        return Sprite()
-            .load(document.toMap())
+        val sprite = Sprite()
+        document.propertyNames.forEach { name -> sprite.add(name, toSpriteValue(document.getProperty(name))) }
+
+        return sprite
+            .add("@class", document.className)
             .addAll(
                 "@class",
                 document.schemaClass
@@ -107,11 +240,16 @@ class OrientDB3DataSourceGraphProvider : DataSourceGraphProvider {
                     .asSequence()
                     .map { c -> c.name }
                     .toList(),
-            ).apply<Any, String>(allFields) { v -> v.toString() }
-            .remove("@class", "V")
+            ).remove("@class", "V")
             .remove("@class", "E")
-            .remove("@rid")
             .add(ARCADE_ID, "${rid.clusterId}_${rid.clusterPosition}")
             .add(ARCADE_TYPE, document.type())
     }
+
+    private fun toSpriteValue(value: Any?): Any? =
+        when (value) {
+            null -> null
+            is Collection<*> -> value.filterNotNull().map { v -> v.toString() }
+            else -> value.toString()
+        }
 }
@@ -22,6 +22,7 @@ package com.arcadeanalytics.provider.orient3
 import com.arcadeanalytics.provider.DataSourceInfo
 import com.arcadeanalytics.provider.DataSourceMetadata
 import com.arcadeanalytics.provider.DataSourceMetadataProvider
+import com.arcadeanalytics.provider.ESTIMATE_CARDINALITY
 import com.arcadeanalytics.provider.EdgesClasses
 import com.arcadeanalytics.provider.NodesClasses
 import com.arcadeanalytics.provider.TypeClass
@@ -32,20 +33,26 @@ import com.orientechnologies.orient.core.metadata.schema.OClass
 import com.orientechnologies.orient.core.metadata.schema.OSchema
 import org.slf4j.LoggerFactory
 
-class OrientDB3DataSourceMetadataProvider : DataSourceMetadataProvider {
+/**
+ * With [estimate], cardinalities are the approximate counts of the class clusters, which ignore record level security
+ * and pending transactions.
+ */
+class OrientDB3DataSourceMetadataProvider(
+    private val estimate: Boolean = ESTIMATE_CARDINALITY,
+) : DataSourceMetadataProvider {
     private val log = LoggerFactory.getLogger(OrientDB3DataSourceMetadataProvider::class.java)
 
     override fun fetchMetadata(dataSource: DataSourceInfo): DataSourceMetadata {
         log.info("fetching metadata for dataSource {} ", dataSource.id)
 
-        open(dataSource).use {
+        return OrientDB3SessionRegistry.withSession(dataSource) {
             val schema = it.metadata.schema
 
             val nodesClasses = nodeClasses(schema, it)
 
             val edgeClasses = edgeClasses(schema, it)
 
-            return DataSourceMetadata(nodesClasses, edgeClasses)
+            DataSourceMetadata(nodesClasses, edgeClasses)
         }
     }
 
@@ -81,6 +88,8 @@ class OrientDB3DataSourceMetadataProvider : DataSourceMetadataProvider {
                 .map { prop -> prop.name to TypeProperty(prop.name, prop.type.name) }
                 .toMap()
 
+        if (estimate) return TypeClass(oClass.name, oClass.approximateCount(true), props, true)
+
         return TypeClass(oClass.name, db.countClass(oClass.name, true), props)
     }
 
@@ -64,22 +64,21 @@ class OrientDB3DataSourceTableDataProvider : DataSourceTableDataProvider {
     ): GraphData {
         log.info("fetching data from '{}' with query '{}' ", dataSource.id, truncate(query, 256))
 
-        open(dataSource)
-            .use { db ->
+        return OrientDB3SessionRegistry.withSession(dataSource) { db ->
 
-                val lang = if (query.startsWith("gremlin:")) "gremlin" else "sql"
+            val lang = if (query.startsWith("gremlin:")) "gremlin" else "sql"
 
-                db
-                    .execute(lang, query.removePrefix("gremlin:"))
-                    .use { resultSet ->
+            db
+                .execute(lang, query.removePrefix("gremlin:"))
+                .use { resultSet ->
 
-                        val data = mapResultSet(resultSet)
+                    val data = mapResultSet(resultSet)
 
-                        log.info("Fetched {} rows", data.nodes.size)
+                    log.info("Fetched {} rows", data.nodes.size)
 
-                        return data
-                    }
-            }
+                    data
+                }
+        }
     }
 
     fun mapResultSet(resultSet: OResultSet): GraphData {
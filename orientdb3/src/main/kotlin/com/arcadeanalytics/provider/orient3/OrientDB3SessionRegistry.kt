@@ -0,0 +1,164 @@
+/*-
+ * #%L
+ * Arcade Connectors
+ * %%
+ * Copyright (C) 2018 - 2021 ArcadeData
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.arcadeanalytics.provider.orient3
+
+import com.arcadeanalytics.provider.DataSourceInfo
+import com.arcadeanalytics.provider.LeasedResourceRegistry
+import com.orientechnologies.common.io.OIOException
+import com.orientechnologies.orient.core.config.OGlobalConfiguration
+import com.orientechnologies.orient.core.db.ODatabasePool
+import com.orientechnologies.orient.core.db.ODatabaseSession
+import com.orientechnologies.orient.core.db.OrientDB
+import com.orientechnologies.orient.core.db.OrientDBConfig
+import com.orientechnologies.orient.core.exception.OSecurityAccessException
+import com.orientechnologies.orient.core.exception.OStorageException
+import org.slf4j.LoggerFactory
+import java.io.IOException
+import java.util.concurrent.ConcurrentHashMap
+
+/**
+ * Registry of the [OrientDB] contexts shared by the orientdb3 providers: a single remote context per server, with an
+ * [ODatabasePool] of at most `ORIENTDB3_POOL_MAX_SIZE` sessions per database and credentials.
+ *
+ * [withSession] leases a pooled session for the duration of a call. A context without leases is closed, along with
+ * its pools, after `ORIENTDB3_POOL_IDLE_TIMEOUT_MS`; all the contexts are closed on shutdown.
+ */
+object OrientDB3SessionRegistry {
+    private val log = LoggerFactory.getLogger(OrientDB3SessionRegistry::class.java)
+
+    private val POOL_MAX_SIZE = Integer.getInteger("ORIENTDB3_POOL_MAX_SIZE", 20)
+    private val IDLE_TIMEOUT_MS = java.lang.Long.getLong("ORIENTDB3_POOL_IDLE_TIMEOUT_MS", 600_000L)
+    private val EVICTION_INTERVAL_MS = java.lang.Long.getLong("ORIENTDB3_POOL_EVICTION_INTERVAL_MS", 30_000L)
+
+    private val contexts =
+        LeasedResourceRegistry<List<Any?>, SharedContext>(
+            "orientdb3-pool",
+            IDLE_TIMEOUT_MS,
+            EVICTION_INTERVAL_MS,
+            dispose = { shared -> shared.close() },
+        )
+
+    /**
+     * Runs the block with a session borrowed from the pool of the given data source, creating it on first use.
+     * The session goes back to the pool when the block completes.
+     *
+     * When the server can't be reached the context is evicted, so the next call opens a new one. When the credentials
+     * are rejected only the pool of the database is dropped: the other databases of the server keep theirs.
+     */
+    fun <T> withSession(
+        dataSource: DataSourceInfo,
+        block: (ODatabaseSession) -> T,
+    ): T {
+        val key = keyOf(dataSource)
+
+        return contexts.withLease(key, { SharedContext(createContext(dataSource)) }) { lease ->
+            val session =
+                try {
+                    lease.resource.poolOf(dataSource).acquire()
+                } catch (e: Exception) {
+                    if (isUnreachable(e)) {
+                        if (contexts.evict(key, lease)) {
+                            log.warn("server of data source {} unreachable, evicting its context", dataSource.id)
+                        }
+                    } else if (e is OSecurityAccessException) {
+                        log.warn("access denied to the database of data source {}, dropping its pool", dataSource.id)
+                        lease.resource.dropPool(dataSource)
+                    }
+                    throw e
+                }
+
+            session.use(block)
+        }
+    }
+
+    /**
+     * Runs the block with the shared context of the given data source.
+     */
+    fun <T> withContext(
+        dataSource: DataSourceInfo,
+        block: (OrientDB) -> T,
+    ): T =
+        contexts.withLease(keyOf(dataSource), { SharedContext(createContext(dataSource)) }) { lease ->
+            block(lease.resource.orientDB)
+        }
+
+    /**
+     * Closes the context of the given data source, if any. Calls in progress complete before it is closed.
+     */
+    fun invalidate(dataSource: DataSourceInfo) {
+        contexts.invalidate(keyOf(dataSource))
+    }
+
+    /**
+     * Closes all the contexts.
+     */
+    fun closeAll() {
+        contexts.closeAll()
+    }
+
+    private fun keyOf(dataSource: DataSourceInfo): List<Any?> = listOf(dataSource.server, dataSource.port)
+
+    private fun isUnreachable(e: Throwable): Boolean =
+        causesOf(e).any { cause ->
+            cause is OIOException || (cause is OStorageException && causesOf(cause).any { it is IOException })
+        }
+
+    private fun causesOf(e: Throwable): Sequence<Throwable> = generateSequence(e) { it.cause }
+
+    private fun createContext(dataSource: DataSourceInfo): OrientDB {
+        val orientdbConnectionUrl = createOrientdbConnectionUrl(dataSource)
+
+        log.info("creating orientdb context for '{}' ", orientdbConnectionUrl)
+
+        return OrientDB(orientdbConnectionUrl, OrientDBConfig.defaultConfig())
+    }
+
+    private class SharedContext(
+        val orientDB: OrientDB,
+    ) {
+        private val pools = ConcurrentHashMap<List<Any?>, ODatabasePool>()
+
+        fun poolOf(dataSource: DataSourceInfo): ODatabasePool =
+            pools.computeIfAbsent(poolKeyOf(dataSource)) {
+                val config =
+                    OrientDBConfig
+                        .builder()
+                        .addConfig(OGlobalConfiguration.DB_POOL_MAX, POOL_MAX_SIZE)
+                        .build()
+
+                ODatabasePool(orientDB, dataSource.database, dataSource.username, dataSource.password, config)
+            }
+
+        fun dropPool(dataSource: DataSourceInfo) {
+            pools.remove(poolKeyOf(dataSource))?.close()
+        }
+
+        private fun poolKeyOf(dataSource: DataSourceInfo): List<Any?> =
+            listOf(dataSource.database, dataSource.username, dataSource.password)
+
+        fun close() {
+            try {
+                pools.values.forEach { pool -> pool.close() }
+            } finally {
+                orientDB.close()
+            }
+        }
+    }
+}
@@ -20,10 +20,7 @@
 package com.arcadeanalytics.provider.orient3
 
 import com.arcadeanalytics.provider.DataSourceInfo
-import com.orientechnologies.orient.core.db.ODatabaseSession
 import com.orientechnologies.orient.core.db.ODatabaseType
-import com.orientechnologies.orient.core.db.OrientDB
-import com.orientechnologies.orient.core.db.OrientDBConfig
 import com.orientechnologies.orient.core.db.document.ODatabaseDocument
 import com.orientechnologies.orient.core.record.OEdge
 import com.orientechnologies.orient.core.record.OVertex
@@ -42,23 +39,29 @@ fun createOrientdbConnectionUrl(dataSource: DataSourceInfo): String =
         .replace("{server}", dataSource.server)
         .replace("{port}", dataSource.port.toString())
 
-fun open(dataSource: DataSourceInfo): ODatabaseSession {
-    val orientdbConnectionUrl = createOrientdbConnectionUrl(dataSource)
-
-    val orientDB = OrientDB(orientdbConnectionUrl, OrientDBConfig.defaultConfig())
-
-    return orientDB.open(dataSource.database, dataSource.username, dataSource.password)
-}
-
-fun openGremlin(dataSource: DataSourceInfo): OrientGraph {
-    val orientdbConnectionUrl = createOrientdbConnectionUrl(dataSource)
-    val orientDB = OrientDB(orientdbConnectionUrl, OrientDBConfig.defaultConfig())
-//    val session = orientDB.open(dataSource.database, dataSource.username, dataSource.password)
-
-    val graphFactory = OrientGraphFactory(orientDB, dataSource.database, ODatabaseType.PLOCAL, dataSource.username, dataSource.password)
+/**
+ * Runs the block with a non transactional gremlin graph opened on the shared context of the given data source.
+ */
+fun <T> withGremlin(
+    dataSource: DataSourceInfo,
+    block: (OrientGraph) -> T,
+): T =
+    OrientDB3SessionRegistry.withContext(dataSource) { orientDB ->
+        val graphFactory =
+            OrientGraphFactory(
+                orientDB,
+                dataSource.database,
+                ODatabaseType.PLOCAL,
+                dataSource.username,
+                dataSource.password,
+            )
 
-    return graphFactory.noTx
-}
+        try {
+            graphFactory.noTx.use(block)
+        } finally {
+            graphFactory.close()
+        }
+    }
 
 fun ODatabaseDocument.getVertex(document: ODocument): Optional<OVertex>? {
     val sql = "select * from V where @rid = ?"
@@ -67,4 +67,14 @@ class OrientDB3ConnectionTest {
             .assertThatExceptionOfType(RuntimeException::class.java)
             .isThrownBy { provider.testConnection(dataSource) }
     }
+
+    @Test
+    internal fun shouldShareTheContextOfTheServer() {
+        val context = OrientDB3SessionRegistry.withContext(dataSource) { it }
+
+        Assertions.assertThat(provider.testConnection(dataSource)).isTrue()
+        Assertions.assertThat(provider.testConnection(dataSource)).isTrue()
+
+        Assertions.assertThat(OrientDB3SessionRegistry.withContext(dataSource) { it }).isSameAs(context)
+    }
 }
@@ -24,6 +24,7 @@ import com.arcadeanalytics.provider.orient3.OrientDB3Container.dataSource
 import com.orientechnologies.orient.core.db.OrientDB
 import com.orientechnologies.orient.core.db.OrientDBConfig
 import org.assertj.core.api.Assertions.assertThat
+import org.assertj.core.api.Assertions.entry
 import org.junit.jupiter.api.Test
 
 class OrientDB3DataSourceGraphDataProviderIntTest {
@@ -177,6 +178,17 @@ class OrientDB3DataSourceGraphDataProviderIntTest {
         assertThat(data.nodes).hasSize(1)
     }
 
+    @Test
+    fun shouldCountEdgesByClassAndDirection() {
+        val data = provider.loadFromClass(dataSource, "Person", "name", "rob", 1)
+
+        val record = data.nodes.first().data.record
+
+        assertThat(record["@edgeCount"]).isEqualTo(2)
+        assertThat(record["@out"] as Map<String, Int>).containsExactly(entry("FriendOf", 1))
+        assertThat(record["@in"] as Map<String, Int>).containsExactly(entry("HaterOf", 1))
+    }
+
     @Test
     fun shouldLoadEdgesOfExistingNodes() {
         val firstDataSet = provider.loadFromClass(dataSource, "Person", "name", "frank", 1)
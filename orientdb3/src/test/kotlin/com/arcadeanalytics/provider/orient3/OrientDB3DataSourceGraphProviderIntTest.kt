@@ -21,6 +21,8 @@ package com.arcadeanalytics.provider.orient3
 
 import com.arcadeanalytics.data.Sprite
 import com.arcadeanalytics.data.SpritePlayer
+import com.arcadeanalytics.provider.IndexConstants.ARCADE_ID
+import com.arcadeanalytics.provider.IndexConstants.ARCADE_TYPE
 import org.assertj.core.api.Assertions.assertThat
 import org.junit.jupiter.api.Test
 import org.junit.jupiter.api.TestInstance
@@ -57,4 +59,56 @@ class OrientDB3DataSourceGraphProviderIntTest {
 
         assertThat(docs).hasSize(8)
     }
+
+    @Test
+    fun shouldStreamAllVerticesAndEdgesByCluster() {
+        val docs = ArrayList<Sprite>()
+
+        val indexer =
+            object : SpritePlayer {
+                override fun begin() {
+                }
+
+                override fun end() {
+                }
+
+                override fun play(document: Sprite) {
+                    docs.add(document)
+                    assertThat(document.valuesOf("@class")).doesNotContain("V", "E")
+                }
+            }
+
+        val streaming = OrientDB3DataSourceGraphProvider(OrientDB3ExportStrategy.STREAM)
+
+        streaming.provideTo(OrientDB3Container.dataSource, indexer)
+
+        assertThat(docs).hasSize(8)
+        assertThat(docs.map { it.valueOf(ARCADE_ID) }).doesNotHaveDuplicates()
+        assertThat(docs.map { it.valueOf(ARCADE_TYPE) }).containsOnly("node", "edge")
+    }
+
+    @Test
+    fun shouldExportClustersInParallel() {
+        val docs = ArrayList<Sprite>()
+
+        val indexer =
+            object : SpritePlayer {
+                override fun begin() {
+                }
+
+                override fun end() {
+                }
+
+                override fun play(document: Sprite) {
+                    docs.add(document)
+                }
+            }
+
+        val parallel = OrientDB3DataSourceGraphProvider(parallelism = 4)
+
+        parallel.provideTo(OrientDB3Container.dataSource, indexer)
+
+        assertThat(docs).hasSize(8)
+        assertThat(docs.map { it.valueOf(ARCADE_ID) }).doesNotHaveDuplicates()
+    }
 }
@@ -47,4 +47,15 @@ class OrientDB3DataSourceMetadataProviderTest {
         assertThat(metadata.edgesClasses["HaterOf"]!!.cardinality).isEqualTo(2)
         assertThat(metadata.edgesClasses["HaterOf"]!!.properties.keys).contains("kind")
     }
+
+    @Test
+    fun shouldEstimateCardinalities() {
+        val metadata = OrientDB3DataSourceMetadataProvider(estimate = true).fetchMetadata(dataSource)
+
+        assertThat(metadata.nodesClasses["Person"]!!.cardinality).isEqualTo(4)
+        assertThat(metadata.nodesClasses["Person"]!!.estimated).isTrue()
+
+        assertThat(metadata.edgesClasses["FriendOf"]!!.cardinality).isEqualTo(2)
+        assertThat(metadata.edgesClasses["FriendOf"]!!.estimated).isTrue()
+    }
 }
@@ -0,0 +1,185 @@
+/*-
+ * #%L
+ * Arcade Connectors
+ * %%
+ * Copyright (C) 2018 - 2021 ArcadeData
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.arcadeanalytics.provider.orient3
+
+import com.arcadeanalytics.provider.DataSourceInfo
+import com.orientechnologies.orient.core.db.ODatabaseSession
+import com.orientechnologies.orient.core.db.OrientDB
+import com.orientechnologies.orient.core.db.OrientDBConfig
+import com.orientechnologies.orient.core.record.OEdge
+import com.orientechnologies.orient.core.record.OVertex
+import org.assertj.core.api.Assertions.assertThat
+import org.junit.jupiter.api.AfterEach
+import org.junit.jupiter.api.Test
+import org.slf4j.LoggerFactory
+import kotlin.random.Random
+
+/**
+ * Compares the two ways of keeping the edges whose endpoints are both in a result: by vertex, loading the endpoints
+ * with `from` and `to`, or by rid, reading the raw `out` and `in` links. Then times the whole mapResultSet.
+ *
+ * Runs on embedded in-memory databases, with half of the vertices in the result. Not part of the test suite, run it
+ * with `mvn -pl orientdb3 test -Dtest=OrientDB3EdgeEndpointsBenchmark`.
+ */
+class OrientDB3EdgeEndpointsBenchmark {
+    private val log = LoggerFactory.getLogger(OrientDB3EdgeEndpointsBenchmark::class.java)
+
+    private val orientDB = OrientDB("embedded:", OrientDBConfig.defaultConfig())
+
+    private val provider = OrientDB3DataSourceGraphDataProvider()
+
+    @AfterEach
+    fun tearDown() {
+        orientDB.close()
+    }
+
+    @Test
+    fun with10kEdges() {
+        benchmark(10_000)
+    }
+
+    @Test
+    fun with100kEdges() {
+        benchmark(100_000)
+    }
+
+    private fun benchmark(edgeCount: Int) {
+        val database = "endpoints$edgeCount"
+
+        orientDB.execute("create database $database memory users (admin identified by 'admin' role admin)").close()
+        try {
+            val vertexCount = edgeCount / 10
+            populate(database, vertexCount, edgeCount)
+
+            val (byVertex, byVertexMs) =
+                timeFilter(database, vertexCount / 2) { vertices, edges ->
+                    val nodes = vertices.toHashSet()
+                    edges.count { e -> nodes.contains(e.from) && nodes.contains(e.to) }
+                }
+
+            val (byRid, byRidMs) =
+                timeFilter(database, vertexCount / 2) { vertices, edges ->
+                    val nodes = vertices.associateBy { v -> v.identity }
+                    edges.count { e ->
+                        nodes.containsKey(provider.endpointOf(e, "out")) &&
+                            nodes.containsKey(provider.endpointOf(e, "in"))
+                    }
+                }
+
+            assertThat(byRid).isEqualTo(byVertex)
+
+            val mapResultSetMs = timeMapResultSet(database, vertexCount / 2)
+
+            log.info(
+                "{} edges, {} in the result - by vertex: {} ms, by rid: {} ms, mapResultSet: {} ms",
+                edgeCount,
+                byRid,
+                byVertexMs,
+                byRidMs,
+                mapResultSetMs,
+            )
+        } finally {
+            orientDB.drop(database)
+        }
+    }
+
+    private fun populate(
+        database: String,
+        vertexCount: Int,
+        edgeCount: Int,
+    ) {
+        orientDB.open(database, "admin", "admin").use { db ->
+            db.createVertexClass("Person")
+            db.createEdgeClass("Knows")
+
+            db.begin()
+            val vertices =
+                (0 until vertexCount).map { i ->
+                    val vertex = db.newVertex("Person")
+                    vertex.setProperty("name", "person$i")
+                    vertex.save<OVertex>()
+                }
+            db.commit()
+
+            val ids = vertices.map { v -> v.identity }
+            val random = Random(42)
+
+            (0 until edgeCount).chunked(1_000).forEach { chunk ->
+                db.begin()
+                chunk.forEach { i ->
+                    val from = db.load<OVertex>(ids[i % vertexCount])
+                    val to = db.load<OVertex>(ids[random.nextInt(vertexCount)])
+                    db.newEdge(from, to, "Knows").save<OEdge>()
+                }
+                db.commit()
+            }
+        }
+    }
+
+    /**
+     * Each run opens a new session, so that no endpoint is already in its local cache.
+     */
+    private fun timeFilter(
+        database: String,
+        resultVertices: Int,
+        filter: (List<OVertex>, List<OEdge>) -> Int,
+    ): Pair<Int, Long> =
+        orientDB.open(database, "admin", "admin").use { db ->
+            val vertices = query(db, "SELECT FROM Person LIMIT $resultVertices").map { e -> e as OVertex }
+            val edges = query(db, "SELECT FROM Knows").map { e -> e as OEdge }
+
+            val start = System.nanoTime()
+            val kept = filter(vertices, edges)
+
+            kept to (System.nanoTime() - start) / 1_000_000
+        }
+
+    private fun timeMapResultSet(
+        database: String,
+        resultVertices: Int,
+    ): Long =
+        orientDB.open(database, "admin", "admin").use { db ->
+            val dataSource =
+                DataSourceInfo(
+                    id = 1L,
+                    type = ORIENTDB3,
+                    name = database,
+                    server = "embedded",
+                    port = 0,
+                    username = "admin",
+                    password = "admin",
+                    database = database,
+                )
+
+            val query =
+                "SELECT expand(unionAll(\$a, \$b)) " +
+                    "LET \$a = (SELECT FROM Person LIMIT $resultVertices), \$b = (SELECT FROM Knows)"
+
+            val start = System.nanoTime()
+            db.query(query).use { resultSet -> provider.mapResultSet(dataSource, resultSet, db) }
+
+            (System.nanoTime() - start) / 1_000_000
+        }
+
+    private fun query(
+        db: ODatabaseSession,
+        query: String,
+    ) = db.query(query).use { resultSet -> resultSet.asSequence().map { res -> res.element.get() }.toList() }
+}
@@ -24,29 +24,22 @@ import com.arcadeanalytics.provider.CytoData;
 import com.arcadeanalytics.provider.DataSourceGraphDataProvider;
 import com.arcadeanalytics.provider.DataSourceInfo;
 import com.arcadeanalytics.provider.GraphData;
-import com.arcadeanalytics.provider.rdbms.context.Statistics;
 import com.arcadeanalytics.provider.rdbms.dbengine.DBQueryEngine;
 import com.arcadeanalytics.provider.rdbms.exception.RDBMSProviderAggregationException;
-import com.arcadeanalytics.provider.rdbms.exception.RDBMSProviderIOException;
 import com.arcadeanalytics.provider.rdbms.exception.RDBMSProviderOperationNotAllowedException;
 import com.arcadeanalytics.provider.rdbms.exception.RDBMSProviderRuntimeException;
-import com.arcadeanalytics.provider.rdbms.factory.DataTypeHandlerFactory;
-import com.arcadeanalytics.provider.rdbms.factory.NameResolverFactory;
-import com.arcadeanalytics.provider.rdbms.factory.StrategyFactory;
 import com.arcadeanalytics.provider.rdbms.mapper.rdbms.AggregatorEdge;
 import com.arcadeanalytics.provider.rdbms.mapper.rdbms.ER2GraphMapper;
+import com.arcadeanalytics.provider.rdbms.mapper.rdbms.ER2GraphMapperCache;
 import com.arcadeanalytics.provider.rdbms.model.dbschema.Attribute;
 import com.arcadeanalytics.provider.rdbms.model.dbschema.CanonicalRelationship;
 import com.arcadeanalytics.provider.rdbms.model.dbschema.Entity;
 import com.arcadeanalytics.provider.rdbms.model.dbschema.Relationship;
 import com.arcadeanalytics.provider.rdbms.model.graphmodel.EdgeType;
 import com.arcadeanalytics.provider.rdbms.model.graphmodel.VertexType;
-import com.arcadeanalytics.provider.rdbms.nameresolver.NameResolver;
-import com.arcadeanalytics.provider.rdbms.persistence.handler.DBMSDataTypeHandler;
 import com.arcadeanalytics.provider.rdbms.persistence.util.DBSourceConnection;
 import com.arcadeanalytics.provider.rdbms.persistence.util.QueryResult;
 import com.arcadeanalytics.provider.rdbms.persistence.util.RelationshipQueryResult;
-import com.arcadeanalytics.provider.rdbms.strategy.rdbms.AbstractDBMSModelBuildingStrategy;
 import com.google.common.collect.Sets;
 import java.sql.Connection;
 import java.sql.SQLException;
@@ -78,52 +71,23 @@ public class RDBMSDataProvider implements DataSourceGraphDataProvider {
   private final Logger log = LoggerFactory.getLogger(RDBMSDataProvider.class);
 
   private final DataFetcher dataFetcher;
-  private final Statistics statistics;
 
-  private DBQueryEngine dbQueryEngine;
   private String datasourceId;
 
   public RDBMSDataProvider() {
     dataFetcher = new DataFetcher();
-
-    statistics = new Statistics();
   }
 
-  public void prepareMapperAndDataFetcher(final DataSourceInfo datasource) {
+  /**
+   * Prepares the mapper of the data fetcher. The engine is owned by the caller, which must close it
+   * to give its connection back to the pool.
+   */
+  public void prepareMapperAndDataFetcher(
+      final DataSourceInfo datasource, final DBQueryEngine dbQueryEngine) {
     datasourceId = Optional.ofNullable(datasource.getId()).orElse(-1L).toString();
 
-    dbQueryEngine = new DBQueryEngine(datasource, 300);
-
-    final Boolean aggregate = Optional.ofNullable(datasource.isAggregationEnabled()).orElse(false);
-    String chosenStrategy = aggregate ? "interactive-aggr" : "interactive";
-
-    ER2GraphMapper mapper;
-
-    DataTypeHandlerFactory dataTypeHandlerFactory = new DataTypeHandlerFactory();
-    DBMSDataTypeHandler handler = dataTypeHandlerFactory.buildDataTypeHandler(datasource.getType());
-
-    NameResolverFactory nameResolverFactory = new NameResolverFactory();
-    NameResolver nameResolver = nameResolverFactory.buildNameResolver("original");
-
-    StrategyFactory strategyFactory = new StrategyFactory();
-    try {
-      mapper =
-          ((AbstractDBMSModelBuildingStrategy) strategyFactory.buildStrategy(chosenStrategy))
-              .createSchemaMapper(
-                  datasource,
-                  null,
-                  "basicDBMapper",
-                  null,
-                  nameResolver,
-                  handler,
-                  null,
-                  null,
-                  chosenStrategy,
-                  dbQueryEngine,
-                  statistics);
-    } catch (RDBMSProviderIOException e) {
-      throw new RuntimeException(e);
-    }
+    // the schema is built once and shared, see ER2GraphMapperCache
+    ER2GraphMapper mapper = ER2GraphMapperCache.getMapper(datasource, dbQueryEngine);
 
     // adding the mapper to the cache
     dataFetcher.setMapper(mapper);
@@ -134,20 +98,23 @@ public class RDBMSDataProvider implements DataSourceGraphDataProvider {
     query = fixQuery(datasource, query);
 
     log.info("query datasource {} with '{}'", datasource.getId(), query);
-    // preparing the mapper in the data fetcher
-
-    prepareMapperAndDataFetcher(datasource);
 
     /*
      * Fetching data
      */
 
+    DBQueryEngine dbQueryEngine = null;
     QueryResult queryResult = null;
     GraphData data;
     List<RelationshipQueryResult> outCountResults = new LinkedList<>();
     List<RelationshipQueryResult> inCountResults = new LinkedList<>();
 
     try {
+      dbQueryEngine = new DBQueryEngine(datasource, 300);
+
+      // preparing the mapper in the data fetcher
+      prepareMapperAndDataFetcher(datasource, dbQueryEngine);
+
       String originalQuery = query;
       String queryWords[] = originalQuery.split(" ");
       String tableName;
@@ -181,7 +148,7 @@ public class RDBMSDataProvider implements DataSourceGraphDataProvider {
 
       if (isAggregationEnabled) {
         Map<String, List<RelationshipQueryResult>> direction2countQueryResults =
-            getRelationshipsCountAggregationCase(datasource, entity);
+            getRelationshipsCountAggregationCase(dbQueryEngine, datasource, entity);
 
         // getting out relationships counts
         outCountResults = direction2countQueryResults.get("out");
@@ -190,10 +157,10 @@ public class RDBMSDataProvider implements DataSourceGraphDataProvider {
         inCountResults = direction2countQueryResults.get("in");
       } else {
         // getting out relationships counts
-        outCountResults = getOutRelationshipsCount(datasource, entity);
+        outCountResults = getOutRelationshipsCount(dbQueryEngine, datasource, entity);
 
         // getting in relationships counts
-        inCountResults = getInRelationshipsCount(datasource, entity);
+        inCountResults = getInRelationshipsCount(dbQueryEngine, datasource, entity);
       }
 
       data = dataFetcher.mapResultSet(queryResult, entity, outCountResults, inCountResults);
@@ -214,8 +181,11 @@ public class RDBMSDataProvider implements DataSourceGraphDataProvider {
           inRelationshipsQueryResult.close();
         }
       }
+      // giving the connection back to the pool
+      if (dbQueryEngine != null) {
+        dbQueryEngine.close();
+      }
     }
-    dbQueryEngine.close();
     return data;
   }
 
@@ -266,18 +236,21 @@ public class RDBMSDataProvider implements DataSourceGraphDataProvider {
           "Cannot perform a traverse all operation over a Relational Datasource.");
     }
 
-    // preparing the mapper in the data fetcher
-    prepareMapperAndDataFetcher(datasource);
-
     /*
      * Fetching data
      */
+    DBQueryEngine dbQueryEngine = null;
     QueryResult queryResult = null;
     List<RelationshipQueryResult> outCountResults = new LinkedList<>();
     List<RelationshipQueryResult> inCountResults = new LinkedList<>();
     List<GraphData> graphDataCollection = new LinkedList<>();
 
     try {
+      dbQueryEngine = new DBQueryEngine(datasource, 300);
+
+      // preparing the mapper in the data fetcher
+      prepareMapperAndDataFetcher(datasource, dbQueryEngine);
+
       EdgeType edgeClass = dataFetcher.getMapper().getGraphModel().getEdgeTypeByName(edgeClassName);
 
       if (!edgeClass.isAggregatorEdge()) {
@@ -381,11 +354,13 @@ public class RDBMSDataProvider implements DataSourceGraphDataProvider {
 
           // getting out relationships counts
           outCountResults =
-              getOutRelationshipsCount(datasource, enteringEntity, filteringColumns, newNodeIds);
+              getOutRelationshipsCount(
+                  dbQueryEngine, datasource, enteringEntity, filteringColumns, newNodeIds);
 
           // getting in relationships counts
           inCountResults =
-              getInRelationshipsCount(datasource, enteringEntity, filteringColumns, newNodeIds);
+              getInRelationshipsCount(
+                  dbQueryEngine, datasource, enteringEntity, filteringColumns, newNodeIds);
 
           GraphData enteringNodesGraphData =
               dataFetcher.mapResultSet(
@@ -488,7 +463,7 @@ public class RDBMSDataProvider implements DataSourceGraphDataProvider {
                 datasource);
 
         Map<String, List<RelationshipQueryResult>> direction2countQueryResults =
-            getRelationshipsCountAggregationCase(datasource, secondExternalEntity);
+            getRelationshipsCountAggregationCase(dbQueryEngine, datasource, secondExternalEntity);
 
         // getting out relationships counts
         outCountResults = direction2countQueryResults.get("out");
@@ -518,40 +493,54 @@ public class RDBMSDataProvider implements DataSourceGraphDataProvider {
           inRelationshipsQueryResult.close();
         }
       }
+      // giving the connection back to the pool
+      if (dbQueryEngine != null) {
+        dbQueryEngine.close();
+      }
     }
 
-    dbQueryEngine.close();
     final GraphData graphData = collectGraphDatasInSingle(graphDataCollection);
     return graphData;
   }
 
   @Override
   public GraphData load(DataSourceInfo datasource, String[] ids) {
-    // preparing the mapper in the data fetcher
-    prepareMapperAndDataFetcher(datasource);
-
-    // order ids by table
-    Map<Entity, List<String>> tableName2ids = new LinkedHashMap<Entity, List<String>>();
-
-    for (String currentId : ids) {
-      int tableId = Integer.parseInt(currentId.split("_")[0]);
-      Entity currentTable = dataFetcher.getMapper().getEntityBySchemaPosition(tableId);
-      if (!tableName2ids.containsKey(currentTable)) {
-        List<String> currentIds = new LinkedList<String>();
-        tableName2ids.put(currentTable, currentIds);
+    DBQueryEngine dbQueryEngine = null;
+    final List<String> queryDtos;
+
+    try {
+      dbQueryEngine = new DBQueryEngine(datasource, 300);
+
+      // preparing the mapper in the data fetcher
+      prepareMapperAndDataFetcher(datasource, dbQueryEngine);
+
+      // order ids by table
+      Map<Entity, List<String>> tableName2ids = new LinkedHashMap<Entity, List<String>>();
+
+      for (String currentId : ids) {
+        int tableId = Integer.parseInt(currentId.split("_")[0]);
+        Entity currentTable = dataFetcher.getMapper().getEntityBySchemaPosition(tableId);
+        if (!tableName2ids.containsKey(currentTable)) {
+          List<String> currentIds = new LinkedList<String>();
+          tableName2ids.put(currentTable, currentIds);
+        }
+        currentId = currentId.substring(currentId.indexOf("_") + 1);
+        tableName2ids.get(currentTable).add(currentId);
       }
-      currentId = currentId.substring(currentId.indexOf("_") + 1);
-      tableName2ids.get(currentTable).add(currentId);
-    }
 
-    List<String> queryDtos = dbQueryEngine.buildLoadQueries(tableName2ids);
+      queryDtos = dbQueryEngine.buildLoadQueries(tableName2ids);
+    } finally {
+      // each fetchData borrows its own connection
+      if (dbQueryEngine != null) {
+        dbQueryEngine.close();
+      }
+    }
 
     List<GraphData> graphDataCollection = new LinkedList<GraphData>();
     for (String currentQueryDto : queryDtos) {
       GraphData currGraphData = fetchData(datasource, currentQueryDto, ids.length);
       graphDataCollection.add(currGraphData);
     }
-    dbQueryEngine.close();
     final GraphData graphData = collectGraphDatasInSingle(graphDataCollection);
     return graphData;
   }
@@ -623,11 +612,12 @@ public class RDBMSDataProvider implements DataSourceGraphDataProvider {
    * @return a list of results
    */
   public List<RelationshipQueryResult> getOutRelationshipsCount(
-      DataSourceInfo datasource, Entity entity) {
-    return getOutRelationshipsCount(datasource, entity, null, null);
+      DBQueryEngine dbQueryEngine, DataSourceInfo datasource, Entity entity) {
+    return getOutRelationshipsCount(dbQueryEngine, datasource, entity, null, null);
   }
 
   public List<RelationshipQueryResult> getOutRelationshipsCount(
+      DBQueryEngine dbQueryEngine,
       DataSourceInfo datasource,
       Entity entity,
       List<Attribute> filteringColumns,
@@ -669,11 +659,12 @@ public class RDBMSDataProvider implements DataSourceGraphDataProvider {
    * @return list of results
    */
   public List<RelationshipQueryResult> getInRelationshipsCount(
-      DataSourceInfo datasource, Entity entity) {
-    return getInRelationshipsCount(datasource, entity, null, null);
+      DBQueryEngine dbQueryEngine, DataSourceInfo datasource, Entity entity) {
+    return getInRelationshipsCount(dbQueryEngine, datasource, entity, null, null);
   }
 
   public List<RelationshipQueryResult> getInRelationshipsCount(
+      DBQueryEngine dbQueryEngine,
       DataSourceInfo datasource,
       Entity entity,
       List<Attribute> filteringColumns,
@@ -709,11 +700,12 @@ public class RDBMSDataProvider implements DataSourceGraphDataProvider {
   //      Counting algorithm: aggregation case
 
   private Map<String, List<RelationshipQueryResult>> getRelationshipsCountAggregationCase(
-      DataSourceInfo datasource, Entity entity) {
-    return getRelationshipsCountAggregationCase(datasource, entity, null, null);
+      DBQueryEngine dbQueryEngine, DataSourceInfo datasource, Entity entity) {
+    return getRelationshipsCountAggregationCase(dbQueryEngine, datasource, entity, null, null);
   }
 
   private Map<String, List<RelationshipQueryResult>> getRelationshipsCountAggregationCase(
+      DBQueryEngine dbQueryEngine,
       DataSourceInfo datasource,
       Entity entity,
       List<Attribute> filteringColumns,
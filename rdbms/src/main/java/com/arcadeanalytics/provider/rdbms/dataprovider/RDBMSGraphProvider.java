@@ -26,21 +26,15 @@ import com.arcadeanalytics.provider.DataSourceGraphProvider;
 import com.arcadeanalytics.provider.DataSourceInfo;
 import com.arcadeanalytics.provider.rdbms.context.Statistics;
 import com.arcadeanalytics.provider.rdbms.dbengine.DBQueryEngine;
-import com.arcadeanalytics.provider.rdbms.exception.RDBMSProviderIOException;
 import com.arcadeanalytics.provider.rdbms.exception.RDBMSProviderRuntimeException;
-import com.arcadeanalytics.provider.rdbms.factory.DataTypeHandlerFactory;
-import com.arcadeanalytics.provider.rdbms.factory.NameResolverFactory;
-import com.arcadeanalytics.provider.rdbms.factory.StrategyFactory;
 import com.arcadeanalytics.provider.rdbms.mapper.rdbms.ER2GraphMapper;
+import com.arcadeanalytics.provider.rdbms.mapper.rdbms.ER2GraphMapperCache;
 import com.arcadeanalytics.provider.rdbms.model.dbschema.Attribute;
 import com.arcadeanalytics.provider.rdbms.model.dbschema.Entity;
 import com.arcadeanalytics.provider.rdbms.model.dbschema.PrimaryKey;
 import com.arcadeanalytics.provider.rdbms.model.graphmodel.VertexType;
-import com.arcadeanalytics.provider.rdbms.nameresolver.NameResolver;
-import com.arcadeanalytics.provider.rdbms.persistence.handler.DBMSDataTypeHandler;
 import com.arcadeanalytics.provider.rdbms.persistence.util.DBSourceConnection;
 import com.arcadeanalytics.provider.rdbms.persistence.util.QueryResult;
-import com.arcadeanalytics.provider.rdbms.strategy.rdbms.AbstractDBMSModelBuildingStrategy;
 import com.google.common.collect.Sets;
 import java.sql.Connection;
 import java.sql.ResultSet;
@@ -65,12 +59,14 @@ public class RDBMSGraphProvider implements DataSourceGraphProvider {
     Statistics statistics = new Statistics();
 
     String connectionUrl = DBSourceConnection.createConnectionUrl(datasource);
+    DBQueryEngine dbQueryEngine = null;
     try {
       final ER2GraphMapper mapper = prepareMapperAndDataFetcher(datasource, statistics);
 
-      DBQueryEngine dbQueryEngine = new DBQueryEngine(datasource, 300);
+      dbQueryEngine = new DBQueryEngine(datasource, 300);
 
-      final Map<Entity, Integer> entity2count = countEntities(datasource, mapper);
+      final Map<Entity, Integer> entity2count =
+          countEntities(dbQueryEngine.getDbConnection(), datasource, mapper);
 
       for (Map.Entry<Entity, Integer> entry : entity2count.entrySet()) {
         Entity currentEntity = entry.getKey();
@@ -119,7 +115,8 @@ public class RDBMSGraphProvider implements DataSourceGraphProvider {
       player.end();
 
       if (datasource.isAggregationEnabled()) {
-        final Map<Entity, Integer> jointTable2count = countJoinTables(datasource, mapper);
+        final Map<Entity, Integer> jointTable2count =
+            countJoinTables(dbQueryEngine.getDbConnection(), datasource, mapper);
         // we have to index just the aggregator edges
         for (Map.Entry<Entity, Integer> entry : jointTable2count.entrySet()) {
           Entity currentEntity = entry.getKey();
@@ -176,53 +173,30 @@ public class RDBMSGraphProvider implements DataSourceGraphProvider {
         }
       }
       player.end();
-
-      dbQueryEngine.close();
     } catch (Exception e) {
       log.error("error while connecting to  " + datasource, e);
+    } finally {
+      if (dbQueryEngine != null) {
+        dbQueryEngine.close();
+      }
     }
   }
 
   public ER2GraphMapper prepareMapperAndDataFetcher(
       DataSourceInfo datasource, Statistics statistics) {
     DBQueryEngine dbQueryEngine = new DBQueryEngine(datasource, 300);
-
-    final Boolean aggregate = datasource.isAggregationEnabled();
-
-    String chosenStrategy = aggregate ? "interactive-aggr" : "interactive";
-
-    DataTypeHandlerFactory dataTypeHandlerFactory = new DataTypeHandlerFactory();
-    DBMSDataTypeHandler handler = dataTypeHandlerFactory.buildDataTypeHandler(datasource.getType());
-
-    NameResolverFactory nameResolverFactory = new NameResolverFactory();
-    NameResolver nameResolver = nameResolverFactory.buildNameResolver("original");
-
-    StrategyFactory strategyFactory = new StrategyFactory();
     try {
-      ER2GraphMapper mapper =
-          ((AbstractDBMSModelBuildingStrategy) strategyFactory.buildStrategy(chosenStrategy))
-              .createSchemaMapper(
-                  datasource,
-                  null,
-                  "basicDBMapper",
-                  null,
-                  nameResolver,
-                  handler,
-                  null,
-                  null,
-                  chosenStrategy,
-                  dbQueryEngine,
-                  statistics);
-      return mapper;
-    } catch (RDBMSProviderIOException e) {
-      throw new RuntimeException(e);
+      return ER2GraphMapperCache.getMapper(datasource, dbQueryEngine);
+    } finally {
+      dbQueryEngine.close();
     }
   }
 
-  public Map<Entity, Integer> countEntities(DataSourceInfo datasource, ER2GraphMapper mapper)
-      throws Exception {
+  /** Counts the rows of each entity on the given connection, which is left open. */
+  public Map<Entity, Integer> countEntities(
+      Connection connection, DataSourceInfo datasource, ER2GraphMapper mapper) throws Exception {
     // get all table names
-    try (Connection connection = DBSourceConnection.getConnection(datasource)) {
+    try {
       Map<Entity, Integer> entity2count = new LinkedHashMap<>();
 
       List<Entity> entities = mapper.getDataBaseSchema().getEntities();
@@ -263,10 +237,11 @@ public class RDBMSGraphProvider implements DataSourceGraphProvider {
     }
   }
 
-  public Map<Entity, Integer> countJoinTables(DataSourceInfo datasource, ER2GraphMapper mapper)
-      throws Exception {
+  /** Counts the rows of each join table on the given connection, which is left open. */
+  public Map<Entity, Integer> countJoinTables(
+      Connection connection, DataSourceInfo datasource, ER2GraphMapper mapper) throws Exception {
     // get all table names
-    try (Connection connection = DBSourceConnection.getConnection(datasource)) {
+    try {
       Map<Entity, Integer> jointTable2count = new LinkedHashMap<>();
       Statement countStatement =
           connection.createStatement(ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
@@ -282,6 +257,7 @@ public class RDBMSGraphProvider implements DataSourceGraphProvider {
         resultCount.close();
         jointTable2count.put(currEntity, count);
       }
+      countStatement.close();
       return jointTable2count;
     } catch (SQLException e) {
       throw new RDBMSProviderRuntimeException(e);
@@ -322,4 +322,23 @@ public class CommonQueryBuilder implements QueryBuilder {
 
     return query;
   }
+
+  @Override
+  public String getPrimaryKeysOfSchema(String schema) {
+    return null;
+  }
+
+  @Override
+  public String getImportedKeysOfSchema(String schema) {
+    return null;
+  }
+
+  @Override
+  public String getEstimatedRowCountsOfSchema(String schema) {
+    return null;
+  }
+
+  protected String literal(String value) {
+    return "'" + value.replace("'", "''") + "'";
+  }
 }
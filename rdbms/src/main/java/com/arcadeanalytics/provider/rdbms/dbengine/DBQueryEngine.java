@@ -35,6 +35,7 @@ import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
@@ -69,6 +70,10 @@ public class DBQueryEngine implements DataSourceQueryEngine {
     return dbConnection;
   }
 
+  public QueryBuilder getQueryBuilder() {
+    return queryBuilder;
+  }
+
   public QueryResult countTableRecords(String currentTableName, String currentTableSchema)
       throws SQLException {
     String query = queryBuilder.countTableRecords(currentTableName, currentTableSchema);
@@ -80,6 +85,27 @@ public class DBQueryEngine implements DataSourceQueryEngine {
     return this.executeQuery(query, dataSource);
   }
 
+  /**
+   * Estimated number of rows of the tables in a schema, read from the DBMS statistics.
+   *
+   * @param schema the schema
+   * @return the row counts by table name, or null if the DBMS doesn't keep row count statistics
+   * @throws SQLException in case of error
+   */
+  public Map<String, Long> estimateTableRecords(String schema) throws SQLException {
+    String query = queryBuilder.getEstimatedRowCountsOfSchema(schema);
+    if (query == null) return null;
+
+    Map<String, Long> rowCounts = new HashMap<>();
+    try (Statement statement = dbConnection.createStatement();
+        ResultSet result = statement.executeQuery(query)) {
+      while (result.next()) {
+        rowCounts.put(result.getString("table_name"), result.getLong("row_count"));
+      }
+    }
+    return rowCounts;
+  }
+
   public QueryResult getRecordById(Entity entity, String[] propertyOfKey, String[] valueOfKey)
       throws SQLException {
     // TODO: queryBuilder fetching
@@ -427,9 +453,10 @@ public class DBQueryEngine implements DataSourceQueryEngine {
     return statement;
   }
 
+  /** Gives the connection back to the pool: the physical connection stays open for reuse. */
   public void close() {
     try {
-      log.debug("    closing connection");
+      log.debug("    releasing connection");
       dbConnection.close();
     } catch (SQLException e) {
       log.error("", e);
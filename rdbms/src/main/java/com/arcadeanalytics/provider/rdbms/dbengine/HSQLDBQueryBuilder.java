@@ -0,0 +1,66 @@
+package com.arcadeanalytics.provider.rdbms.dbengine;
+
+/*-
+ * #%L
+ * Arcade Connectors
+ * %%
+ * Copyright (C) 2018 - 2021 ArcadeData
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+/**
+ * Query Builder for HSQLDB. It extends the CommonQueryBuilder class and overrides only the needed
+ * methods, reading the schema metadata from the standard information_schema views.
+ */
+public class HSQLDBQueryBuilder extends CommonQueryBuilder {
+
+  @Override
+  public String getPrimaryKeysOfSchema(String schema) {
+    return "select kcu.table_name, kcu.column_name"
+        + " from information_schema.table_constraints tc"
+        + " join information_schema.key_column_usage kcu"
+        + " on kcu.constraint_schema = tc.constraint_schema"
+        + " and kcu.constraint_name = tc.constraint_name"
+        + " where tc.constraint_type = 'PRIMARY KEY' and tc.table_schema = "
+        + literal(schema);
+  }
+
+  /** Same ordering as the HSQLDB JDBC driver: parent table, key position. */
+  @Override
+  public String getImportedKeysOfSchema(String schema) {
+    return "select fk.table_name as fktable_name, fk.column_name as fkcolumn_name,"
+        + " pk.table_name as pktable_name, fk.ordinal_position as key_seq"
+        + " from information_schema.referential_constraints rc"
+        + " join information_schema.key_column_usage fk"
+        + " on fk.constraint_schema = rc.constraint_schema"
+        + " and fk.constraint_name = rc.constraint_name"
+        + " join information_schema.key_column_usage pk"
+        + " on pk.constraint_schema = rc.unique_constraint_schema"
+        + " and pk.constraint_name = rc.unique_constraint_name"
+        + " and pk.ordinal_position = fk.position_in_unique_constraint"
+        + " where fk.table_schema = "
+        + literal(schema)
+        + " order by fk.table_name, pk.table_schema, pk.table_name, fk.ordinal_position,"
+        + " fk.constraint_name";
+  }
+
+  @Override
+  public String getEstimatedRowCountsOfSchema(String schema) {
+    return "select table_name, cardinality as row_count"
+        + " from information_schema.system_tablestats"
+        + " where table_schema = "
+        + literal(schema);
+  }
+}
@@ -62,4 +62,44 @@ public class PostgreSQLQueryBuilder extends CommonQueryBuilder {
   public boolean isGeospatial(List<String> geospatialTypes, String type) {
     return geospatialTypes.contains(type);
   }
+
+  @Override
+  public String getPrimaryKeysOfSchema(String schema) {
+    return "select c.relname as table_name, a.attname as column_name"
+        + " from pg_catalog.pg_constraint con"
+        + " join pg_catalog.pg_class c on c.oid = con.conrelid"
+        + " join pg_catalog.pg_namespace n on n.oid = c.relnamespace"
+        + " join pg_catalog.pg_attribute a"
+        + " on a.attrelid = con.conrelid and a.attnum = any(con.conkey)"
+        + " where con.contype = 'p' and n.nspname = "
+        + literal(schema);
+  }
+
+  /** Same ordering as the PostgreSQL JDBC driver: parent table, constraint name, key position. */
+  @Override
+  public String getImportedKeysOfSchema(String schema) {
+    return "select fkc.relname as fktable_name, fka.attname as fkcolumn_name,"
+        + " pkc.relname as pktable_name, pos.n as key_seq"
+        + " from pg_catalog.pg_constraint con"
+        + " join pg_catalog.pg_class fkc on fkc.oid = con.conrelid"
+        + " join pg_catalog.pg_namespace fkn on fkn.oid = fkc.relnamespace"
+        + " join pg_catalog.pg_class pkc on pkc.oid = con.confrelid"
+        + " join pg_catalog.pg_namespace pkn on pkn.oid = pkc.relnamespace"
+        + " cross join lateral unnest(con.conkey) with ordinality as pos(attnum, n)"
+        + " join pg_catalog.pg_attribute fka"
+        + " on fka.attrelid = con.conrelid and fka.attnum = pos.attnum"
+        + " where con.contype = 'f' and fkn.nspname = "
+        + literal(schema)
+        + " order by fkc.relname, pkn.nspname, pkc.relname, con.conname, pos.n";
+  }
+
+  /** From the planner statistics: -1 (or 0 before PostgreSQL 14) until the table is analyzed. */
+  @Override
+  public String getEstimatedRowCountsOfSchema(String schema) {
+    return "select c.relname as table_name, c.reltuples::bigint as row_count"
+        + " from pg_catalog.pg_class c"
+        + " join pg_catalog.pg_namespace n on n.oid = c.relnamespace"
+        + " where c.relkind in ('r', 'p') and n.nspname = "
+        + literal(schema);
+  }
 }
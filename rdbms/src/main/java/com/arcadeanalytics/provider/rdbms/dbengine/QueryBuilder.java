@@ -46,4 +46,33 @@ public interface QueryBuilder {
       String discriminatorColumn, Entity entity, String[] propertyOfKey, String[] valueOfKey);
 
   String buildAggregateTableFromHierarchicalBag(HierarchicalBag bag);
+
+  /**
+   * Query returning the primary key columns of all the tables in a schema, as 'table_name' and
+   * 'column_name'.
+   *
+   * @param schema the schema
+   * @return the query, or null if the DBMS doesn't support it and tables must be read one by one
+   */
+  String getPrimaryKeysOfSchema(String schema);
+
+  /**
+   * Query returning the foreign key columns of all the tables in a schema, as 'fktable_name',
+   * 'fkcolumn_name', 'pktable_name' and 'key_seq', sorted by foreign table and then as the JDBC
+   * driver sorts DatabaseMetaData.getImportedKeys.
+   *
+   * @param schema the schema
+   * @return the query, or null if the DBMS doesn't support it and tables must be read one by one
+   */
+  String getImportedKeysOfSchema(String schema);
+
+  /**
+   * Query returning the estimated number of rows of all the tables in a schema, as 'table_name' and
+   * 'row_count', read from the DBMS statistics instead of counting. Negative counts mean no
+   * statistics are available for the table.
+   *
+   * @param schema the schema
+   * @return the query, or null if the DBMS doesn't keep row count statistics
+   */
+  String getEstimatedRowCountsOfSchema(String schema);
 }
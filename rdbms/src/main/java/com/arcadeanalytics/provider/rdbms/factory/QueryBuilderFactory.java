@@ -21,6 +21,7 @@ package com.arcadeanalytics.provider.rdbms.factory;
  */
 
 import com.arcadeanalytics.provider.rdbms.dbengine.CommonQueryBuilder;
+import com.arcadeanalytics.provider.rdbms.dbengine.HSQLDBQueryBuilder;
 import com.arcadeanalytics.provider.rdbms.dbengine.MysqlQueryBuilder;
 import com.arcadeanalytics.provider.rdbms.dbengine.PostgreSQLQueryBuilder;
 import com.arcadeanalytics.provider.rdbms.dbengine.QueryBuilder;
@@ -47,7 +48,7 @@ public class QueryBuilderFactory {
         queryBuilder = new PostgreSQLQueryBuilder();
         break;
       case "RDBMS_HSQL":
-        queryBuilder = new CommonQueryBuilder();
+        queryBuilder = new HSQLDBQueryBuilder();
         break;
       default:
         queryBuilder = new CommonQueryBuilder();
@@ -24,6 +24,7 @@ import com.arcadeanalytics.provider.DataSourceInfo;
 import com.arcadeanalytics.provider.TypeMapperKt;
 import com.arcadeanalytics.provider.rdbms.context.Statistics;
 import com.arcadeanalytics.provider.rdbms.dbengine.DBQueryEngine;
+import com.arcadeanalytics.provider.rdbms.dbengine.QueryBuilder;
 import com.arcadeanalytics.provider.rdbms.exception.RDBMSProviderRuntimeException;
 import com.arcadeanalytics.provider.rdbms.mapper.rdbms.classmapper.EEClassMapper;
 import com.arcadeanalytics.provider.rdbms.mapper.rdbms.classmapper.EVClassMapper;
@@ -57,6 +58,7 @@ import java.util.LinkedList;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
+import java.util.Objects;
 import java.util.OptionalInt;
 import java.util.Set;
 import java.util.TreeMap;
@@ -74,6 +76,8 @@ import org.slf4j.LoggerFactory;
 public class ER2GraphMapper {
 
   public final int DEFAULT_CLASS_MAPPER_INDEX = 0;
+  static final boolean BULK_METADATA =
+      Boolean.parseBoolean(System.getProperty("RDBMS_BULK_METADATA", "true"));
   // rules
   protected final Map<Entity, List<EVClassMapper>> entity2EVClassMappers;
   protected final Map<VertexType, List<EVClassMapper>> vertexType2EVClassMappers;
@@ -95,6 +99,12 @@ public class ER2GraphMapper {
   protected GraphModel graphModel;
   // source model
   protected DataBaseSchema dataBaseSchema;
+  protected Map<String, String> sourceTables = Collections.emptyMap();
+  // schema-wide metadata, loaded in bulk while building the source schema
+  private boolean bulkMetadata = BULK_METADATA;
+  private Map<String, List<LinkedHashMap<String, String>>> table2columns;
+  private Map<String, List<String>> table2primaryKeys;
+  private Map<String, List<LinkedHashMap<String, String>>> table2importedKeys;
   // filters
   protected List<String> includedTables;
   protected List<String> excludedTables;
@@ -281,15 +291,14 @@ public class ER2GraphMapper {
   }
 
   /**
-   * MICRO EXECUTION BLOCK: BUILD SOURCE DATABASE SCHEMA - BUILD ENTITIES Builds the Entities
-   * starting from the source database metadata.
+   * Looks up the tables of the source database to be mapped, applying the include and exclude
+   * lists. It's a single metadata call, so it's also used as a cheap check for schema changes.
    *
    * @param databaseMetaData
-   * @param sourceDBConnection
-   * @return
+   * @return table names with their schema, in the order returned by the driver
    * @throws SQLException
    */
-  private int buildEntities(DatabaseMetaData databaseMetaData, Connection sourceDBConnection)
+  public Map<String, String> fetchSourceTables(DatabaseMetaData databaseMetaData)
       throws SQLException {
     Map<String, String> tablesName2schema = new LinkedHashMap<>();
 
@@ -331,13 +340,33 @@ public class ER2GraphMapper {
             tableSchema); // filtering tables according to "include-list" and "exclude-list"
     }
 
+    // closing resultTable
+    closeCursor(resultTable);
+
+    return tablesName2schema;
+  }
+
+  /**
+   * MICRO EXECUTION BLOCK: BUILD SOURCE DATABASE SCHEMA - BUILD ENTITIES Builds the Entities
+   * starting from the source database metadata.
+   *
+   * @param databaseMetaData
+   * @param sourceDBConnection
+   * @return
+   * @throws SQLException
+   */
+  private int buildEntities(DatabaseMetaData databaseMetaData, Connection sourceDBConnection)
+      throws SQLException {
+    Map<String, String> tablesName2schema = fetchSourceTables(databaseMetaData);
+    this.sourceTables = Collections.unmodifiableMap(tablesName2schema);
+
     int numberOfTables = tablesName2schema.size();
     statistics.totalNumberOfEntities = numberOfTables;
 
-    // closing resultTable
-    closeCursor(resultTable);
     log.debug("{} tables found:: {} ", numberOfTables, tablesName2schema);
 
+    loadSchemaMetadata(databaseMetaData, sourceDBConnection, tablesName2schema);
+
     // Variables for records counting
     Statement statement = sourceDBConnection.createStatement();
     int totalNumberOfRecord = 0;
@@ -369,37 +398,50 @@ public class ER2GraphMapper {
       // adding attributes and primary keys
       PrimaryKey pKey = new PrimaryKey(currentEntity, new ArrayList<>());
 
-      String columnCatalog = null;
-      String columnSchemaPattern = null;
-      String columnNamePattern = null;
-
-      String primaryKeyCatalog = null;
-      String primaryKeySchema = currentTableSchema;
-
-      /** MySQL Hack */
-      if (dataSource.getType().equals("RDBMS_MYSQL")) {
-        primaryKeyCatalog = dataSource.getDatabase();
-        if (primaryKeySchema == null) {
-          primaryKeySchema = dataSource.getDatabase();
+      List<LinkedHashMap<String, String>> currentColumns;
+      List<String> currentPrimaryKeys;
+
+      if (table2columns != null) {
+        currentColumns = table2columns.getOrDefault(currentTableName, Collections.emptyList());
+        currentPrimaryKeys =
+            new LinkedList<>(
+                table2primaryKeys.getOrDefault(currentTableName, Collections.emptyList()));
+      } else {
+        String columnCatalog = null;
+        String columnSchemaPattern = null;
+        String columnNamePattern = null;
+
+        String primaryKeyCatalog = null;
+        String primaryKeySchema = currentTableSchema;
+
+        /** MySQL Hack */
+        if (dataSource.getType().equals("RDBMS_MYSQL")) {
+          primaryKeyCatalog = dataSource.getDatabase();
+          if (primaryKeySchema == null) {
+            primaryKeySchema = dataSource.getDatabase();
+          }
         }
-      }
-
-      ResultSet resultColumns =
-          databaseMetaData.getColumns(
-              columnCatalog, columnSchemaPattern, currentTableName, columnNamePattern);
-
-      log.debug("primaryKeyCatalog ::: {} ", primaryKeySchema);
-      ResultSet resultPrimaryKeys =
-          databaseMetaData.getPrimaryKeys(primaryKeyCatalog, primaryKeySchema, currentTableName);
 
-      List<String> currentPrimaryKeys = getPrimaryKeysFromResulset(resultPrimaryKeys);
+        ResultSet resultColumns =
+            databaseMetaData.getColumns(
+                columnCatalog, columnSchemaPattern, currentTableName, columnNamePattern);
+        currentColumns = getColumnsFromResultSet(resultColumns);
+        closeCursor(resultColumns);
+
+        log.debug("primaryKeyCatalog ::: {} ", primaryKeySchema);
+        ResultSet resultPrimaryKeys =
+            databaseMetaData.getPrimaryKeys(
+                primaryKeyCatalog, primaryKeySchema, currentTableName);
+        currentPrimaryKeys = getPrimaryKeysFromResulset(resultPrimaryKeys);
+        closeCursor(resultPrimaryKeys);
+      }
 
-      while (resultColumns.next()) {
+      for (LinkedHashMap<String, String> column : currentColumns) {
         Attribute currentAttribute =
             new Attribute(
-                resultColumns.getString("COLUMN_NAME"),
-                resultColumns.getInt("ORDINAL_POSITION"),
-                resultColumns.getString("TYPE_NAME"),
+                column.get("column_name"),
+                Integer.parseInt(column.get("ordinal_position")),
+                column.get("type_name"),
                 currentEntity);
         currentEntity.addAttribute(currentAttribute);
 
@@ -428,9 +470,6 @@ public class ER2GraphMapper {
         pKey.addAttribute(currentAttribute);
       }
 
-      closeCursor(resultColumns);
-      closeCursor(resultPrimaryKeys);
-
       currentEntity.setPrimaryKey(pKey);
 
       // if the primary key doesn't involve any attribute, a warning message is generated
@@ -453,9 +492,129 @@ public class ER2GraphMapper {
     }
     statement.close();
 
+    // only needed while building the out relationships
+    table2columns = null;
+    table2primaryKeys = null;
+
     return numberOfTables;
   }
 
+  /**
+   * Loads columns, primary keys and foreign keys of all the source tables with a few schema-wide
+   * calls instead of three metadata calls per table. Only available when the query builder of the
+   * DBMS provides the schema-wide key queries: otherwise, or if any of these calls fails, the
+   * tables are read one by one.
+   *
+   * @param databaseMetaData
+   * @param sourceDBConnection
+   * @param tablesName2schema source tables with their schema
+   */
+  private void loadSchemaMetadata(
+      DatabaseMetaData databaseMetaData,
+      Connection sourceDBConnection,
+      Map<String, String> tablesName2schema) {
+    table2columns = null;
+    table2primaryKeys = null;
+    table2importedKeys = null;
+
+    if (!bulkMetadata || tablesName2schema.isEmpty()) return;
+
+    final boolean mysql = dataSource.getType().equals("RDBMS_MYSQL");
+
+    Set<String> schemas = new LinkedHashSet<>();
+    for (String tableSchema : tablesName2schema.values()) {
+      /** MySQL Hack */
+      String schema = tableSchema == null && mysql ? dataSource.getDatabase() : tableSchema;
+      if (schema == null) return;
+      schemas.add(schema);
+    }
+
+    final QueryBuilder queryBuilder = queryEngine.getQueryBuilder();
+
+    Map<String, List<LinkedHashMap<String, String>>> columns = new LinkedHashMap<>();
+    Map<String, List<String>> primaryKeys = new LinkedHashMap<>();
+    Map<String, List<LinkedHashMap<String, String>>> importedKeys = new LinkedHashMap<>();
+
+    try (Statement statement = sourceDBConnection.createStatement()) {
+      for (String schema : schemas) {
+        String primaryKeysQuery = queryBuilder.getPrimaryKeysOfSchema(schema);
+        String importedKeysQuery = queryBuilder.getImportedKeysOfSchema(schema);
+        if (primaryKeysQuery == null || importedKeysQuery == null) return;
+
+        ResultSet resultColumns =
+            mysql
+                ? databaseMetaData.getColumns(schema, null, "%", null)
+                : databaseMetaData.getColumns(null, schema, "%", null);
+        while (resultColumns.next()) {
+          String tableName = resultColumns.getString("TABLE_NAME");
+          if (tablesName2schema.containsKey(tableName)
+              && Objects.equals(
+                  tablesName2schema.get(tableName), resultColumns.getString("TABLE_SCHEM"))) {
+            LinkedHashMap<String, String> column = new LinkedHashMap<>();
+            column.put("column_name", resultColumns.getString("COLUMN_NAME"));
+            column.put("ordinal_position", resultColumns.getString("ORDINAL_POSITION"));
+            column.put("type_name", resultColumns.getString("TYPE_NAME"));
+            columns.computeIfAbsent(tableName, k -> new ArrayList<>()).add(column);
+          }
+        }
+        closeCursor(resultColumns);
+
+        // a table name can be mapped to another schema, as for the columns
+        ResultSet resultPrimaryKeys = statement.executeQuery(primaryKeysQuery);
+        while (resultPrimaryKeys.next()) {
+          String tableName = resultPrimaryKeys.getString("table_name");
+          if (isSourceTable(tablesName2schema, tableName, schema)) {
+            primaryKeys
+                .computeIfAbsent(tableName, k -> new ArrayList<>())
+                .add(resultPrimaryKeys.getString("column_name"));
+          }
+        }
+        closeCursor(resultPrimaryKeys);
+
+        ResultSet resultImportedKeys = statement.executeQuery(importedKeysQuery);
+        while (resultImportedKeys.next()) {
+          String tableName = resultImportedKeys.getString("fktable_name");
+          if (!isSourceTable(tablesName2schema, tableName, schema)) continue;
+
+          LinkedHashMap<String, String> row = new LinkedHashMap<>();
+          row.put("pktable_name", resultImportedKeys.getString("pktable_name"));
+          row.put("fkcolumn_name", resultImportedKeys.getString("fkcolumn_name"));
+          row.put("key_seq", resultImportedKeys.getString("key_seq"));
+          importedKeys.computeIfAbsent(tableName, k -> new ArrayList<>()).add(row);
+        }
+        closeCursor(resultImportedKeys);
+      }
+    } catch (SQLException e) {
+      log.warn("unable to load the schema metadata in bulk, reading tables one by one", e);
+      return;
+    }
+
+    log.debug("schema metadata of {} tables loaded in bulk", tablesName2schema.size());
+    table2columns = columns;
+    table2primaryKeys = primaryKeys;
+    table2importedKeys = importedKeys;
+  }
+
+  /**
+   * Checks whether the table is one of the source tables and belongs to the given schema.
+   *
+   * @param tablesName2schema source tables with their schema
+   * @param tableName name of the table
+   * @param schema schema the table was read from
+   * @return true if the table is a source table of the schema
+   */
+  private boolean isSourceTable(
+      Map<String, String> tablesName2schema, String tableName, String schema) {
+    if (!tablesName2schema.containsKey(tableName)) return false;
+
+    String tableSchema = tablesName2schema.get(tableName);
+    /** MySQL Hack */
+    if (tableSchema == null && dataSource.getType().equals("RDBMS_MYSQL")) {
+      tableSchema = dataSource.getDatabase();
+    }
+    return schema.equals(tableSchema);
+  }
+
   /**
    * MICRO EXECUTION BLOCK: BUILD SOURCE DATABASE SCHEMA - BUILD OUT-RELATIONSHIPS Builds the
    * references to the "Out Relationships" starting from the source database metadata.
@@ -476,13 +635,27 @@ public class ER2GraphMapper {
           iteration,
           numberOfTables);
 
-      String foreignCatalog = null;
-      ResultSet resultForeignKeys =
-          databaseMetaData.getImportedKeys(foreignCatalog, foreignSchema, currentForeignEntityName);
+      List<LinkedHashMap<String, String>> currentEntityRelationships1;
+      if (table2importedKeys != null) {
+        currentEntityRelationships1 = new LinkedList<>();
+        for (LinkedHashMap<String, String> row :
+            table2importedKeys.getOrDefault(currentForeignEntityName, Collections.emptyList())) {
+          if (isParentTableMapped(row.get("pktable_name"))) {
+            currentEntityRelationships1.add(row);
+          }
+        }
+      } else {
+        String foreignCatalog = null;
+        ResultSet resultForeignKeys =
+            databaseMetaData.getImportedKeys(
+                foreignCatalog, foreignSchema, currentForeignEntityName);
+
+        // copy of Resultset in a HashLinkedMap
+        currentEntityRelationships1 = fromResultSetToList(resultForeignKeys);
+
+        closeCursor(resultForeignKeys);
+      }
 
-      // copy of Resultset in a HashLinkedMap
-      List<LinkedHashMap<String, String>> currentEntityRelationships1 =
-          fromResultSetToList(resultForeignKeys);
       List<LinkedHashMap<String, String>> currentEntityRelationships2 =
           new LinkedList<LinkedHashMap<String, String>>();
 
@@ -490,8 +663,6 @@ public class ER2GraphMapper {
         currentEntityRelationships2.add(row);
       }
 
-      closeCursor(resultForeignKeys);
-
       Iterator<LinkedHashMap<String, String>> it1 = currentEntityRelationships1.iterator();
       Iterator<LinkedHashMap<String, String>> it2 = currentEntityRelationships2.iterator();
 
@@ -550,6 +721,7 @@ public class ER2GraphMapper {
     }
 
     statistics.totalNumberOfRelationships = dataBaseSchema.getCanonicalRelationships().size();
+    table2importedKeys = null;
   }
 
   /**
@@ -580,6 +752,29 @@ public class ER2GraphMapper {
     return currentPrimaryKeys;
   }
 
+  private List<LinkedHashMap<String, String>> getColumnsFromResultSet(ResultSet resultColumns)
+      throws SQLException {
+    List<LinkedHashMap<String, String>> columns = new LinkedList<>();
+
+    while (resultColumns.next()) {
+      LinkedHashMap<String, String> column = new LinkedHashMap<>();
+      column.put("column_name", resultColumns.getString("COLUMN_NAME"));
+      column.put("ordinal_position", resultColumns.getString("ORDINAL_POSITION"));
+      column.put("type_name", resultColumns.getString("TYPE_NAME"));
+      columns.add(column);
+    }
+    return columns;
+  }
+
+  /*
+   * Relationships are built only towards tables allowed by the "include/exclude-lists" and mapped
+   * in the db schema
+   */
+  private boolean isParentTableMapped(String parentTableName) {
+    return isTableAllowed(parentTableName)
+        && dataBaseSchema.getEntityByName(parentTableName) != null;
+  }
+
   private void closeCursor(ResultSet result) {
     try {
       if (result != null) result.close();
@@ -599,9 +794,7 @@ public class ER2GraphMapper {
       int columnsAmount = resultForeignKeys.getMetaData().getColumnCount();
 
       while (resultForeignKeys.next()) {
-        if (isTableAllowed(resultForeignKeys.getString("pktable_name"))
-            && dataBaseSchema.getEntityByName(resultForeignKeys.getString("pktable_name"))
-                != null) {
+        if (isParentTableMapped(resultForeignKeys.getString("pktable_name"))) {
           //          if(isTableAllowed(resultForeignKeys.getString("pktable_name")) &&
           // dataBaseSchema.getEntityByName(resultForeignKeys.getString("pktable_name")) != null) {
 
@@ -1044,6 +1237,11 @@ public class ER2GraphMapper {
     return dataBaseSchema;
   }
 
+  /** @return the tables the source schema was built from, with their schema */
+  public Map<String, String> getSourceTables() {
+    return sourceTables;
+  }
+
   public void setDataBaseSchema(DataBaseSchema dataBaseSchema) {
     dataBaseSchema = dataBaseSchema;
   }
@@ -1297,6 +1495,14 @@ public class ER2GraphMapper {
     excludedTables = excludedTables;
   }
 
+  /**
+   * Enables or disables the schema-wide metadata loading, defaults to the RDBMS_BULK_METADATA
+   * system property.
+   */
+  public void setBulkMetadata(boolean bulkMetadata) {
+    this.bulkMetadata = bulkMetadata;
+  }
+
   public boolean isTableAllowed(String tableName) {
     if (includedTables.size() > 0) return includedTables.contains(tableName);
     else if (excludedTables.size() > 0) return !excludedTables.contains(tableName);
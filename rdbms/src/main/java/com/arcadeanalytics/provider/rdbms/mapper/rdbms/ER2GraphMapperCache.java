@@ -0,0 +1,369 @@
+package com.arcadeanalytics.provider.rdbms.mapper.rdbms;
+
+/*-
+ * #%L
+ * Arcade Connectors
+ * %%
+ * Copyright (C) 2018 - 2021 ArcadeData
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import com.arcadeanalytics.provider.DataSourceInfo;
+import com.arcadeanalytics.provider.rdbms.context.Statistics;
+import com.arcadeanalytics.provider.rdbms.dbengine.DBQueryEngine;
+import com.arcadeanalytics.provider.rdbms.exception.RDBMSProviderIOException;
+import com.arcadeanalytics.provider.rdbms.exception.RDBMSProviderRuntimeException;
+import com.arcadeanalytics.provider.rdbms.factory.DataTypeHandlerFactory;
+import com.arcadeanalytics.provider.rdbms.factory.NameResolverFactory;
+import com.arcadeanalytics.provider.rdbms.factory.StrategyFactory;
+import com.arcadeanalytics.provider.rdbms.nameresolver.NameResolver;
+import com.arcadeanalytics.provider.rdbms.persistence.handler.DBMSDataTypeHandler;
+import com.arcadeanalytics.provider.rdbms.persistence.util.DBConnectionPool;
+import com.arcadeanalytics.provider.rdbms.strategy.rdbms.AbstractDBMSModelBuildingStrategy;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Shared cache of the {@link ER2GraphMapper}s built by the providers, so the source DB schema and
+ * the graph model are built once per data source instead of on every call.
+ *
+ * <p>Mappers are keyed by the connection coordinates of the data source plus the aggregation flag.
+ * An entry is rebuilt after {@code RDBMS_SCHEMA_CACHE_TTL_MS}, when explicitly invalidated, or,
+ * unless {@code RDBMS_SCHEMA_CACHE_PROBE} is false, when the list of tables in the source DB
+ * changed: that is checked at most once every {@code RDBMS_SCHEMA_CACHE_PROBE_INTERVAL_MS}. A
+ * mapper is built by a single thread, outside of any lock: concurrent callers for the same data
+ * source wait for it. The cached mappers are shared between threads and providers: they must be
+ * treated as read only.
+ *
+ * <p>When {@code RDBMS_SCHEMA_SNAPSHOT_DIR} is set, each built mapper is also written there as a
+ * {@link ER2GraphMapperSnapshot}, so after a restart the mapper is restored from the snapshot
+ * instead of being built again. A snapshot is used only if the tables of the source DB still match
+ * the ones it was built from and it is not older than {@code RDBMS_SCHEMA_SNAPSHOT_MAX_AGE_MS}.
+ */
+public class ER2GraphMapperCache {
+
+  private static final Logger log = LoggerFactory.getLogger(ER2GraphMapperCache.class);
+
+  static final long TTL_MS = Long.getLong("RDBMS_SCHEMA_CACHE_TTL_MS", 600_000L);
+  static final boolean PROBE_ENABLED =
+      Boolean.parseBoolean(System.getProperty("RDBMS_SCHEMA_CACHE_PROBE", "true"));
+  static final long PROBE_INTERVAL_MS =
+      Long.getLong("RDBMS_SCHEMA_CACHE_PROBE_INTERVAL_MS", 60_000L);
+  static final long SNAPSHOT_MAX_AGE_MS =
+      Long.getLong("RDBMS_SCHEMA_SNAPSHOT_MAX_AGE_MS", 86_400_000L);
+
+  private static final String SNAPSHOT_PREFIX = "schema-";
+  private static final String SNAPSHOT_SUFFIX = ".json.gz";
+
+  private static volatile Path snapshotDir =
+      Optional.ofNullable(System.getProperty("RDBMS_SCHEMA_SNAPSHOT_DIR"))
+          .map(Paths::get)
+          .orElse(null);
+
+  private static volatile long probeIntervalMs = PROBE_INTERVAL_MS;
+
+  private static final ConcurrentMap<List<Object>, CompletableFuture<CachedMapper>> mappers =
+      new ConcurrentHashMap<>();
+
+  private ER2GraphMapperCache() {}
+
+  /**
+   * Gets the mapper for the given data source, building it if missing or stale.
+   *
+   * @param dataSource the data source
+   * @param queryEngine engine used for the staleness probe and, if needed, the schema building
+   * @return the shared mapper
+   */
+  public static ER2GraphMapper getMapper(DataSourceInfo dataSource, DBQueryEngine queryEngine) {
+    final List<Object> key = keyOf(dataSource);
+
+    while (true) {
+      final CompletableFuture<CachedMapper> entry = mappers.get(key);
+
+      if (entry == null) {
+        final CompletableFuture<CachedMapper> loading = new CompletableFuture<>();
+        if (mappers.putIfAbsent(key, loading) == null) {
+          return load(key, loading, dataSource, queryEngine, true);
+        }
+        continue;
+      }
+
+      // being built by another thread
+      if (!entry.isDone()) return await(entry).mapper;
+
+      if (entry.isCompletedExceptionally()) {
+        mappers.remove(key, entry);
+        continue;
+      }
+
+      final CachedMapper cached = entry.join();
+      if (!cached.isExpired() && isUpToDate(cached, queryEngine)) return cached.mapper;
+
+      // only one thread rebuilds: the others wait and get the fresh mapper
+      final CompletableFuture<CachedMapper> loading = new CompletableFuture<>();
+      if (mappers.replace(key, entry, loading)) {
+        return load(key, loading, dataSource, queryEngine, false);
+      }
+    }
+  }
+
+  /**
+   * Drops the mapper of the given data source and its snapshot, it will be rebuilt on the next
+   * call.
+   *
+   * @param dataSource the data source
+   */
+  public static void invalidate(DataSourceInfo dataSource) {
+    mappers.remove(keyOf(dataSource));
+
+    final Path file = snapshotFile(dataSource);
+    if (file == null) return;
+    try {
+      Files.deleteIfExists(file);
+    } catch (IOException e) {
+      log.warn("unable to delete schema snapshot " + file, e);
+    }
+  }
+
+  /**
+   * Drops all the mappers kept in memory. Snapshots are kept: they are validated against the
+   * source DB before being used.
+   */
+  public static void invalidateAll() {
+    mappers.clear();
+  }
+
+  /**
+   * Sets how often a cached mapper is checked against the tables of the source DB. Defaults to
+   * {@code RDBMS_SCHEMA_CACHE_PROBE_INTERVAL_MS}.
+   *
+   * @param intervalMs the minimum interval between two checks of the same mapper
+   */
+  public static void setProbeIntervalMs(long intervalMs) {
+    probeIntervalMs = intervalMs;
+  }
+
+  /**
+   * Sets the directory where the snapshots of the mappers are written, {@code null} disables them.
+   * Defaults to {@code RDBMS_SCHEMA_SNAPSHOT_DIR}.
+   *
+   * @param dir the snapshot directory
+   */
+  public static void setSnapshotDir(Path dir) {
+    snapshotDir = dir;
+  }
+
+  static List<Object> keyOf(DataSourceInfo dataSource) {
+    List<Object> key = new ArrayList<>(DBConnectionPool.keyOf(dataSource));
+    key.add(Optional.ofNullable(dataSource.isAggregationEnabled()).orElse(false));
+    return key;
+  }
+
+  /**
+   * Builds the mapper, or restores it from its snapshot on a cold start, and completes the given
+   * future with it. It runs outside of the map, so other data sources are never blocked.
+   */
+  private static ER2GraphMapper load(
+      List<Object> key,
+      CompletableFuture<CachedMapper> loading,
+      DataSourceInfo dataSource,
+      DBQueryEngine queryEngine,
+      boolean coldStart) {
+    try {
+      // a snapshot is as old as the mapper in memory: it only helps on a cold start
+      ER2GraphMapper mapper = coldStart ? restoreSnapshot(dataSource, queryEngine) : null;
+      if (mapper == null) {
+        mapper = buildMapper(dataSource, queryEngine);
+        storeSnapshot(dataSource, mapper);
+      }
+      loading.complete(new CachedMapper(mapper));
+      return mapper;
+    } catch (RuntimeException | Error e) {
+      mappers.remove(key, loading);
+      loading.completeExceptionally(e);
+      throw e;
+    }
+  }
+
+  private static CachedMapper await(CompletableFuture<CachedMapper> loading) {
+    try {
+      return loading.join();
+    } catch (CompletionException e) {
+      if (e.getCause() instanceof RuntimeException) throw (RuntimeException) e.getCause();
+      throw new RDBMSProviderRuntimeException(e.getCause());
+    }
+  }
+
+  private static boolean isUpToDate(CachedMapper cached, DBQueryEngine queryEngine) {
+    return !PROBE_ENABLED
+        || !cached.shouldProbe(probeIntervalMs)
+        || matchesSource(cached.mapper, queryEngine);
+  }
+
+  private static boolean matchesSource(ER2GraphMapper mapper, DBQueryEngine queryEngine) {
+    final String database = mapper.dataSource.getDatabase();
+
+    try {
+      Map<String, String> currentTables =
+          mapper.fetchSourceTables(queryEngine.getDbConnection().getMetaData());
+      if (currentTables.equals(mapper.getSourceTables())) return true;
+
+      log.info("source tables changed, rebuilding schema of {}", database);
+    } catch (SQLException e) {
+      log.warn("unable to check source tables of " + database + ", rebuilding schema", e);
+    }
+    return false;
+  }
+
+  private static ER2GraphMapper restoreSnapshot(
+      DataSourceInfo dataSource, DBQueryEngine queryEngine) {
+    final Path file = snapshotFile(dataSource);
+    if (file == null || !Files.isRegularFile(file)) return null;
+
+    try {
+      long age = System.currentTimeMillis() - Files.getLastModifiedTime(file).toMillis();
+      if (age > SNAPSHOT_MAX_AGE_MS) {
+        log.info("schema snapshot {} expired, rebuilding schema", file);
+        return null;
+      }
+
+      ER2GraphMapper mapper =
+          ER2GraphMapperSnapshot.read(
+              file,
+              dataSource,
+              queryEngine,
+              dataTypeHandler(dataSource),
+              strategyOf(dataSource),
+              nameResolver());
+      if (!matchesSource(mapper, queryEngine)) return null;
+
+      log.info("schema of {} restored from snapshot {}", dataSource.getDatabase(), file);
+      return mapper;
+    } catch (IOException e) {
+      log.warn("unable to read schema snapshot " + file + ", rebuilding schema", e);
+      return null;
+    }
+  }
+
+  private static void storeSnapshot(DataSourceInfo dataSource, ER2GraphMapper mapper) {
+    final Path file = snapshotFile(dataSource);
+    if (file == null) return;
+
+    try {
+      Files.createDirectories(file.getParent());
+      ER2GraphMapperSnapshot.write(mapper, file);
+    } catch (IOException | RuntimeException e) {
+      log.warn("unable to write schema snapshot " + file, e);
+    }
+  }
+
+  /** The file name is a digest of the cache key, it doesn't disclose the credentials. */
+  private static Path snapshotFile(DataSourceInfo dataSource) {
+    final Path dir = snapshotDir;
+    if (dir == null) return null;
+
+    try {
+      MessageDigest digest = MessageDigest.getInstance("SHA-256");
+      byte[] hash = digest.digest(keyOf(dataSource).toString().getBytes(StandardCharsets.UTF_8));
+      StringBuilder name = new StringBuilder(SNAPSHOT_PREFIX);
+      for (byte b : hash) {
+        name.append(String.format("%02x", b));
+      }
+      return dir.resolve(name.append(SNAPSHOT_SUFFIX).toString());
+    } catch (NoSuchAlgorithmException e) {
+      throw new RDBMSProviderRuntimeException(e);
+    }
+  }
+
+  private static String strategyOf(DataSourceInfo dataSource) {
+    final Boolean aggregate = Optional.ofNullable(dataSource.isAggregationEnabled()).orElse(false);
+    return aggregate ? "interactive-aggr" : "interactive";
+  }
+
+  private static DBMSDataTypeHandler dataTypeHandler(DataSourceInfo dataSource) {
+    DataTypeHandlerFactory dataTypeHandlerFactory = new DataTypeHandlerFactory();
+    return dataTypeHandlerFactory.buildDataTypeHandler(dataSource.getType());
+  }
+
+  private static NameResolver nameResolver() {
+    NameResolverFactory nameResolverFactory = new NameResolverFactory();
+    return nameResolverFactory.buildNameResolver("original");
+  }
+
+  private static ER2GraphMapper buildMapper(DataSourceInfo dataSource, DBQueryEngine queryEngine) {
+    String chosenStrategy = strategyOf(dataSource);
+    DBMSDataTypeHandler handler = dataTypeHandler(dataSource);
+    NameResolver nameResolver = nameResolver();
+
+    StrategyFactory strategyFactory = new StrategyFactory();
+    try {
+      return ((AbstractDBMSModelBuildingStrategy) strategyFactory.buildStrategy(chosenStrategy))
+          .createSchemaMapper(
+              dataSource,
+              null,
+              "basicDBMapper",
+              null,
+              nameResolver,
+              handler,
+              null,
+              null,
+              chosenStrategy,
+              queryEngine,
+              new Statistics());
+    } catch (RDBMSProviderIOException e) {
+      throw new RDBMSProviderRuntimeException(e);
+    }
+  }
+
+  private static class CachedMapper {
+
+    private final ER2GraphMapper mapper;
+    private final long builtAt = System.currentTimeMillis();
+    // built or restored from the source DB: it has just been checked
+    private final AtomicLong probedAt = new AtomicLong(builtAt);
+
+    CachedMapper(ER2GraphMapper mapper) {
+      this.mapper = mapper;
+    }
+
+    boolean isExpired() {
+      return System.currentTimeMillis() - builtAt > TTL_MS;
+    }
+
+    /** Whether the caller should check the mapper, only one caller per interval gets true. */
+    boolean shouldProbe(long intervalMs) {
+      final long now = System.currentTimeMillis();
+      final long last = probedAt.get();
+      return now - last >= intervalMs && probedAt.compareAndSet(last, now);
+    }
+  }
+}
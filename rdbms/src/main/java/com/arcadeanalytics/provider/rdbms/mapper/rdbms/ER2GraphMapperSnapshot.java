@@ -0,0 +1,920 @@
+package com.arcadeanalytics.provider.rdbms.mapper.rdbms;
+
+/*-
+ * #%L
+ * Arcade Connectors
+ * %%
+ * Copyright (C) 2018 - 2021 ArcadeData
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import com.arcadeanalytics.provider.DataSourceInfo;
+import com.arcadeanalytics.provider.rdbms.context.Statistics;
+import com.arcadeanalytics.provider.rdbms.dbengine.DBQueryEngine;
+import com.arcadeanalytics.provider.rdbms.mapper.rdbms.classmapper.EEClassMapper;
+import com.arcadeanalytics.provider.rdbms.mapper.rdbms.classmapper.EVClassMapper;
+import com.arcadeanalytics.provider.rdbms.model.dbschema.Attribute;
+import com.arcadeanalytics.provider.rdbms.model.dbschema.CanonicalRelationship;
+import com.arcadeanalytics.provider.rdbms.model.dbschema.DataBaseSchema;
+import com.arcadeanalytics.provider.rdbms.model.dbschema.Entity;
+import com.arcadeanalytics.provider.rdbms.model.dbschema.ForeignKey;
+import com.arcadeanalytics.provider.rdbms.model.dbschema.HierarchicalBag;
+import com.arcadeanalytics.provider.rdbms.model.dbschema.Key;
+import com.arcadeanalytics.provider.rdbms.model.dbschema.LogicalRelationship;
+import com.arcadeanalytics.provider.rdbms.model.dbschema.PrimaryKey;
+import com.arcadeanalytics.provider.rdbms.model.dbschema.Relationship;
+import com.arcadeanalytics.provider.rdbms.model.graphmodel.EdgeType;
+import com.arcadeanalytics.provider.rdbms.model.graphmodel.ElementType;
+import com.arcadeanalytics.provider.rdbms.model.graphmodel.GraphModel;
+import com.arcadeanalytics.provider.rdbms.model.graphmodel.ModelProperty;
+import com.arcadeanalytics.provider.rdbms.model.graphmodel.VertexType;
+import com.arcadeanalytics.provider.rdbms.nameresolver.NameResolver;
+import com.arcadeanalytics.provider.rdbms.persistence.handler.DBMSDataTypeHandler;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.IntNode;
+import com.fasterxml.jackson.databind.node.NullNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Reads and writes snapshots of a built {@link ER2GraphMapper}: the source DB schema, the graph
+ * model and the rules binding them, so a mapper can be restored without reading again the
+ * meta-data of the source DB.
+ *
+ * <p>A snapshot is a gzipped JSON document. Each element of the two models is written once and
+ * referenced by its position, so the restored models share their elements as the built ones do.
+ * The data source is not written: the restored entities refer to the data source passed to {@link
+ * #read}.
+ */
+public class ER2GraphMapperSnapshot {
+
+  static final int FORMAT_VERSION = 1;
+
+  private static final ObjectMapper objectMapper = new ObjectMapper();
+
+  private ER2GraphMapperSnapshot() {}
+
+  /**
+   * Writes the snapshot of a mapper. The file is replaced atomically, so concurrent readers never
+   * see a partial snapshot.
+   *
+   * @param mapper the built mapper
+   * @param file the snapshot file
+   * @throws IOException if the snapshot can't be written
+   */
+  public static void write(ER2GraphMapper mapper, Path file) throws IOException {
+    final ObjectNode root = new SnapshotWriter(mapper).write();
+
+    final Path tmp = Files.createTempFile(file.getParent(), file.getFileName().toString(), ".tmp");
+    try {
+      try (OutputStream out = new GZIPOutputStream(Files.newOutputStream(tmp))) {
+        objectMapper.writeValue(out, root);
+      }
+      try {
+        Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+      } catch (AtomicMoveNotSupportedException e) {
+        Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING);
+      }
+    } finally {
+      Files.deleteIfExists(tmp);
+    }
+  }
+
+  /**
+   * Restores a mapper from its snapshot.
+   *
+   * @param file the snapshot file
+   * @param dataSource the data source of the restored mapper
+   * @param queryEngine the query engine of the restored mapper
+   * @param dataTypeHandler the data type handler of the restored mapper
+   * @param executionStrategy the execution strategy of the restored mapper
+   * @param nameResolver the name resolver of the restored mapper
+   * @return the restored mapper
+   * @throws IOException if the snapshot can't be read or is not valid
+   */
+  public static ER2GraphMapper read(
+      Path file,
+      DataSourceInfo dataSource,
+      DBQueryEngine queryEngine,
+      DBMSDataTypeHandler dataTypeHandler,
+      String executionStrategy,
+      NameResolver nameResolver)
+      throws IOException {
+    final JsonNode root;
+    try (InputStream in = new GZIPInputStream(Files.newInputStream(file))) {
+      root = objectMapper.readTree(in);
+    }
+
+    if (root == null || root.path("version").asInt() != FORMAT_VERSION) {
+      throw new IOException("unsupported schema snapshot " + file);
+    }
+
+    ER2GraphMapper mapper =
+        new ER2GraphMapper(
+            dataSource,
+            null,
+            null,
+            queryEngine,
+            dataTypeHandler,
+            executionStrategy,
+            nameResolver,
+            new Statistics());
+    try {
+      new SnapshotReader(mapper, dataSource, root).read();
+    } catch (RuntimeException e) {
+      throw new IOException("malformed schema snapshot " + file, e);
+    }
+    return mapper;
+  }
+
+  /** Elements of one kind, each one identified by its position in the snapshot. */
+  private static class Pool<T> {
+
+    private final Map<T, Integer> ids = new IdentityHashMap<>();
+    private final List<T> items = new ArrayList<>();
+    private final ArrayNode nodes = objectMapper.createArrayNode();
+    private final Function<T, JsonNode> encoder;
+
+    Pool(Function<T, JsonNode> encoder) {
+      this.encoder = encoder;
+    }
+
+    JsonNode ref(T item) {
+      if (item == null) return NullNode.getInstance();
+
+      Integer id = ids.get(item);
+      if (id == null) {
+        id = items.size();
+        ids.put(item, id);
+        items.add(item);
+      }
+      return IntNode.valueOf(id);
+    }
+
+    ArrayNode refs(Collection<? extends T> items) {
+      ArrayNode refs = objectMapper.createArrayNode();
+      for (T item : items) {
+        refs.add(ref(item));
+      }
+      return refs;
+    }
+
+    /** @return true if some element was referenced after the last call */
+    boolean flush() {
+      boolean encoded = false;
+      while (nodes.size() < items.size()) {
+        // encoding may reference further elements of this pool
+        nodes.add(encoder.apply(items.get(nodes.size())));
+        encoded = true;
+      }
+      return encoded;
+    }
+  }
+
+  private static class SnapshotWriter {
+
+    private final ER2GraphMapper mapper;
+    private final Pool<Entity> entities = new Pool<>(this::encodeEntity);
+    private final Pool<Relationship> relationships = new Pool<>(this::encodeRelationship);
+    private final Pool<HierarchicalBag> bags = new Pool<>(this::encodeBag);
+    private final Pool<VertexType> vertexTypes = new Pool<>(this::encodeVertexType);
+    private final Pool<EdgeType> edgeTypes = new Pool<>(this::encodeEdgeType);
+    private final Pool<EVClassMapper> evClassMappers = new Pool<>(this::encodeEVClassMapper);
+    private final Pool<EEClassMapper> eeClassMappers = new Pool<>(this::encodeEEClassMapper);
+
+    SnapshotWriter(ER2GraphMapper mapper) {
+      this.mapper = mapper;
+    }
+
+    ObjectNode write() {
+      ObjectNode root = objectMapper.createObjectNode();
+      root.put("version", FORMAT_VERSION);
+      root.set("sourceTables", stringMap(mapper.getSourceTables()));
+      root.set("schema", encodeSchema(mapper.getDataBaseSchema()));
+      root.set("graphModel", encodeGraphModel(mapper.getGraphModel()));
+      root.set("rules", encodeRules());
+
+      // pools are encoded last: elements reachable only from other elements are added on the way
+      boolean encoded = true;
+      while (encoded) {
+        encoded =
+            entities.flush()
+                | relationships.flush()
+                | bags.flush()
+                | vertexTypes.flush()
+                | edgeTypes.flush()
+                | evClassMappers.flush()
+                | eeClassMappers.flush();
+      }
+
+      root.set("entities", entities.nodes);
+      root.set("relationships", relationships.nodes);
+      root.set("hierarchicalBags", bags.nodes);
+      root.set("vertexTypes", vertexTypes.nodes);
+      root.set("edgeTypes", edgeTypes.nodes);
+      root.set("evClassMappers", evClassMappers.nodes);
+      root.set("eeClassMappers", eeClassMappers.nodes);
+      return root;
+    }
+
+    private JsonNode encodeSchema(DataBaseSchema schema) {
+      ObjectNode node = objectMapper.createObjectNode();
+      node.put("majorVersion", schema.getMajorVersion());
+      node.put("minorVersion", schema.getMinorVersion());
+      node.put("driverMajorVersion", schema.getDriverMajorVersion());
+      node.put("driverMinorVersion", schema.getDriverMinorVersion());
+      node.put("productName", schema.getProductName());
+      node.put("productVersion", schema.getProductVersion());
+      node.set("entities", entities.refs(schema.getEntities()));
+      node.set("canonicalRelationships", relationships.refs(schema.getCanonicalRelationships()));
+      node.set("logicalRelationships", relationships.refs(schema.getLogicalRelationships()));
+      node.set("hierarchicalBags", bags.refs(schema.getHierarchicalBags()));
+      return node;
+    }
+
+    private JsonNode encodeGraphModel(GraphModel graphModel) {
+      ObjectNode node = objectMapper.createObjectNode();
+      node.set("verticesType", vertexTypes.refs(graphModel.getVerticesType()));
+      node.set("edgesType", edgeTypes.refs(graphModel.getEdgesType()));
+      return node;
+    }
+
+    private JsonNode encodeRules() {
+      ObjectNode node = objectMapper.createObjectNode();
+
+      ArrayNode entity2EVClassMappers = node.putArray("entity2EVClassMappers");
+      for (Map.Entry<Entity, List<EVClassMapper>> entry :
+          mapper.getEntity2EVClassMappers().entrySet()) {
+        ObjectNode rule = entity2EVClassMappers.addObject();
+        rule.set("entity", entities.ref(entry.getKey()));
+        rule.set("classMappers", evClassMappers.refs(entry.getValue()));
+      }
+
+      ArrayNode vertexType2EVClassMappers = node.putArray("vertexType2EVClassMappers");
+      for (Map.Entry<VertexType, List<EVClassMapper>> entry :
+          mapper.getVertexType2EVClassMappers().entrySet()) {
+        ObjectNode rule = vertexType2EVClassMappers.addObject();
+        rule.set("vertexType", vertexTypes.ref(entry.getKey()));
+        rule.set("classMappers", evClassMappers.refs(entry.getValue()));
+      }
+
+      ObjectNode entity2EEClassMappers = node.putObject("entity2EEClassMappers");
+      for (Map.Entry<String, List<EEClassMapper>> entry :
+          mapper.getEntity2EEClassMappers().entrySet()) {
+        entity2EEClassMappers.set(entry.getKey(), eeClassMappers.refs(entry.getValue()));
+      }
+
+      ObjectNode edgeType2EEClassMappers = node.putObject("edgeType2EEClassMappers");
+      for (Map.Entry<String, List<EEClassMapper>> entry :
+          mapper.getEdgeType2EEClassMappers().entrySet()) {
+        edgeType2EEClassMappers.set(entry.getKey(), eeClassMappers.refs(entry.getValue()));
+      }
+
+      ArrayNode relationship2edgeType = node.putArray("relationship2edgeType");
+      for (Map.Entry<Relationship, EdgeType> entry :
+          mapper.getRelationship2edgeType().entrySet()) {
+        ObjectNode rule = relationship2edgeType.addObject();
+        rule.set("relationship", relationships.ref(entry.getKey()));
+        rule.set("edgeType", edgeTypes.ref(entry.getValue()));
+      }
+
+      ArrayNode edgeType2relationships = node.putArray("edgeType2relationships");
+      for (Map.Entry<EdgeType, LinkedList<Relationship>> entry :
+          mapper.getEdgeType2relationships().entrySet()) {
+        ObjectNode rule = edgeType2relationships.addObject();
+        rule.set("edgeType", edgeTypes.ref(entry.getKey()));
+        rule.set("relationships", relationships.refs(entry.getValue()));
+      }
+
+      ObjectNode edgeTypeName2count = node.putObject("edgeTypeName2count");
+      for (Map.Entry<String, Integer> entry : mapper.getEdgeTypeName2count().entrySet()) {
+        edgeTypeName2count.put(entry.getKey(), entry.getValue());
+      }
+
+      ArrayNode joinVertex2aggregatorEdges = node.putArray("joinVertex2aggregatorEdges");
+      for (Map.Entry<VertexType, AggregatorEdge> entry :
+          mapper.getJoinVertex2aggregatorEdges().entrySet()) {
+        ObjectNode rule = joinVertex2aggregatorEdges.addObject();
+        rule.set("vertexType", vertexTypes.ref(entry.getKey()));
+        rule.put("outVertexClassName", entry.getValue().getOutVertexClassName());
+        rule.put("inVertexClassName", entry.getValue().getInVertexClassName());
+        rule.set("edgeType", edgeTypes.ref(entry.getValue().getEdgeType()));
+      }
+
+      return node;
+    }
+
+    private JsonNode encodeEntity(Entity entity) {
+      ObjectNode node = objectMapper.createObjectNode();
+      node.put("name", entity.getName());
+      node.put("schemaName", entity.getSchemaName());
+      node.put("schemaPosition", entity.getSchemaPosition());
+      node.put("splitEntity", entity.isSplitEntity());
+      node.put(
+          "directionOfN2NRepresentedRelationship",
+          entity.getDirectionOfN2NRepresentedRelationship());
+      node.put("nameOfN2NRepresentedRelationship", entity.getNameOfN2NRepresentedRelationship());
+      node.put("inheritanceLevel", entity.getInheritanceLevel());
+      node.set("parentEntity", entities.ref(entity.getParentEntity()));
+      node.set("hierarchicalBag", bags.ref(entity.getHierarchicalBag()));
+
+      ArrayNode attributes = node.putArray("attributes");
+      for (Attribute attribute : entity.getAttributes()) {
+        ObjectNode attributeNode = attributes.addObject();
+        attributeNode.put("name", attribute.getName());
+        attributeNode.put("ordinalPosition", attribute.getOrdinalPosition());
+        attributeNode.put("dataType", attribute.getDataType());
+      }
+
+      node.set(
+          "primaryKey",
+          entity.getPrimaryKey() == null
+              ? NullNode.getInstance()
+              : attributeRefs(entity.getPrimaryKey().getInvolvedAttributes()));
+      ArrayNode foreignKeys = node.putArray("foreignKeys");
+      for (ForeignKey foreignKey : entity.getForeignKeys()) {
+        foreignKeys.add(attributeRefs(foreignKey.getInvolvedAttributes()));
+      }
+
+      node.set(
+          "outCanonicalRelationships", relationships.refs(entity.getOutCanonicalRelationships()));
+      node.set(
+          "inCanonicalRelationships", relationships.refs(entity.getInCanonicalRelationships()));
+      node.set("outLogicalRelationships", relationships.refs(entity.getOutLogicalRelationships()));
+      node.set("inLogicalRelationships", relationships.refs(entity.getInLogicalRelationships()));
+      return node;
+    }
+
+    private JsonNode encodeRelationship(Relationship relationship) {
+      ObjectNode node = objectMapper.createObjectNode();
+      node.set("foreignEntity", entities.ref(relationship.getForeignEntity()));
+      node.set("parentEntity", entities.ref(relationship.getParentEntity()));
+      node.put("direction", relationship.getDirection());
+
+      if (relationship instanceof CanonicalRelationship) {
+        CanonicalRelationship canonical = (CanonicalRelationship) relationship;
+        node.put("kind", "canonical");
+        node.set("foreignKey", keyRef(canonical.getForeignKey()));
+        node.set("primaryKey", keyRef(canonical.getPrimaryKey()));
+      } else {
+        LogicalRelationship logical = (LogicalRelationship) relationship;
+        node.put("kind", "logical");
+        node.set("fromColumns", attributeRefs(logical.getFromColumns()));
+        node.set("toColumns", attributeRefs(logical.getToColumns()));
+      }
+      return node;
+    }
+
+    private JsonNode encodeBag(HierarchicalBag bag) {
+      ObjectNode node = objectMapper.createObjectNode();
+      node.put("inheritancePattern", bag.getInheritancePattern());
+      node.put("discriminatorColumn", bag.getDiscriminatorColumn());
+      node.set("entityName2discriminatorValue", stringMap(bag.getEntityName2discriminatorValue()));
+
+      ObjectNode depth2entities = node.putObject("depth2entities");
+      for (Map.Entry<Integer, Set<Entity>> entry : bag.getDepth2entities().entrySet()) {
+        depth2entities.set(String.valueOf(entry.getKey()), entities.refs(entry.getValue()));
+      }
+      return node;
+    }
+
+    private JsonNode encodeVertexType(VertexType vertexType) {
+      ObjectNode node = encodeElementType(vertexType);
+      node.set("inEdgesType", edgeTypes.refs(vertexType.getInEdgesType()));
+      node.set("outEdgesType", edgeTypes.refs(vertexType.getOutEdgesType()));
+      node.put("fromJoinTable", vertexType.isFromJoinTable());
+      ArrayNode externalKey = node.putArray("externalKey");
+      vertexType.getExternalKey().forEach(externalKey::add);
+      node.put("analyzedInLastMigration", vertexType.isAnalyzedInLastMigration());
+      return node;
+    }
+
+    private JsonNode encodeEdgeType(EdgeType edgeType) {
+      ObjectNode node = encodeElementType(edgeType);
+      node.set("inVertexType", vertexTypes.ref(edgeType.getInVertexType()));
+      node.set("outVertexType", vertexTypes.ref(edgeType.getOutVertexType()));
+      node.put("numberRelationshipsRepresented", edgeType.getNumberRelationshipsRepresented());
+      node.put("splittingEdge", edgeType.isSplittingEdge());
+      node.put("aggregatorEdge", edgeType.isAggregatorEdge());
+      return node;
+    }
+
+    private ObjectNode encodeElementType(ElementType elementType) {
+      ObjectNode node = objectMapper.createObjectNode();
+      node.put("name", elementType.getName());
+      node.put("inheritanceLevel", elementType.getInheritanceLevel());
+      node.set("parentType", elementTypeRef(elementType.getParentType()));
+      node.set("properties", encodeProperties(elementType.getProperties()));
+      node.set("inheritedProperties", encodeProperties(elementType.getInheritedProperties()));
+      return node;
+    }
+
+    private ArrayNode encodeProperties(List<ModelProperty> properties) {
+      ArrayNode nodes = objectMapper.createArrayNode();
+      for (ModelProperty property : properties) {
+        ObjectNode node = nodes.addObject();
+        node.put("name", property.getName());
+        node.put("ordinalPosition", property.getOrdinalPosition());
+        node.put("originalType", property.getOriginalType());
+        node.put("orientdbType", property.getOrientdbType());
+        node.put("fromPrimaryKey", property.isFromPrimaryKey());
+        node.put("includedInMigration", property.isIncludedInMigration());
+        node.put("mandatory", property.isMandatory());
+        node.put("readOnly", property.isReadOnly());
+        node.put("notNull", property.isNotNull());
+        node.set("belongingElementType", elementTypeRef(property.getBelongingElementType()));
+      }
+      return nodes;
+    }
+
+    private JsonNode encodeEVClassMapper(EVClassMapper classMapper) {
+      ObjectNode node = objectMapper.createObjectNode();
+      node.set("entity", entities.ref(classMapper.getEntity()));
+      node.set("vertexType", vertexTypes.ref(classMapper.getVertexType()));
+      node.set("attribute2property", stringMap(classMapper.getAttribute2property()));
+      node.set("property2attribute", stringMap(classMapper.getProperty2attribute()));
+      return node;
+    }
+
+    private JsonNode encodeEEClassMapper(EEClassMapper classMapper) {
+      ObjectNode node = objectMapper.createObjectNode();
+      node.set("entity", entities.ref(classMapper.getEntity()));
+      node.set("edgeType", edgeTypes.ref(classMapper.getEdgeType()));
+      node.set("attribute2property", stringMap(classMapper.getAttribute2property()));
+      node.set("property2attribute", stringMap(classMapper.getProperty2attribute()));
+      return node;
+    }
+
+    private JsonNode elementTypeRef(ElementType elementType) {
+      if (elementType == null) return NullNode.getInstance();
+
+      ObjectNode node = objectMapper.createObjectNode();
+      if (elementType instanceof EdgeType) {
+        node.set("edgeType", edgeTypes.ref((EdgeType) elementType));
+      } else {
+        node.set("vertexType", vertexTypes.ref((VertexType) elementType));
+      }
+      return node;
+    }
+
+    /**
+     * Keys attached to their entity are referenced, the others are written with their attributes.
+     */
+    private JsonNode keyRef(Key key) {
+      if (key == null) return NullNode.getInstance();
+
+      ObjectNode node = objectMapper.createObjectNode();
+      Entity entity = key.getBelongingEntity();
+      node.set("entity", entities.ref(entity));
+
+      if (key == entity.getPrimaryKey()) {
+        node.put("primaryKey", true);
+        return node;
+      }
+      int index = 0;
+      for (ForeignKey foreignKey : entity.getForeignKeys()) {
+        if (key == foreignKey) {
+          node.put("foreignKey", index);
+          return node;
+        }
+        index++;
+      }
+      node.set("attributes", attributeRefs(key.getInvolvedAttributes()));
+      return node;
+    }
+
+    private ArrayNode attributeRefs(List<Attribute> attributes) {
+      ArrayNode refs = objectMapper.createArrayNode();
+      if (attributes == null) return refs;
+
+      for (Attribute attribute : attributes) {
+        ArrayNode ref = refs.addArray();
+        ref.add(entities.ref(attribute.getBelongingEntity()));
+        ref.add(attribute.getName());
+      }
+      return refs;
+    }
+
+    private ObjectNode stringMap(Map<String, String> map) {
+      ObjectNode node = objectMapper.createObjectNode();
+      if (map != null) map.forEach(node::put);
+      return node;
+    }
+  }
+
+  private static class SnapshotReader {
+
+    private final ER2GraphMapper mapper;
+    private final DataSourceInfo dataSource;
+    private final JsonNode root;
+
+    private Entity[] entities;
+    private Relationship[] relationships;
+    private HierarchicalBag[] bags;
+    private VertexType[] vertexTypes;
+    private EdgeType[] edgeTypes;
+    private EVClassMapper[] evClassMappers;
+    private EEClassMapper[] eeClassMappers;
+
+    SnapshotReader(ER2GraphMapper mapper, DataSourceInfo dataSource, JsonNode root) {
+      this.mapper = mapper;
+      this.dataSource = dataSource;
+      this.root = root;
+    }
+
+    void read() {
+      // elements are created first, then linked together
+      readEntities(root.path("entities"));
+      readHierarchicalBags(root.path("hierarchicalBags"));
+      linkEntities(root.path("entities"));
+      readRelationships(root.path("relationships"));
+      linkEntityRelationships(root.path("entities"));
+      readElementTypes(root.path("vertexTypes"), root.path("edgeTypes"));
+      readClassMappers(root.path("evClassMappers"), root.path("eeClassMappers"));
+
+      mapper.sourceTables = Collections.unmodifiableMap(stringMap(root.path("sourceTables")));
+      mapper.dataBaseSchema = readSchema(root.path("schema"));
+      mapper.graphModel = readGraphModel(root.path("graphModel"));
+      readRules(root.path("rules"));
+    }
+
+    private void readEntities(JsonNode nodes) {
+      entities = new Entity[nodes.size()];
+      for (int i = 0; i < nodes.size(); i++) {
+        JsonNode node = nodes.get(i);
+        Entity entity = new Entity(text(node, "name"), text(node, "schemaName"), dataSource);
+        entity.setSchemaPosition(node.path("schemaPosition").asInt());
+        entity.setIsSplitEntity(bool(node, "splitEntity"));
+        entity.setDirectionOfN2NRepresentedRelationship(
+            text(node, "directionOfN2NRepresentedRelationship"));
+        entity.setNameOfN2NRepresentedRelationship(text(node, "nameOfN2NRepresentedRelationship"));
+        entity.setInheritanceLevel(node.path("inheritanceLevel").asInt());
+
+        // attributes are written already sorted
+        for (JsonNode attribute : node.path("attributes")) {
+          entity
+              .getAttributes()
+              .add(
+                  new Attribute(
+                      text(attribute, "name"),
+                      attribute.path("ordinalPosition").asInt(),
+                      text(attribute, "dataType"),
+                      entity));
+        }
+        entities[i] = entity;
+      }
+    }
+
+    private void readHierarchicalBags(JsonNode nodes) {
+      bags = new HierarchicalBag[nodes.size()];
+      for (int i = 0; i < nodes.size(); i++) {
+        JsonNode node = nodes.get(i);
+        HierarchicalBag bag = new HierarchicalBag();
+        bag.setInheritancePattern(text(node, "inheritancePattern"));
+        bag.setDiscriminatorColumn(text(node, "discriminatorColumn"));
+        bag.getEntityName2discriminatorValue()
+            .putAll(stringMap(node.path("entityName2discriminatorValue")));
+
+        Iterator<Map.Entry<String, JsonNode>> depths = node.path("depth2entities").fields();
+        while (depths.hasNext()) {
+          Map.Entry<String, JsonNode> depth = depths.next();
+          bag.getDepth2entities()
+              .put(
+                  Integer.valueOf(depth.getKey()),
+                  new LinkedHashSet<>(refs(entities, depth.getValue())));
+        }
+        bags[i] = bag;
+      }
+    }
+
+    private void linkEntities(JsonNode nodes) {
+      for (int i = 0; i < nodes.size(); i++) {
+        JsonNode node = nodes.get(i);
+        Entity entity = entities[i];
+        entity.setParentEntity(ref(entities, node.get("parentEntity")));
+        entity.setHierarchicalBag(ref(bags, node.get("hierarchicalBag")));
+
+        if (node.hasNonNull("primaryKey")) {
+          entity.setPrimaryKey(new PrimaryKey(entity, attributes(node.get("primaryKey"))));
+        }
+        for (JsonNode foreignKey : node.path("foreignKeys")) {
+          entity.getForeignKeys().add(new ForeignKey(entity, attributes(foreignKey)));
+        }
+      }
+    }
+
+    private void readRelationships(JsonNode nodes) {
+      relationships = new Relationship[nodes.size()];
+      for (int i = 0; i < nodes.size(); i++) {
+        JsonNode node = nodes.get(i);
+        Entity foreignEntity = ref(entities, node.get("foreignEntity"));
+        Entity parentEntity = ref(entities, node.get("parentEntity"));
+
+        Relationship relationship;
+        if ("canonical".equals(text(node, "kind"))) {
+          relationship =
+              new CanonicalRelationship(
+                  foreignEntity,
+                  parentEntity,
+                  (ForeignKey) key(node.get("foreignKey"), false),
+                  (PrimaryKey) key(node.get("primaryKey"), true));
+        } else {
+          relationship =
+              new LogicalRelationship(
+                  foreignEntity,
+                  parentEntity,
+                  attributes(node.get("fromColumns")),
+                  attributes(node.get("toColumns")));
+        }
+        relationship.setDirection(text(node, "direction"));
+        relationships[i] = relationship;
+      }
+    }
+
+    private void linkEntityRelationships(JsonNode nodes) {
+      for (int i = 0; i < nodes.size(); i++) {
+        JsonNode node = nodes.get(i);
+        Entity entity = entities[i];
+        for (Relationship relationship :
+            refs(relationships, node.get("outCanonicalRelationships"))) {
+          entity.getOutCanonicalRelationships().add((CanonicalRelationship) relationship);
+        }
+        for (Relationship relationship :
+            refs(relationships, node.get("inCanonicalRelationships"))) {
+          entity.getInCanonicalRelationships().add((CanonicalRelationship) relationship);
+        }
+        for (Relationship relationship : refs(relationships, node.get("outLogicalRelationships"))) {
+          entity.getOutLogicalRelationships().add((LogicalRelationship) relationship);
+        }
+        for (Relationship relationship : refs(relationships, node.get("inLogicalRelationships"))) {
+          entity.getInLogicalRelationships().add((LogicalRelationship) relationship);
+        }
+      }
+    }
+
+    private void readElementTypes(JsonNode vertexNodes, JsonNode edgeNodes) {
+      vertexTypes = new VertexType[vertexNodes.size()];
+      for (int i = 0; i < vertexNodes.size(); i++) {
+        vertexTypes[i] = new VertexType(text(vertexNodes.get(i), "name"));
+      }
+      edgeTypes = new EdgeType[edgeNodes.size()];
+      for (int i = 0; i < edgeNodes.size(); i++) {
+        edgeTypes[i] = new EdgeType(text(edgeNodes.get(i), "name"));
+      }
+
+      for (int i = 0; i < vertexNodes.size(); i++) {
+        JsonNode node = vertexNodes.get(i);
+        VertexType vertexType = vertexTypes[i];
+        readElementType(vertexType, node);
+        vertexType.getInEdgesType().addAll(refs(edgeTypes, node.get("inEdgesType")));
+        vertexType.getOutEdgesType().addAll(refs(edgeTypes, node.get("outEdgesType")));
+        vertexType.setFromJoinTable(node.path("fromJoinTable").asBoolean());
+        for (JsonNode externalKey : node.path("externalKey")) {
+          vertexType.getExternalKey().add(externalKey.asText());
+        }
+        vertexType.setAnalyzedInLastMigration(node.path("analyzedInLastMigration").asBoolean());
+      }
+
+      for (int i = 0; i < edgeNodes.size(); i++) {
+        JsonNode node = edgeNodes.get(i);
+        EdgeType edgeType = edgeTypes[i];
+        readElementType(edgeType, node);
+        edgeType.setInVertexType(ref(vertexTypes, node.get("inVertexType")));
+        edgeType.setOutVertexType(ref(vertexTypes, node.get("outVertexType")));
+        edgeType.setNumberRelationshipsRepresented(
+            node.path("numberRelationshipsRepresented").asInt());
+        edgeType.setSplittingEdge(node.path("splittingEdge").asBoolean());
+        edgeType.setIsAggregatorEdge(node.path("aggregatorEdge").asBoolean());
+      }
+    }
+
+    private void readElementType(ElementType elementType, JsonNode node) {
+      elementType.setInheritanceLevel(node.path("inheritanceLevel").asInt());
+      elementType.setParentType(elementType(node.get("parentType")));
+      elementType.getProperties().addAll(properties(node.path("properties")));
+      elementType.getInheritedProperties().addAll(properties(node.path("inheritedProperties")));
+    }
+
+    private List<ModelProperty> properties(JsonNode nodes) {
+      List<ModelProperty> properties = new LinkedList<>();
+      for (JsonNode node : nodes) {
+        ModelProperty property =
+            new ModelProperty(
+                text(node, "name"),
+                node.path("ordinalPosition").asInt(),
+                text(node, "originalType"),
+                node.path("fromPrimaryKey").asBoolean(),
+                elementType(node.get("belongingElementType")));
+        property.setOrientdbType(text(node, "orientdbType"));
+        property.setIncludedInMigration(node.path("includedInMigration").asBoolean(true));
+        property.setMandatory(bool(node, "mandatory"));
+        property.setReadOnly(bool(node, "readOnly"));
+        property.setNotNull(bool(node, "notNull"));
+        properties.add(property);
+      }
+      return properties;
+    }
+
+    private void readClassMappers(JsonNode evNodes, JsonNode eeNodes) {
+      evClassMappers = new EVClassMapper[evNodes.size()];
+      for (int i = 0; i < evNodes.size(); i++) {
+        JsonNode node = evNodes.get(i);
+        evClassMappers[i] =
+            new EVClassMapper(
+                ref(entities, node.get("entity")),
+                ref(vertexTypes, node.get("vertexType")),
+                stringMap(node.path("attribute2property")),
+                stringMap(node.path("property2attribute")));
+      }
+
+      eeClassMappers = new EEClassMapper[eeNodes.size()];
+      for (int i = 0; i < eeNodes.size(); i++) {
+        JsonNode node = eeNodes.get(i);
+        eeClassMappers[i] =
+            new EEClassMapper(
+                ref(entities, node.get("entity")),
+                ref(edgeTypes, node.get("edgeType")),
+                stringMap(node.path("attribute2property")),
+                stringMap(node.path("property2attribute")));
+      }
+    }
+
+    private DataBaseSchema readSchema(JsonNode node) {
+      DataBaseSchema schema =
+          new DataBaseSchema(
+              node.path("majorVersion").asInt(),
+              node.path("minorVersion").asInt(),
+              node.path("driverMajorVersion").asInt(),
+              node.path("driverMinorVersion").asInt(),
+              text(node, "productName"),
+              text(node, "productVersion"));
+      schema.getEntities().addAll(refs(entities, node.get("entities")));
+      for (Relationship relationship : refs(relationships, node.get("canonicalRelationships"))) {
+        schema.getCanonicalRelationships().add((CanonicalRelationship) relationship);
+      }
+      for (Relationship relationship : refs(relationships, node.get("logicalRelationships"))) {
+        schema.getLogicalRelationships().add((LogicalRelationship) relationship);
+      }
+      schema.getHierarchicalBags().addAll(refs(bags, node.get("hierarchicalBags")));
+      return schema;
+    }
+
+    private GraphModel readGraphModel(JsonNode node) {
+      GraphModel graphModel = new GraphModel();
+      graphModel.getVerticesType().addAll(refs(vertexTypes, node.get("verticesType")));
+      graphModel.getEdgesType().addAll(refs(edgeTypes, node.get("edgesType")));
+      return graphModel;
+    }
+
+    private void readRules(JsonNode node) {
+      for (JsonNode rule : node.path("entity2EVClassMappers")) {
+        mapper.entity2EVClassMappers.put(
+            ref(entities, rule.get("entity")),
+            new LinkedList<>(refs(evClassMappers, rule.get("classMappers"))));
+      }
+      for (JsonNode rule : node.path("vertexType2EVClassMappers")) {
+        mapper.vertexType2EVClassMappers.put(
+            ref(vertexTypes, rule.get("vertexType")),
+            new LinkedList<>(refs(evClassMappers, rule.get("classMappers"))));
+      }
+
+      Iterator<Map.Entry<String, JsonNode>> rules = node.path("entity2EEClassMappers").fields();
+      while (rules.hasNext()) {
+        Map.Entry<String, JsonNode> rule = rules.next();
+        mapper.entity2EEClassMappers.put(
+            rule.getKey(), new LinkedList<>(refs(eeClassMappers, rule.getValue())));
+      }
+      rules = node.path("edgeType2EEClassMappers").fields();
+      while (rules.hasNext()) {
+        Map.Entry<String, JsonNode> rule = rules.next();
+        mapper.edgeType2EEClassMappers.put(
+            rule.getKey(), new LinkedList<>(refs(eeClassMappers, rule.getValue())));
+      }
+
+      for (JsonNode rule : node.path("relationship2edgeType")) {
+        mapper.relationship2edgeType.put(
+            ref(relationships, rule.get("relationship")), ref(edgeTypes, rule.get("edgeType")));
+      }
+      for (JsonNode rule : node.path("edgeType2relationships")) {
+        mapper.edgeType2relationships.put(
+            ref(edgeTypes, rule.get("edgeType")),
+            new LinkedList<>(refs(relationships, rule.get("relationships"))));
+      }
+
+      rules = node.path("edgeTypeName2count").fields();
+      while (rules.hasNext()) {
+        Map.Entry<String, JsonNode> rule = rules.next();
+        mapper.edgeTypeName2count.put(rule.getKey(), rule.getValue().asInt());
+      }
+
+      for (JsonNode rule : node.path("joinVertex2aggregatorEdges")) {
+        mapper.joinVertex2aggregatorEdges.put(
+            ref(vertexTypes, rule.get("vertexType")),
+            new AggregatorEdge(
+                text(rule, "outVertexClassName"),
+                text(rule, "inVertexClassName"),
+                ref(edgeTypes, rule.get("edgeType"))));
+      }
+    }
+
+    private Key key(JsonNode node, boolean primary) {
+      if (node == null || node.isNull()) return null;
+
+      Entity entity = ref(entities, node.get("entity"));
+      if (node.path("primaryKey").asBoolean()) return entity.getPrimaryKey();
+      if (node.has("foreignKey")) {
+        return entity.getForeignKeys().get(node.get("foreignKey").asInt());
+      }
+
+      List<Attribute> attributes = attributes(node.get("attributes"));
+      return primary ? new PrimaryKey(entity, attributes) : new ForeignKey(entity, attributes);
+    }
+
+    private List<Attribute> attributes(JsonNode refs) {
+      List<Attribute> attributes = new ArrayList<>();
+      for (JsonNode ref : refs) {
+        Entity entity = ref(entities, ref.get(0));
+        Attribute attribute = entity.getAttributeByName(ref.get(1).asText());
+        if (attribute == null) {
+          throw new IllegalStateException(
+              "attribute " + ref.get(1).asText() + " not found in " + entity.getName());
+        }
+        attributes.add(attribute);
+      }
+      return attributes;
+    }
+
+    private ElementType elementType(JsonNode node) {
+      if (node == null || node.isNull()) return null;
+      if (node.has("edgeType")) return ref(edgeTypes, node.get("edgeType"));
+      return ref(vertexTypes, node.get("vertexType"));
+    }
+
+    private static <T> T ref(T[] pool, JsonNode node) {
+      if (node == null || node.isNull()) return null;
+      return pool[node.asInt()];
+    }
+
+    private static <T> List<T> refs(T[] pool, JsonNode nodes) {
+      List<T> items = new ArrayList<>();
+      if (nodes == null) return items;
+
+      for (JsonNode node : nodes) {
+        items.add(ref(pool, node));
+      }
+      return items;
+    }
+
+    private static Map<String, String> stringMap(JsonNode node) {
+      Map<String, String> map = new LinkedHashMap<>();
+      Iterator<Map.Entry<String, JsonNode>> fields = node.fields();
+      while (fields.hasNext()) {
+        Map.Entry<String, JsonNode> field = fields.next();
+        map.put(field.getKey(), field.getValue().isNull() ? null : field.getValue().asText());
+      }
+      return map;
+    }
+
+    private static String text(JsonNode node, String field) {
+      return node.hasNonNull(field) ? node.get(field).asText() : null;
+    }
+
+    private static Boolean bool(JsonNode node, String field) {
+      return node.hasNonNull(field) ? node.get(field).asBoolean() : null;
+    }
+  }
+}
@@ -0,0 +1,317 @@
+package com.arcadeanalytics.provider.rdbms.persistence.util;
+
+/*-
+ * #%L
+ * Arcade Connectors
+ * %%
+ * Copyright (C) 2018 - 2021 ArcadeData
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import com.arcadeanalytics.provider.DataSourceInfo;
+import com.arcadeanalytics.provider.rdbms.exception.RDBMSProviderRuntimeException;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Bounded pool of physical JDBC connections towards a single source DB. Pools are shared and keyed
+ * by the connection coordinates of the {@link DataSourceInfo} (type, server, port, database, user
+ * and connection properties), so every provider hitting the same database reuses the same
+ * connections.
+ *
+ * <p>Connections handed out by {@link #borrow()} are proxies: calling {@link Connection#close()}
+ * returns the physical connection to the pool. Idle connections are validated on borrow, retired
+ * after {@code RDBMS_POOL_MAX_LIFETIME_MS} and evicted after {@code RDBMS_POOL_IDLE_TIMEOUT_MS}.
+ */
+public class DBConnectionPool {
+
+  private static final Logger log = LoggerFactory.getLogger(DBConnectionPool.class);
+
+  static final int MAX_SIZE = Integer.getInteger("RDBMS_POOL_MAX_SIZE", 10);
+  static final long BORROW_TIMEOUT_MS = Long.getLong("RDBMS_POOL_BORROW_TIMEOUT_MS", 30_000L);
+  static final long IDLE_TIMEOUT_MS = Long.getLong("RDBMS_POOL_IDLE_TIMEOUT_MS", 600_000L);
+  static final long MAX_LIFETIME_MS = Long.getLong("RDBMS_POOL_MAX_LIFETIME_MS", 1_800_000L);
+  static final int VALIDATION_TIMEOUT_S = Integer.getInteger("RDBMS_POOL_VALIDATION_TIMEOUT_S", 5);
+  static final long EVICTION_INTERVAL_MS =
+      Long.getLong("RDBMS_POOL_EVICTION_INTERVAL_MS", 30_000L);
+
+  private static final ConcurrentMap<List<Object>, DBConnectionPool> pools =
+      new ConcurrentHashMap<>();
+
+  private static final ScheduledExecutorService evictor =
+      Executors.newSingleThreadScheduledExecutor(
+          new ThreadFactoryBuilder()
+              .setDaemon(true)
+              .setNameFormat("rdbms-connection-pool-evictor")
+              .build());
+
+  static {
+    evictor.scheduleWithFixedDelay(
+        DBConnectionPool::evictAll,
+        EVICTION_INTERVAL_MS,
+        EVICTION_INTERVAL_MS,
+        TimeUnit.MILLISECONDS);
+  }
+
+  private final DataSourceInfo dataSource;
+  private final String name;
+  private final int maxSize;
+  private final long borrowTimeoutMs;
+  private final long idleTimeoutMs;
+  private final long maxLifetimeMs;
+  private final int validationTimeoutS;
+
+  private final Semaphore permits;
+  private final Deque<PooledConnection> idle = new ConcurrentLinkedDeque<>();
+
+  private final AtomicInteger active = new AtomicInteger();
+  private final AtomicLong created = new AtomicLong();
+  private final AtomicLong destroyed = new AtomicLong();
+  private final AtomicLong borrowed = new AtomicLong();
+  private final AtomicLong validationFailures = new AtomicLong();
+  private final AtomicLong borrowTimeouts = new AtomicLong();
+
+  private volatile long lastUsed = System.currentTimeMillis();
+  private volatile boolean closed;
+
+  DBConnectionPool(
+      DataSourceInfo dataSource,
+      int maxSize,
+      long borrowTimeoutMs,
+      long idleTimeoutMs,
+      long maxLifetimeMs,
+      int validationTimeoutS) {
+    this.dataSource = dataSource;
+    this.name = dataSource.getUsername() + "@" + DBSourceConnection.createConnectionUrl(dataSource);
+    this.maxSize = maxSize;
+    this.borrowTimeoutMs = borrowTimeoutMs;
+    this.idleTimeoutMs = idleTimeoutMs;
+    this.maxLifetimeMs = maxLifetimeMs;
+    this.validationTimeoutS = validationTimeoutS;
+    this.permits = new Semaphore(maxSize, true);
+  }
+
+  /**
+   * Gets the shared pool for the given data source, creating it on first use.
+   *
+   * @param dataSource the data source
+   * @return the pool serving the data source
+   */
+  public static DBConnectionPool forDataSource(DataSourceInfo dataSource) {
+    return pools.computeIfAbsent(
+        keyOf(dataSource),
+        k ->
+            new DBConnectionPool(
+                dataSource,
+                MAX_SIZE,
+                BORROW_TIMEOUT_MS,
+                IDLE_TIMEOUT_MS,
+                MAX_LIFETIME_MS,
+                VALIDATION_TIMEOUT_S));
+  }
+
+  /**
+   * Snapshot of the metrics of every pool currently alive, keyed by pool name (user@url).
+   *
+   * @return pool metrics
+   */
+  public static Map<String, DBConnectionPoolMetrics> getAllMetrics() {
+    Map<String, DBConnectionPoolMetrics> metrics = new LinkedHashMap<>();
+    for (DBConnectionPool pool : pools.values()) {
+      metrics.put(pool.name, pool.getMetrics());
+    }
+    return metrics;
+  }
+
+  /** Closes every pool and all their idle physical connections. */
+  public static void closeAll() {
+    for (List<Object> key : pools.keySet()) {
+      DBConnectionPool pool = pools.remove(key);
+      if (pool != null) pool.close();
+    }
+  }
+
+  /**
+   * Connection coordinates of a data source: two data sources with the same key point to the same
+   * database with the same credentials.
+   *
+   * @param dataSource the data source
+   * @return the key
+   */
+  public static List<Object> keyOf(DataSourceInfo dataSource) {
+    return Arrays.asList(
+        dataSource.getType(),
+        dataSource.getServer(),
+        dataSource.getPort(),
+        dataSource.getDatabase(),
+        dataSource.getUsername(),
+        dataSource.getPassword(),
+        dataSource.getConnectionProperties());
+  }
+
+  private static void evictAll() {
+    for (Map.Entry<List<Object>, DBConnectionPool> entry : pools.entrySet()) {
+      DBConnectionPool pool = entry.getValue();
+      try {
+        pool.evict();
+        if (pool.isUnused() && pools.remove(entry.getKey(), pool)) {
+          log.debug("removing unused pool:: {} ", pool.name);
+          pool.close();
+        }
+      } catch (Exception e) {
+        log.error("unable to evict connections of pool " + pool.name, e);
+      }
+    }
+  }
+
+  /**
+   * Borrows a connection from the pool, waiting up to {@code RDBMS_POOL_BORROW_TIMEOUT_MS} if all
+   * the connections are in use. The returned connection must be closed to give it back.
+   *
+   * @return a pooled connection
+   */
+  public Connection borrow() {
+    lastUsed = System.currentTimeMillis();
+    try {
+      if (!permits.tryAcquire(borrowTimeoutMs, TimeUnit.MILLISECONDS)) {
+        borrowTimeouts.incrementAndGet();
+        throw new RDBMSProviderRuntimeException(
+            "timeout waiting for a connection to " + name + " after " + borrowTimeoutMs + "ms");
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new RDBMSProviderRuntimeException(e);
+    }
+
+    try {
+      PooledConnection pooled;
+      while ((pooled = idle.pollFirst()) != null) {
+        if (pooled.isExpired(maxLifetimeMs)) {
+          destroy(pooled);
+          continue;
+        }
+        if (pooled.isValid(validationTimeoutS)) {
+          break;
+        }
+        validationFailures.incrementAndGet();
+        destroy(pooled);
+      }
+      if (pooled == null) {
+        pooled = new PooledConnection(DBSourceConnection.openConnection(dataSource));
+        created.incrementAndGet();
+        log.debug("new physical connection for:: {} ", name);
+      }
+      active.incrementAndGet();
+      borrowed.incrementAndGet();
+
+      return (Connection)
+          Proxy.newProxyInstance(
+              Connection.class.getClassLoader(),
+              new Class<?>[] {Connection.class},
+              new PooledConnectionHandler(this, pooled));
+    } catch (RuntimeException e) {
+      permits.release();
+      throw e;
+    }
+  }
+
+  /**
+   * Gives a physical connection back to the pool. Pending transactions are rolled back; broken,
+   * expired or excess connections are closed instead of being reused.
+   */
+  void release(PooledConnection pooled) {
+    lastUsed = System.currentTimeMillis();
+    active.decrementAndGet();
+    try {
+      if (closed || pooled.isExpired(maxLifetimeMs) || !pooled.reset()) {
+        destroy(pooled);
+      } else {
+        pooled.touch();
+        idle.offerFirst(pooled);
+      }
+    } finally {
+      permits.release();
+    }
+  }
+
+  /** Closes idle connections exceeding idle timeout or max lifetime. */
+  void evict() {
+    for (PooledConnection pooled : idle) {
+      if ((pooled.isIdleFor(idleTimeoutMs) || pooled.isExpired(maxLifetimeMs))
+          && idle.remove(pooled)) {
+        destroy(pooled);
+      }
+    }
+  }
+
+  void close() {
+    closed = true;
+    PooledConnection pooled;
+    while ((pooled = idle.pollFirst()) != null) {
+      destroy(pooled);
+    }
+  }
+
+  private boolean isUnused() {
+    return active.get() == 0
+        && idle.isEmpty()
+        && System.currentTimeMillis() - lastUsed > idleTimeoutMs;
+  }
+
+  private void destroy(PooledConnection pooled) {
+    destroyed.incrementAndGet();
+    try {
+      log.debug("closing physical connection for:: {} ", name);
+      pooled.getConnection().close();
+    } catch (SQLException e) {
+      log.warn("unable to close connection to " + name, e);
+    }
+  }
+
+  public DBConnectionPoolMetrics getMetrics() {
+    return new DBConnectionPoolMetrics(
+        name,
+        maxSize,
+        active.get(),
+        idle.size(),
+        created.get(),
+        destroyed.get(),
+        borrowed.get(),
+        validationFailures.get(),
+        borrowTimeouts.get());
+  }
+
+  public String getName() {
+    return name;
+  }
+}
@@ -0,0 +1,121 @@
+package com.arcadeanalytics.provider.rdbms.persistence.util;
+
+/*-
+ * #%L
+ * Arcade Connectors
+ * %%
+ * Copyright (C) 2018 - 2021 ArcadeData
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+/** Point-in-time snapshot of the counters of a {@link DBConnectionPool}. */
+public class DBConnectionPoolMetrics {
+
+  private final String name;
+  private final int maxSize;
+  private final int active;
+  private final int idle;
+  private final long created;
+  private final long destroyed;
+  private final long borrowed;
+  private final long validationFailures;
+  private final long borrowTimeouts;
+
+  public DBConnectionPoolMetrics(
+      String name,
+      int maxSize,
+      int active,
+      int idle,
+      long created,
+      long destroyed,
+      long borrowed,
+      long validationFailures,
+      long borrowTimeouts) {
+    this.name = name;
+    this.maxSize = maxSize;
+    this.active = active;
+    this.idle = idle;
+    this.created = created;
+    this.destroyed = destroyed;
+    this.borrowed = borrowed;
+    this.validationFailures = validationFailures;
+    this.borrowTimeouts = borrowTimeouts;
+  }
+
+  public String getName() {
+    return name;
+  }
+
+  public int getMaxSize() {
+    return maxSize;
+  }
+
+  /** @return connections currently lent to callers */
+  public int getActive() {
+    return active;
+  }
+
+  /** @return connections currently parked in the pool */
+  public int getIdle() {
+    return idle;
+  }
+
+  /** @return physical connections opened since the pool was created */
+  public long getCreated() {
+    return created;
+  }
+
+  /** @return physical connections closed since the pool was created */
+  public long getDestroyed() {
+    return destroyed;
+  }
+
+  public long getBorrowed() {
+    return borrowed;
+  }
+
+  public long getValidationFailures() {
+    return validationFailures;
+  }
+
+  public long getBorrowTimeouts() {
+    return borrowTimeouts;
+  }
+
+  @Override
+  public String toString() {
+    return "DBConnectionPoolMetrics{"
+        + "name='"
+        + name
+        + '\''
+        + ", maxSize="
+        + maxSize
+        + ", active="
+        + active
+        + ", idle="
+        + idle
+        + ", created="
+        + created
+        + ", destroyed="
+        + destroyed
+        + ", borrowed="
+        + borrowed
+        + ", validationFailures="
+        + validationFailures
+        + ", borrowTimeouts="
+        + borrowTimeouts
+        + '}';
+  }
+}
@@ -56,14 +56,27 @@ public class DBSourceConnection {
       };
 
   /**
-   * Gets connection according to all the source database info passed as parameter.
+   * Gets connection according to all the source database info passed as parameter. The connection
+   * is borrowed from the {@link DBConnectionPool} of the data source: closing it gives it back to
+   * the pool.
    *
    * @param datasource the ds
    * @return a connection
    */
   public static Connection getConnection(DataSourceInfo datasource) {
+    return DBConnectionPool.forDataSource(datasource).borrow();
+  }
+
+  /**
+   * Opens a new physical connection according to all the source database info passed as parameter,
+   * bypassing the pool.
+   *
+   * @param datasource the ds
+   * @return a connection
+   */
+  public static Connection openConnection(DataSourceInfo datasource) {
     String uri = createConnectionUrl(datasource);
-    log.debug("getting connection for:: {} ", uri);
+    log.debug("opening connection for:: {} ", uri);
 
     Properties props = new Properties();
     props.setProperty("user", datasource.getUsername());
@@ -0,0 +1,91 @@
+package com.arcadeanalytics.provider.rdbms.persistence.util;
+
+/*-
+ * #%L
+ * Arcade Connectors
+ * %%
+ * Copyright (C) 2018 - 2021 ArcadeData
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/** A physical connection owned by a {@link DBConnectionPool}, with its lifecycle timestamps. */
+class PooledConnection {
+
+  private static final Logger log = LoggerFactory.getLogger(PooledConnection.class);
+
+  private final Connection connection;
+  private final long createdAt;
+  private volatile long lastReleased;
+
+  PooledConnection(Connection connection) {
+    this.connection = connection;
+    this.createdAt = System.currentTimeMillis();
+    this.lastReleased = createdAt;
+  }
+
+  Connection getConnection() {
+    return connection;
+  }
+
+  void touch() {
+    lastReleased = System.currentTimeMillis();
+  }
+
+  boolean isExpired(long maxLifetimeMs) {
+    return System.currentTimeMillis() - createdAt > maxLifetimeMs;
+  }
+
+  boolean isIdleFor(long idleTimeoutMs) {
+    return System.currentTimeMillis() - lastReleased > idleTimeoutMs;
+  }
+
+  boolean isValid(int timeoutSeconds) {
+    try {
+      return !connection.isClosed() && connection.isValid(timeoutSeconds);
+    } catch (SQLException | AbstractMethodError e) {
+      // some old drivers don't implement isValid: fall back to the closed check
+      try {
+        return !connection.isClosed();
+      } catch (SQLException closed) {
+        return false;
+      }
+    }
+  }
+
+  /**
+   * Brings the connection back to its default state before giving it to the next borrower.
+   *
+   * @return false if the connection is broken and must be discarded
+   */
+  boolean reset() {
+    try {
+      if (connection.isClosed()) return false;
+      if (!connection.getAutoCommit()) {
+        connection.rollback();
+        connection.setAutoCommit(true);
+      }
+      connection.clearWarnings();
+      return true;
+    } catch (SQLException e) {
+      log.warn("discarding connection that cannot be reset", e);
+      return false;
+    }
+  }
+}
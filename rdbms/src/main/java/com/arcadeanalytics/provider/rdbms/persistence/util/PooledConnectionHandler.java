@@ -0,0 +1,101 @@
+package com.arcadeanalytics.provider.rdbms.persistence.util;
+
+/*-
+ * #%L
+ * Arcade Connectors
+ * %%
+ * Copyright (C) 2018 - 2021 ArcadeData
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Backs the {@link java.sql.Connection} proxies handed out by {@link DBConnectionPool}. Closing the
+ * proxy closes the statements it created and returns the physical connection to the pool; any
+ * other call after that fails as it would on a closed connection.
+ */
+class PooledConnectionHandler implements InvocationHandler {
+
+  private static final Logger log = LoggerFactory.getLogger(PooledConnectionHandler.class);
+
+  private final DBConnectionPool pool;
+  private final PooledConnection pooled;
+  private final AtomicBoolean closed = new AtomicBoolean();
+  private final List<Statement> statements = new ArrayList<>();
+
+  PooledConnectionHandler(DBConnectionPool pool, PooledConnection pooled) {
+    this.pool = pool;
+    this.pooled = pooled;
+  }
+
+  @Override
+  public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+    switch (method.getName()) {
+      case "close":
+        if (closed.compareAndSet(false, true)) {
+          closeStatements();
+          pool.release(pooled);
+        }
+        return null;
+      case "isClosed":
+        return closed.get() || pooled.getConnection().isClosed();
+      case "equals":
+        return proxy == args[0];
+      case "hashCode":
+        return System.identityHashCode(proxy);
+      case "toString":
+        return "pooled[" + pooled.getConnection() + "]";
+      default:
+        if (closed.get()) {
+          throw new SQLException("connection already returned to pool " + pool.getName());
+        }
+    }
+
+    try {
+      Object result = method.invoke(pooled.getConnection(), args);
+      if (result instanceof Statement) {
+        synchronized (statements) {
+          statements.add((Statement) result);
+        }
+      }
+      return result;
+    } catch (InvocationTargetException e) {
+      throw e.getCause();
+    }
+  }
+
+  private void closeStatements() {
+    synchronized (statements) {
+      for (Statement statement : statements) {
+        try {
+          if (!statement.isClosed()) statement.close();
+        } catch (SQLException e) {
+          log.debug("unable to close statement", e);
+        }
+      }
+      statements.clear();
+    }
+  }
+}
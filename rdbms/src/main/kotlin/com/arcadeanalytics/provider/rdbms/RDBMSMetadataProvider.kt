@@ -22,21 +22,26 @@ package com.arcadeanalytics.provider.rdbms
 import com.arcadeanalytics.provider.DataSourceInfo
 import com.arcadeanalytics.provider.DataSourceMetadata
 import com.arcadeanalytics.provider.DataSourceMetadataProvider
+import com.arcadeanalytics.provider.ESTIMATE_CARDINALITY
 import com.arcadeanalytics.provider.EdgesClasses
 import com.arcadeanalytics.provider.TypeClass
 import com.arcadeanalytics.provider.TypeProperty
-import com.arcadeanalytics.provider.rdbms.context.Statistics
 import com.arcadeanalytics.provider.rdbms.dbengine.DBQueryEngine
-import com.arcadeanalytics.provider.rdbms.factory.DataTypeHandlerFactory
-import com.arcadeanalytics.provider.rdbms.factory.NameResolverFactory
-import com.arcadeanalytics.provider.rdbms.factory.StrategyFactory
 import com.arcadeanalytics.provider.rdbms.mapper.rdbms.ER2GraphMapper
+import com.arcadeanalytics.provider.rdbms.mapper.rdbms.ER2GraphMapperCache
+import com.arcadeanalytics.provider.rdbms.model.dbschema.Relationship
 import com.arcadeanalytics.provider.rdbms.persistence.util.QueryResult
 import com.arcadeanalytics.provider.rdbms.persistence.util.RelationshipQueryResult
-import com.arcadeanalytics.provider.rdbms.strategy.rdbms.AbstractDBMSModelBuildingStrategy
 import java.sql.ResultSet
 
-class RDBMSMetadataProvider : DataSourceMetadataProvider {
+/**
+ * With [estimate], cardinalities are read from the DBMS statistics, where available, instead of counting the
+ * records: vertices get the estimated rows of their table, edges the estimated rows of the table holding the foreign
+ * key or of the join table.
+ */
+class RDBMSMetadataProvider(
+    private val estimate: Boolean = ESTIMATE_CARDINALITY,
+) : DataSourceMetadataProvider {
     override fun supportedDataSourceTypes(): Set<String> =
         setOf(
             "RDBMS_POSTGRESQL",
@@ -50,152 +55,141 @@ class RDBMSMetadataProvider : DataSourceMetadataProvider {
     override fun fetchMetadata(dataSource: DataSourceInfo): DataSourceMetadata {
         val dbQueryEngine: DBQueryEngine = DBQueryEngine(dataSource, 300)
 
-        val mapper: ER2GraphMapper = getMapper(dbQueryEngine, dataSource)
+        try {
+            val mapper: ER2GraphMapper = ER2GraphMapperCache.getMapper(dataSource, dbQueryEngine)
+
+            val graphModel = mapper.graphModel
 
-        val graphModel = mapper.graphModel
+            val estimates = if (estimate) estimateTableRecords(dataSource, mapper, dbQueryEngine) else emptyMap()
 
-        val nodesClasses =
-            graphModel.verticesType
-                .map {
-                    val props =
-                        it.allProperties
-                            .map { prop -> prop.name to TypeProperty(prop.name, prop.orientdbType) }
-                            .toMap()
+            val nodesClasses =
+                graphModel.verticesType
+                    .map {
+                        val props =
+                            it.allProperties
+                                .map { prop -> prop.name to TypeProperty(prop.name, prop.orientdbType) }
+                                .toMap()
 
-                    var cardinality: Long = 0
-                    if (dataSource.aggregationEnabled) {
-                        if (!it.isFromJoinTable) {
+                        var cardinality: Long = 0
+                        var estimated = false
+                        if (!dataSource.aggregationEnabled || !it.isFromJoinTable) {
                             mapper.vertexType2EVClassMappers.get(it)?.get(0)?.entity?.name?.let { tableName ->
-                                val queryResult: QueryResult = dbQueryEngine.countTableRecords(tableName)
-                                val countResult: ResultSet = queryResult.result
-                                if (countResult.next()) {
-                                    cardinality = countResult.getLong(1)
+                                val rows = estimates[tableName]
+                                if (rows != null) {
+                                    cardinality = rows
+                                    estimated = true
+                                } else {
+                                    cardinality = countTableRecords(dbQueryEngine, tableName)
                                 }
-                                queryResult.close()
                             }
                         }
-                    } else {
-                        mapper.vertexType2EVClassMappers.get(it)?.get(0)?.entity?.name.let { tableName ->
-                            val queryResult: QueryResult = dbQueryEngine.countTableRecords(tableName)
-                            val countResult: ResultSet = queryResult.result
-                            if (countResult.next()) {
-                                cardinality = countResult.getLong(1)
-                            }
-                            queryResult.close()
-                        }
-                    }
 
-                    TypeClass(it.name, cardinality, props)
-                }.map {
-                    it.name to it
-                }.toMap()
+                        TypeClass(it.name, cardinality, props, estimated)
+                    }.map {
+                        it.name to it
+                    }.toMap()
 
-        val edgesClasses: EdgesClasses =
-            graphModel.edgesType
-                .map { edgeType ->
-                    val props =
-                        edgeType.allProperties
-                            .map { prop -> prop.name to TypeProperty(prop.name, prop.orientdbType) }
-                            .toMap()
+            val edgesClasses: EdgesClasses =
+                graphModel.edgesType
+                    .map { edgeType ->
+                        val props =
+                            edgeType.allProperties
+                                .map { prop -> prop.name to TypeProperty(prop.name, prop.orientdbType) }
+                                .toMap()
 
-                    val edgeTypeName: String = edgeType.name
+                        val edgeTypeName: String = edgeType.name
 
-                    var cardinality: Long = 0
+                        var cardinality: Long = 0
+                        var estimated = false
 
-                    if (dataSource.aggregationEnabled) {
-                        if (edgeType.isAggregatorEdge) {
+                        if (dataSource.aggregationEnabled && edgeType.isAggregatorEdge) {
                             mapper.getJoinVertexTypeByAggregatorEdgeName(edgeTypeName)?.run {
                                 val joinTable =
                                     mapper.getEntityByVertexType(
                                         this,
                                         0,
                                     ) // join vertex has always 1-1 mapping with the join table, so I always get the first mapping
-                                val queryResult: QueryResult = dbQueryEngine.countTableRecords(joinTable.name)
-                                val countResult: ResultSet = queryResult.result
-                                if (countResult.next()) {
-                                    cardinality += countResult.getLong(1)
+                                val rows = estimates[joinTable.name]
+                                if (rows != null) {
+                                    cardinality += rows
+                                    estimated = true
+                                } else {
+                                    cardinality += countTableRecords(dbQueryEngine, joinTable.name)
                                 }
-                                queryResult.close()
                             }
                         } else {
                             val mappedRelationships = mapper.edgeType2relationships.get(edgeType)
-                            mappedRelationships?.forEach {
+                            mappedRelationships?.forEach { rel ->
                                 // excluding relationships that are aggregated in aggregator edges, then all that have a join table as parent entity
-                                if (!it.foreignEntity.isAggregableJoinTable) {
-                                    val queryResult: RelationshipQueryResult =
-                                        dbQueryEngine.computeRelationshipCardinality(
-                                            it,
-                                            dataSource,
-                                            edgeTypeName,
-                                        )
-                                    val countResult: ResultSet = queryResult.result
-                                    if (countResult.next()) {
-                                        cardinality += countResult.getLong(1)
+                                if (!dataSource.aggregationEnabled || !rel.foreignEntity.isAggregableJoinTable) {
+                                    val rows = estimates[rel.foreignEntity.name]
+                                    if (rows != null) {
+                                        cardinality += rows
+                                        estimated = true
+                                    } else {
+                                        cardinality +=
+                                            computeRelationshipCardinality(dbQueryEngine, rel, dataSource, edgeTypeName)
                                     }
-                                    queryResult.close()
                                 }
                             }
                         }
-                    } else {
-                        val mappedRelationships = mapper.edgeType2relationships.get(edgeType)
-                        mappedRelationships?.forEach { rel ->
-                            val queryResult: RelationshipQueryResult =
-                                dbQueryEngine.computeRelationshipCardinality(
-                                    rel,
-                                    dataSource,
-                                    edgeTypeName,
-                                )
-                            val countResult: ResultSet = queryResult.result
-                            if (countResult.next()) {
-                                cardinality += countResult.getLong(1)
-                            }
-                            queryResult.close()
-                        }
-                    }
-                    TypeClass(edgeType.name, cardinality, props)
-                }.map {
-                    it.name to it
-                }.toMap()
-
-        dbQueryEngine.close()
-        return DataSourceMetadata(nodesClasses, edgesClasses)
+                        TypeClass(edgeType.name, cardinality, props, estimated)
+                    }.map {
+                        it.name to it
+                    }.toMap()
+
+            return DataSourceMetadata(nodesClasses, edgesClasses)
+        } finally {
+            dbQueryEngine.close()
+        }
     }
 
-    private fun getMapper(
-        dbQueryEngine: DBQueryEngine,
+    /**
+     * Estimated rows by table name, only for the tables with statistics.
+     */
+    private fun estimateTableRecords(
         dataSource: DataSourceInfo,
-    ): ER2GraphMapper {
-        val statistics = Statistics()
-
-        val aggregate = dataSource.aggregationEnabled
-
-        val chosenStrategy = if (aggregate) "interactive-aggr" else "interactive"
-
-        val dataTypeHandlerFactory = DataTypeHandlerFactory()
-
-        val handler = dataTypeHandlerFactory.buildDataTypeHandler(dataSource.type)
-
-        val nameResolverFactory = NameResolverFactory()
-        val nameResolver = nameResolverFactory.buildNameResolver("original")
-
-        val strategyFactory = StrategyFactory()
-
-        val mapper =
-            (strategyFactory.buildStrategy(chosenStrategy) as AbstractDBMSModelBuildingStrategy)
-                .createSchemaMapper(
-                    dataSource,
-                    null,
-                    "basicDBMapper",
-                    null,
-                    nameResolver,
-                    handler,
-                    null,
-                    null,
-                    chosenStrategy,
-                    dbQueryEngine,
-                    statistics,
-                )
+        mapper: ER2GraphMapper,
+        dbQueryEngine: DBQueryEngine,
+    ): Map<String, Long> =
+        mapper.vertexType2EVClassMappers.values
+            .flatten()
+            .map { classMapper -> classMapper.entity.schemaName ?: dataSource.database } // MySQL has no schemas
+            .distinct()
+            .flatMap { schema -> dbQueryEngine.estimateTableRecords(schema).orEmpty().entries }
+            .filter { (_, rows) -> rows > 0 }
+            .associate { (tableName, rows) -> tableName to rows }
+
+    private fun countTableRecords(
+        dbQueryEngine: DBQueryEngine,
+        tableName: String,
+    ): Long {
+        val queryResult: QueryResult = dbQueryEngine.countTableRecords(tableName)
+        try {
+            val countResult: ResultSet = queryResult.result
+            return if (countResult.next()) countResult.getLong(1) else 0
+        } finally {
+            queryResult.close()
+        }
+    }
 
-        return mapper as ER2GraphMapper
+    private fun computeRelationshipCardinality(
+        dbQueryEngine: DBQueryEngine,
+        relationship: Relationship,
+        dataSource: DataSourceInfo,
+        edgeTypeName: String,
+    ): Long {
+        val queryResult: RelationshipQueryResult =
+            dbQueryEngine.computeRelationshipCardinality(
+                relationship,
+                dataSource,
+                edgeTypeName,
+            )
+        try {
+            val countResult: ResultSet = queryResult.result
+            return if (countResult.next()) countResult.getLong(1) else 0
+        } finally {
+            queryResult.close()
+        }
     }
 }
@@ -65,6 +65,7 @@ import java.sql.Statement;
 import java.util.ArrayList;
 import java.util.Iterator;
 import java.util.List;
+import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
@@ -123,6 +124,11 @@ class FilterTableMappingTest {
     statistics = new Statistics();
   }
 
+  @AfterEach
+  void tearDown() {
+    dbQueryEngine.close();
+  }
+
   /*
    * Filtering out a table through include-tables (without inheritance).
    */ @Test
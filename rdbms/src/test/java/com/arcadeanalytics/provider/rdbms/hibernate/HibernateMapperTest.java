@@ -58,6 +58,7 @@ import java.sql.Connection;
 import java.sql.DriverManager;
 import java.sql.Statement;
 import java.util.Iterator;
+import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
@@ -115,6 +116,11 @@ class HibernateMapperTest {
     statistics = new Statistics();
   }
 
+  @AfterEach
+  void tearDown() {
+    dbQueryEngine.close();
+  }
+
   /*
    * Table per Class Hierarchy Inheritance (<subclass> tag)
    *  table ( http://www.javatpoint.com/hibernate-table-per-hierarchy-example-using-xml-file )
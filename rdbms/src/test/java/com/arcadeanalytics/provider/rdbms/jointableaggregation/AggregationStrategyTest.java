@@ -60,6 +60,7 @@ import java.sql.Connection;
 import java.sql.DriverManager;
 import java.sql.Statement;
 import java.util.Iterator;
+import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
@@ -108,6 +109,11 @@ class AggregationStrategyTest {
     statistics = new Statistics();
   }
 
+  @AfterEach
+  void tearDown() {
+    dbQueryEngine.close();
+  }
+
   /*
    * Aggregation Strategy Test: executing mapping
    */ @Test
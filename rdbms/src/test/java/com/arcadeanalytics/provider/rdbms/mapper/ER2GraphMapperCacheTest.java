@@ -0,0 +1,175 @@
+package com.arcadeanalytics.provider.rdbms.mapper;
+
+/*-
+ * #%L
+ * Arcade Connectors
+ * %%
+ * Copyright (C) 2018 - 2021 ArcadeData
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.arcadeanalytics.provider.DataSourceInfo;
+import com.arcadeanalytics.provider.rdbms.dbengine.DBQueryEngine;
+import com.arcadeanalytics.provider.rdbms.mapper.rdbms.ER2GraphMapper;
+import com.arcadeanalytics.provider.rdbms.mapper.rdbms.ER2GraphMapperCache;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class ER2GraphMapperCacheTest {
+
+  private static final String JURL = "jdbc:hsqldb:mem:cachedb";
+
+  private DataSourceInfo dataSource;
+  private DBQueryEngine dbQueryEngine;
+
+  @BeforeEach
+  void init() throws Exception {
+    dataSource = dataSource(1L, false);
+
+    execute(
+        "create memory table AUTHOR (AUTHOR_ID varchar(256) not null,"
+            + " AUTHOR_NAME varchar(256) not null, primary key (AUTHOR_ID))");
+
+    dbQueryEngine = new DBQueryEngine(dataSource, 300);
+  }
+
+  @AfterEach
+  void tearDown() throws Exception {
+    dbQueryEngine.close();
+    ER2GraphMapperCache.invalidateAll();
+    ER2GraphMapperCache.setProbeIntervalMs(
+        Long.getLong("RDBMS_SCHEMA_CACHE_PROBE_INTERVAL_MS", 60_000L));
+    execute("drop schema public cascade");
+  }
+
+  @Test
+  void shareMapperBetweenCalls() {
+    ER2GraphMapper first = ER2GraphMapperCache.getMapper(dataSource, dbQueryEngine);
+    ER2GraphMapper second = ER2GraphMapperCache.getMapper(dataSource, dbQueryEngine);
+
+    assertThat(second).isSameAs(first);
+    assertThat(first.getEntityByNameIgnoreCase("AUTHOR")).isNotNull();
+
+    // another data source pointing to the same database
+    ER2GraphMapper other = ER2GraphMapperCache.getMapper(dataSource(2L, false), dbQueryEngine);
+    assertThat(other).isSameAs(first);
+  }
+
+  @Test
+  void rebuildWhenTablesChange() throws Exception {
+    ER2GraphMapperCache.setProbeIntervalMs(0);
+
+    ER2GraphMapper first = ER2GraphMapperCache.getMapper(dataSource, dbQueryEngine);
+    assertThat(first.getEntityByNameIgnoreCase("BOOK")).isNull();
+
+    execute(
+        "create memory table BOOK (BOOK_ID varchar(256) not null, TITLE varchar(256),"
+            + " AUTHOR varchar(256) not null, primary key (BOOK_ID), foreign key (AUTHOR)"
+            + " references AUTHOR(AUTHOR_ID))");
+
+    ER2GraphMapper second = ER2GraphMapperCache.getMapper(dataSource, dbQueryEngine);
+    assertThat(second).isNotSameAs(first);
+    assertThat(second.getEntityByNameIgnoreCase("BOOK")).isNotNull();
+  }
+
+  @Test
+  void probeTablesAtMostOncePerInterval() throws Exception {
+    ER2GraphMapperCache.setProbeIntervalMs(60_000L);
+
+    ER2GraphMapper first = ER2GraphMapperCache.getMapper(dataSource, dbQueryEngine);
+
+    execute(
+        "create memory table BOOK (BOOK_ID varchar(256) not null, primary key (BOOK_ID))");
+
+    // checked when built, the change is seen on the next probe only
+    assertThat(ER2GraphMapperCache.getMapper(dataSource, dbQueryEngine)).isSameAs(first);
+  }
+
+  @Test
+  void buildOnceForConcurrentCallers() throws Exception {
+    ExecutorService callers = Executors.newFixedThreadPool(8);
+    try {
+      List<Future<ER2GraphMapper>> results = new ArrayList<>();
+      for (int i = 0; i < 8; i++) {
+        results.add(callers.submit(() -> ER2GraphMapperCache.getMapper(dataSource, dbQueryEngine)));
+      }
+
+      ER2GraphMapper first = results.get(0).get(30, TimeUnit.SECONDS);
+      for (Future<ER2GraphMapper> result : results) {
+        assertThat(result.get(30, TimeUnit.SECONDS)).isSameAs(first);
+      }
+    } finally {
+      callers.shutdown();
+    }
+  }
+
+  @Test
+  void rebuildAfterInvalidation() {
+    ER2GraphMapper first = ER2GraphMapperCache.getMapper(dataSource, dbQueryEngine);
+
+    ER2GraphMapperCache.invalidate(dataSource);
+
+    assertThat(ER2GraphMapperCache.getMapper(dataSource, dbQueryEngine)).isNotSameAs(first);
+  }
+
+  @Test
+  void keepAggregatedMapperApart() {
+    ER2GraphMapper plain = ER2GraphMapperCache.getMapper(dataSource, dbQueryEngine);
+    ER2GraphMapper aggregated =
+        ER2GraphMapperCache.getMapper(dataSource(1L, true), dbQueryEngine);
+
+    assertThat(aggregated).isNotSameAs(plain);
+  }
+
+  private DataSourceInfo dataSource(Long id, boolean aggregationEnabled) {
+    return new DataSourceInfo(
+        id,
+        "RDBMS_HSQL",
+        "testDataSource",
+        "desc",
+        "mem",
+        1234,
+        "cachedb",
+        "SA",
+        "",
+        aggregationEnabled,
+        "{}",
+        false,
+        false,
+        "",
+        22,
+        "",
+        false);
+  }
+
+  private void execute(String sql) throws Exception {
+    try (Connection connection = DriverManager.getConnection(JURL, "SA", "");
+        Statement st = connection.createStatement()) {
+      st.execute(sql);
+    }
+  }
+}
@@ -0,0 +1,193 @@
+package com.arcadeanalytics.provider.rdbms.mapper;
+
+/*-
+ * #%L
+ * Arcade Connectors
+ * %%
+ * Copyright (C) 2018 - 2021 ArcadeData
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.arcadeanalytics.provider.DataSourceInfo;
+import com.arcadeanalytics.provider.rdbms.dbengine.DBQueryEngine;
+import com.arcadeanalytics.provider.rdbms.mapper.rdbms.ER2GraphMapper;
+import com.arcadeanalytics.provider.rdbms.mapper.rdbms.ER2GraphMapperCache;
+import com.arcadeanalytics.provider.rdbms.mapper.rdbms.ER2GraphMapperSnapshot;
+import com.arcadeanalytics.provider.rdbms.model.graphmodel.VertexType;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.Statement;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class ER2GraphMapperSnapshotTest {
+
+  private static final String JURL = "jdbc:hsqldb:mem:snapshotdb";
+
+  @TempDir Path snapshotDir;
+
+  private DataSourceInfo dataSource;
+  private DBQueryEngine dbQueryEngine;
+
+  @BeforeEach
+  void init() throws Exception {
+    dataSource = dataSource();
+
+    execute(
+        "create memory table AUTHOR (AUTHOR_ID varchar(256) not null,"
+            + " AUTHOR_NAME varchar(256) not null, primary key (AUTHOR_ID))");
+    execute(
+        "create memory table BOOK (BOOK_ID varchar(256) not null, TITLE varchar(256),"
+            + " primary key (BOOK_ID))");
+    execute(
+        "create memory table AUTHOR_BOOK (AUTHOR_ID varchar(256) not null,"
+            + " BOOK_ID varchar(256) not null, primary key (AUTHOR_ID, BOOK_ID),"
+            + " foreign key (AUTHOR_ID) references AUTHOR(AUTHOR_ID),"
+            + " foreign key (BOOK_ID) references BOOK(BOOK_ID))");
+
+    dbQueryEngine = new DBQueryEngine(dataSource, 300);
+    ER2GraphMapperCache.setSnapshotDir(snapshotDir);
+  }
+
+  @AfterEach
+  void tearDown() throws Exception {
+    ER2GraphMapperCache.setSnapshotDir(null);
+    ER2GraphMapperCache.invalidateAll();
+    dbQueryEngine.close();
+    execute("drop schema public cascade");
+  }
+
+  @Test
+  void restoreSameModels() throws Exception {
+    ER2GraphMapper built = ER2GraphMapperCache.getMapper(dataSource, dbQueryEngine);
+
+    Path file = snapshotDir.resolve("copy.json.gz");
+    ER2GraphMapperSnapshot.write(built, file);
+    ER2GraphMapper restored =
+        ER2GraphMapperSnapshot.read(
+            file, dataSource, dbQueryEngine, null, "interactive-aggr", null);
+
+    assertThat(restored.getDataBaseSchema().toString())
+        .isEqualTo(built.getDataBaseSchema().toString());
+    assertThat(restored.getGraphModel().toString()).isEqualTo(built.getGraphModel().toString());
+    assertThat(restored.getSourceTables()).isEqualTo(built.getSourceTables());
+    assertThat(restored.getEdgeTypeName2count()).isEqualTo(built.getEdgeTypeName2count());
+
+    // join table aggregated into an edge
+    VertexType joinVertexType = restored.getJoinVertexTypeByAggregatorEdgeName("AUTHOR_BOOK");
+    assertThat(joinVertexType).isNotNull();
+    assertThat(restored.getEntityByVertexType(joinVertexType).getName()).isEqualTo("AUTHOR_BOOK");
+    assertThat(restored.getGraphModel().getVertexTypeByName("AUTHOR_BOOK")).isNull();
+
+    // restored elements are shared between the two models as in the built mapper
+    VertexType author = restored.getGraphModel().getVertexTypeByName("AUTHOR");
+    assertThat(restored.getEntityByVertexType(author))
+        .isSameAs(restored.getDataBaseSchema().getEntityByName("AUTHOR"));
+    assertThat(restored.getEntityByVertexType(author).getDataSource()).isSameAs(dataSource);
+  }
+
+  @Test
+  void restoreMapperAfterRestart() throws Exception {
+    ER2GraphMapper built = ER2GraphMapperCache.getMapper(dataSource, dbQueryEngine);
+
+    Path file = snapshot();
+    FileTime writtenAt = FileTime.fromMillis(System.currentTimeMillis() - 60_000L);
+    Files.setLastModifiedTime(file, writtenAt);
+
+    // drops the mappers in memory only, as a restart does
+    ER2GraphMapperCache.invalidateAll();
+
+    ER2GraphMapper restored = ER2GraphMapperCache.getMapper(dataSource, dbQueryEngine);
+
+    assertThat(restored).isNotSameAs(built);
+    assertThat(restored.getGraphModel().toString()).isEqualTo(built.getGraphModel().toString());
+    // not rebuilt, so not written again
+    assertThat(Files.getLastModifiedTime(file)).isEqualTo(writtenAt);
+  }
+
+  @Test
+  void rebuildWhenTablesChanged() throws Exception {
+    ER2GraphMapperCache.getMapper(dataSource, dbQueryEngine);
+    ER2GraphMapperCache.invalidateAll();
+
+    execute(
+        "create memory table PUBLISHER (PUBLISHER_ID varchar(256) not null,"
+            + " primary key (PUBLISHER_ID))");
+
+    ER2GraphMapper rebuilt = ER2GraphMapperCache.getMapper(dataSource, dbQueryEngine);
+
+    assertThat(rebuilt.getEntityByNameIgnoreCase("PUBLISHER")).isNotNull();
+  }
+
+  @Test
+  void dropSnapshotOnInvalidation() throws Exception {
+    ER2GraphMapperCache.getMapper(dataSource, dbQueryEngine);
+    assertThat(snapshot()).exists();
+
+    ER2GraphMapperCache.invalidate(dataSource);
+
+    assertThat(snapshots()).isEmpty();
+  }
+
+  private Path snapshot() throws Exception {
+    List<Path> snapshots = snapshots();
+    assertThat(snapshots).hasSize(1);
+    return snapshots.get(0);
+  }
+
+  private List<Path> snapshots() throws Exception {
+    try (Stream<Path> files = Files.list(snapshotDir)) {
+      return files.collect(Collectors.toList());
+    }
+  }
+
+  private DataSourceInfo dataSource() {
+    return new DataSourceInfo(
+        1L,
+        "RDBMS_HSQL",
+        "testDataSource",
+        "desc",
+        "mem",
+        1234,
+        "snapshotdb",
+        "SA",
+        "",
+        true,
+        "{}",
+        false,
+        false,
+        "",
+        22,
+        "",
+        false);
+  }
+
+  private void execute(String sql) throws Exception {
+    try (Connection connection = DriverManager.getConnection(JURL, "SA", "");
+        Statement st = connection.createStatement()) {
+      st.execute(sql);
+    }
+  }
+}
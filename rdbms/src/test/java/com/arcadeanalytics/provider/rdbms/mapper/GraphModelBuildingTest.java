@@ -59,6 +59,7 @@ import java.sql.Connection;
 import java.sql.DriverManager;
 import java.sql.Statement;
 import java.util.Iterator;
+import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
@@ -109,6 +110,11 @@ class GraphModelBuildingTest {
     dataTypeHandler = new HSQLDBDataTypeHandler();
   }
 
+  @AfterEach
+  void tearDown() {
+    dbQueryEngine.close();
+  }
+
   /*
    *  Two tables Foreign and Parent with a simple primary key imported from the parent table.
    */
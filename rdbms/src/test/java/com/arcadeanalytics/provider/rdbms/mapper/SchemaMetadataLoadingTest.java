@@ -0,0 +1,135 @@
+package com.arcadeanalytics.provider.rdbms.mapper;
+
+/*-
+ * #%L
+ * Arcade Connectors
+ * %%
+ * Copyright (C) 2018 - 2021 ArcadeData
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.arcadeanalytics.provider.DataSourceInfo;
+import com.arcadeanalytics.provider.rdbms.context.Statistics;
+import com.arcadeanalytics.provider.rdbms.dbengine.DBQueryEngine;
+import com.arcadeanalytics.provider.rdbms.mapper.rdbms.ER2GraphMapper;
+import com.arcadeanalytics.provider.rdbms.model.dbschema.Entity;
+import com.arcadeanalytics.provider.rdbms.nameresolver.JavaConventionNameResolver;
+import com.arcadeanalytics.provider.rdbms.persistence.handler.HSQLDBDataTypeHandler;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.Statement;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+/** Checks the schema-wide metadata loading builds the same schema as the table by table one. */
+class SchemaMetadataLoadingTest {
+
+  private static final String JURL = "jdbc:hsqldb:mem:bulkdb";
+
+  private DataSourceInfo dataSource;
+  private DBQueryEngine dbQueryEngine;
+
+  @BeforeEach
+  void init() throws Exception {
+    dataSource =
+        new DataSourceInfo(
+            1L,
+            "RDBMS_HSQL",
+            "testDataSource",
+            "desc",
+            "mem",
+            1234,
+            "bulkdb",
+            "SA",
+            "",
+            false,
+            "{}",
+            false,
+            false,
+            "",
+            22,
+            "",
+            false);
+
+    try (Connection connection = DriverManager.getConnection(JURL, "SA", "");
+        Statement st = connection.createStatement()) {
+      st.execute(
+          "create memory table AUTHOR (AUTHOR_ID varchar(256) not null,"
+              + " NAME varchar(256) not null, primary key (AUTHOR_ID))");
+      st.execute(
+          "create memory table BOOK (BOOK_ID varchar(256) not null, EDITION integer not null,"
+              + " TITLE varchar(256), AUTHOR varchar(256) not null, CO_AUTHOR varchar(256),"
+              + " primary key (BOOK_ID, EDITION),"
+              + " foreign key (AUTHOR) references AUTHOR(AUTHOR_ID),"
+              + " foreign key (CO_AUTHOR) references AUTHOR(AUTHOR_ID))");
+      st.execute(
+          "create memory table REVIEW (REVIEW_ID integer not null, BOOK_ID varchar(256),"
+              + " BOOK_EDITION integer, primary key (REVIEW_ID),"
+              + " foreign key (BOOK_ID, BOOK_EDITION) references BOOK(BOOK_ID, EDITION))");
+      st.execute("create memory table NOTE (TEXT varchar(256))");
+    }
+
+    dbQueryEngine = new DBQueryEngine(dataSource, 300);
+  }
+
+  @AfterEach
+  void tearDown() throws Exception {
+    dbQueryEngine.close();
+
+    try (Connection connection = DriverManager.getConnection(JURL, "SA", "");
+        Statement st = connection.createStatement()) {
+      st.execute("drop schema public cascade");
+    }
+  }
+
+  @Test
+  void buildSameSchemaInBulkAndTableByTable() {
+    ER2GraphMapper bulk = buildSchema(true);
+    ER2GraphMapper tableByTable = buildSchema(false);
+
+    assertThat(bulk.getDataBaseSchema().getEntities()).hasSize(4);
+    assertThat(bulk.getDataBaseSchema().getCanonicalRelationships()).hasSize(3);
+
+    Entity book = bulk.getDataBaseSchema().getEntityByName("BOOK");
+    assertThat(book.getPrimaryKey().getInvolvedAttributes()).hasSize(2);
+    assertThat(book.getForeignKeys()).hasSize(2);
+
+    Entity review = bulk.getDataBaseSchema().getEntityByName("REVIEW");
+    assertThat(review.getForeignKeys()).hasSize(1);
+    assertThat(review.getForeignKeys().get(0).getInvolvedAttributes()).hasSize(2);
+
+    assertThat(bulk.getDataBaseSchema().toString())
+        .isEqualTo(tableByTable.getDataBaseSchema().toString());
+  }
+
+  private ER2GraphMapper buildSchema(boolean bulkMetadata) {
+    ER2GraphMapper mapper =
+        new ER2GraphMapper(
+            dataSource,
+            null,
+            null,
+            dbQueryEngine,
+            new HSQLDBDataTypeHandler(),
+            "not_specified",
+            new JavaConventionNameResolver(),
+            new Statistics());
+    mapper.setBulkMetadata(bulkMetadata);
+    mapper.buildSourceDatabaseSchema();
+    return mapper;
+  }
+}
@@ -57,6 +57,7 @@ import java.sql.Connection;
 import java.sql.DriverManager;
 import java.sql.Statement;
 import java.util.Iterator;
+import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
@@ -117,6 +118,11 @@ class SourceSchemaBuildingTest {
             statistics);
   }
 
+  @AfterEach
+  void tearDown() {
+    dbQueryEngine.close();
+  }
+
   /*
    *  Two Foreign tables and one Parent with a simple primary key imported from the parent table.
    */
@@ -0,0 +1,171 @@
+package com.arcadeanalytics.provider.rdbms.persistence.util;
+
+/*-
+ * #%L
+ * Arcade Connectors
+ * %%
+ * Copyright (C) 2018 - 2021 ArcadeData
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import com.arcadeanalytics.provider.DataSourceInfo;
+import com.arcadeanalytics.provider.rdbms.exception.RDBMSProviderRuntimeException;
+import java.sql.Connection;
+import java.sql.SQLException;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class DBConnectionPoolTest {
+
+  private DataSourceInfo dataSource;
+  private DBConnectionPool pool;
+
+  @BeforeEach
+  void init() {
+    dataSource =
+        new DataSourceInfo(
+            1L,
+            "RDBMS_HSQL",
+            "testDataSource",
+            "desc",
+            "mem",
+            1234,
+            "pooldb",
+            "SA",
+            "",
+            false,
+            "{}",
+            false,
+            false,
+            "",
+            22,
+            "",
+            false);
+
+    pool = new DBConnectionPool(dataSource, 2, 100L, 60_000L, 60_000L, 1);
+  }
+
+  @AfterEach
+  void tearDown() {
+    pool.close();
+  }
+
+  @Test
+  void reusePhysicalConnectionAfterClose() throws Exception {
+    Connection first = pool.borrow();
+    Connection physical = first.unwrap(Connection.class);
+    first.close();
+
+    assertThat(first.isClosed()).isTrue();
+    assertThat(physical.isClosed()).isFalse();
+
+    Connection second = pool.borrow();
+    assertThat(second.unwrap(Connection.class)).isSameAs(physical);
+    second.close();
+
+    DBConnectionPoolMetrics metrics = pool.getMetrics();
+    assertThat(metrics.getCreated()).isEqualTo(1);
+    assertThat(metrics.getBorrowed()).isEqualTo(2);
+    assertThat(metrics.getActive()).isEqualTo(0);
+    assertThat(metrics.getIdle()).isEqualTo(1);
+  }
+
+  @Test
+  void closingTwiceReleasesOnce() throws Exception {
+    Connection connection = pool.borrow();
+    connection.close();
+    connection.close();
+
+    assertThat(pool.getMetrics().getIdle()).isEqualTo(1);
+    assertThatThrownBy(connection::createStatement).isInstanceOf(SQLException.class);
+  }
+
+  @Test
+  void timeoutWhenPoolIsExhausted() throws Exception {
+    Connection first = pool.borrow();
+    Connection second = pool.borrow();
+
+    assertThatThrownBy(pool::borrow).isInstanceOf(RDBMSProviderRuntimeException.class);
+    assertThat(pool.getMetrics().getBorrowTimeouts()).isEqualTo(1);
+
+    first.close();
+    Connection third = pool.borrow();
+    assertThat(third.isClosed()).isFalse();
+
+    second.close();
+    third.close();
+  }
+
+  @Test
+  void discardBrokenConnectionOnBorrow() throws Exception {
+    Connection first = pool.borrow();
+    Connection physical = first.unwrap(Connection.class);
+    first.close();
+
+    physical.close();
+
+    Connection second = pool.borrow();
+    assertThat(second.unwrap(Connection.class)).isNotSameAs(physical);
+    assertThat(second.isValid(1)).isTrue();
+    second.close();
+
+    DBConnectionPoolMetrics metrics = pool.getMetrics();
+    assertThat(metrics.getValidationFailures()).isEqualTo(1);
+    assertThat(metrics.getCreated()).isEqualTo(2);
+  }
+
+  @Test
+  void evictIdleConnections() throws Exception {
+    DBConnectionPool shortLived = new DBConnectionPool(dataSource, 2, 100L, 0L, 60_000L, 1);
+
+    shortLived.borrow().close();
+    Thread.sleep(5);
+    shortLived.evict();
+
+    DBConnectionPoolMetrics metrics = shortLived.getMetrics();
+    assertThat(metrics.getIdle()).isEqualTo(0);
+    assertThat(metrics.getDestroyed()).isEqualTo(1);
+  }
+
+  @Test
+  void shareOnePoolPerDataSource() {
+    DataSourceInfo sameDatabase =
+        new DataSourceInfo(
+            2L,
+            "RDBMS_HSQL",
+            "otherDataSource",
+            "",
+            "mem",
+            1234,
+            "pooldb",
+            "SA",
+            "",
+            true,
+            "{}",
+            false,
+            false,
+            "",
+            22,
+            "",
+            false);
+
+    assertThat(DBConnectionPool.forDataSource(dataSource))
+        .isSameAs(DBConnectionPool.forDataSource(sameDatabase));
+  }
+}
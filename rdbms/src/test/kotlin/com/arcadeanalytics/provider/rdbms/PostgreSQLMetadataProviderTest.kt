@@ -82,6 +82,21 @@ class PostgreSQLMetadataProviderTest {
         assertThat(metadata.edgesClasses).isNotEmpty
     }
 
+    @Test
+    fun shouldEstimateCardinalitiesFromStatistics() {
+        container.createConnection("").use { connection -> connection.createStatement().use { it.execute("ANALYZE") } }
+
+        val metadata = RDBMSMetadataProvider(estimate = true).fetchMetadata(dataSourceNoAggregation)
+
+        assertThat(metadata.nodesClasses["actor"]!!.estimated).isTrue()
+        assertThat(metadata.nodesClasses["actor"]!!.cardinality).isEqualTo(200)
+
+        assertThat(metadata.edgesClasses.values.filter { it.estimated }).isNotEmpty
+
+        val exact = providerNoAggregation.fetchMetadata(dataSourceNoAggregation)
+        assertThat(exact.nodesClasses.values.none { it.estimated }).isTrue()
+    }
+
     @Test
     fun fetchMetadataWithoutAggregation() {
         val metadata = providerNoAggregation.fetchMetadata(dataSourceNoAggregation)